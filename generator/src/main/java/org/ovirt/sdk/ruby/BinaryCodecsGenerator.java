@@ -0,0 +1,275 @@
+/*
+Copyright (c) 2016 Red Hat, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ovirt.sdk.ruby;
+
+import static java.util.stream.Collectors.toList;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import javax.enterprise.inject.spi.CDI;
+import javax.inject.Inject;
+
+import org.ovirt.api.metamodel.concepts.EnumType;
+import org.ovirt.api.metamodel.concepts.ListType;
+import org.ovirt.api.metamodel.concepts.Model;
+import org.ovirt.api.metamodel.concepts.PrimitiveType;
+import org.ovirt.api.metamodel.concepts.StructMember;
+import org.ovirt.api.metamodel.concepts.StructType;
+import org.ovirt.api.metamodel.concepts.Type;
+
+/**
+ * This class is responsible for generating the classes that convert instances of model types into the compact binary
+ * representation used to cache them, and back. Each member of a type is identified by a numeric tag, assigned in the
+ * same order used by the other generators, so the generated code also contains the version of the schema, calculated
+ * from the names and types of all the members. Data written with a different version of the schema isn't loaded.
+ */
+public class BinaryCodecsGenerator implements RubyGenerator {
+    // The tag that marks the end of an object, and the tag of the 'href' attribute:
+    private static final int END_TAG = 0;
+    private static final int HREF_TAG = 1;
+
+    // The directory were the output will be generated:
+    protected File out;
+
+    // Reference to the objects used to generate the code:
+    @Inject private RubyNames rubyNames;
+    @Inject private StructLayouts structLayouts;
+
+    // The buffer used to generate the Ruby code:
+    private RubyBuffer buffer;
+
+    public void setOut(File newOut) {
+        out = newOut;
+    }
+
+    public void generate(Model model) {
+        // Calculate the file name:
+        String fileName = rubyNames.getModulePath() + "/binary_codecs";
+        buffer = CDI.current().select(RubyBuffer.class).get();
+        buffer.setFileName(fileName);
+
+        // Generate the source:
+        generateSource(model);
+
+        // Write the file:
+        try {
+            buffer.write(out);
+        }
+        catch (IOException exception) {
+            throw new IllegalStateException("Error writing binary codecs file \"" + fileName + "\"", exception);
+        }
+    }
+
+    private void generateSource(Model model) {
+        List<StructType> types = model.types()
+            .filter(StructType.class::isInstance)
+            .map(StructType.class::cast)
+            .sorted()
+            .collect(toList());
+
+        // Begin module:
+        String moduleName = rubyNames.getModuleName();
+        buffer.beginModule(moduleName);
+        buffer.addLine();
+
+        // The version of the schema:
+        RubyName baseName = rubyNames.getBaseBinaryCodecName();
+        buffer.addLine("class %1$s", baseName.getClassName());
+        buffer.addLine(  "# Checksum of the names and types of the members of all the types, and of their tags:");
+        buffer.addLine(  "SCHEMA = %1$d", calculateSchema(types));
+        buffer.addLine("end");
+        buffer.addLine();
+
+        // Generate a codec for each struct type:
+        types.forEach(this::generateCodec);
+
+        // End module:
+        buffer.endModule(moduleName);
+    }
+
+    private void generateCodec(StructType type) {
+        // Begin class:
+        RubyName codecName = rubyNames.getBinaryCodecName(type);
+        RubyName baseName = rubyNames.getBaseBinaryCodecName();
+        buffer.addLine("class %1$s < %2$s # :nodoc:", codecName.getClassName(), baseName.getClassName());
+        buffer.addLine();
+
+        // Generate the method that writes one object, as a sequence of tags and values terminated by the end tag:
+        List<StructMember> members = getMembers(type);
+        buffer.addLine("def self.write_one(object, output)");
+        buffer.addLine(  "value = object.href");
+        buffer.addLine(  "unless value.nil?");
+        buffer.addLine(    "output.varint(%1$d)", HREF_TAG);
+        buffer.addLine(    "output.string(value)");
+        buffer.addLine(  "end");
+        for (int i = 0; i < members.size(); i++) {
+            generateMemberWrite(members.get(i), getTag(i));
+        }
+        buffer.addLine(  "output.varint(%1$d)", END_TAG);
+        buffer.addLine("end");
+        buffer.addLine();
+
+        // Generate the method that reads one object. Like the readers, it doesn't call the constructor, and it stores
+        // directly in the hash the members of the types that use sparse storage:
+        String className = rubyNames.getTypeName(type).getClassName();
+        buffer.addLine("def self.read_one(input)");
+        buffer.addLine(  "object = %1$s.allocate", className);
+        if (structLayouts.hasValues(type)) {
+            buffer.addLine("values = {}");
+            buffer.addLine("object.instance_variable_set(:%1$s, values)", StructLayouts.VALUES_VARIABLE);
+        }
+        buffer.addLine(  "object.ignore_changes");
+        buffer.addLine(  "tag = input.varint");
+        buffer.addLine(  "while tag != %1$d do", END_TAG);
+        buffer.addLine(    "case tag");
+        buffer.addLine(    "when %1$d", HREF_TAG);
+        buffer.addLine(      "object.href = input.string");
+        for (int i = 0; i < members.size(); i++) {
+            generateMemberRead(members.get(i), getTag(i));
+        }
+        buffer.addLine(    "else");
+        buffer.addLine(      "raise Error.new(\"The tag #{tag} isn't valid for type '%1$s'.\")", className);
+        buffer.addLine(    "end");
+        buffer.addLine(    "tag = input.varint");
+        buffer.addLine(  "end");
+        buffer.addLine(  "object.clear_changes(false)");
+        buffer.addLine(  "object");
+        buffer.addLine("end");
+        buffer.addLine();
+
+        // End class:
+        buffer.addLine("end");
+        buffer.addLine();
+    }
+
+    private void generateMemberWrite(StructMember member, int tag) {
+        Type type = member.getType();
+        String property = rubyNames.getMemberStyleName(member.getName());
+        buffer.addLine("value = object.%1$s", property);
+        buffer.addLine("unless value.nil?");
+        buffer.addLine(  "output.varint(%1$d)", tag);
+        if (type instanceof PrimitiveType || type instanceof EnumType) {
+            buffer.addLine("output.%1$s(value)", getMethod(type));
+        }
+        else if (type instanceof StructType) {
+            RubyName codecName = rubyNames.getBinaryCodecName(type);
+            buffer.addLine("%1$s.write_one(value, output)", codecName.getClassName());
+        }
+        else if (type instanceof ListType) {
+            Type elementType = ((ListType) type).getElementType();
+            if (elementType instanceof StructType) {
+                RubyName codecName = rubyNames.getBinaryCodecName(elementType);
+                buffer.addLine("%1$s.write_many(value, output)", codecName.getClassName());
+            }
+            else {
+                buffer.addLine("output.varint(value.size)");
+                buffer.addLine("value.each { |item| output.%1$s(item) }", getMethod(elementType));
+            }
+        }
+        buffer.addLine("end");
+    }
+
+    private void generateMemberRead(StructMember member, int tag) {
+        Type type = member.getType();
+        String property = rubyNames.getMemberStyleName(member.getName());
+        String target = String.format("object.%1$s", property);
+        if (structLayouts.isSparse(member.getDeclaringType())) {
+            target = String.format("values[:%1$s]", property);
+        }
+        buffer.addLine("when %1$d", tag);
+        if (type instanceof PrimitiveType || type instanceof EnumType) {
+            buffer.addLine("%1$s = input.%2$s", target, getMethod(type));
+        }
+        else if (type instanceof StructType) {
+            RubyName codecName = rubyNames.getBinaryCodecName(type);
+            buffer.addLine("%1$s = %2$s.read_one(input)", target, codecName.getClassName());
+        }
+        else if (type instanceof ListType) {
+            Type elementType = ((ListType) type).getElementType();
+            if (elementType instanceof StructType) {
+                RubyName codecName = rubyNames.getBinaryCodecName(elementType);
+                buffer.addLine("%1$s = %2$s.read_many(input)", target, codecName.getClassName());
+            }
+            else {
+                buffer.addLine("%1$s = Array.new(input.varint) { input.%2$s }", target, getMethod(elementType));
+            }
+        }
+    }
+
+    private String getMethod(Type type) {
+        if (type instanceof PrimitiveType) {
+            Model model = type.getModel();
+            if (type == model.getBooleanType()) {
+                return "boolean";
+            }
+            if (type == model.getIntegerType()) {
+                return "integer";
+            }
+            if (type == model.getDecimalType()) {
+                return "decimal";
+            }
+            if (type == model.getDateType()) {
+                return "date";
+            }
+        }
+        return "string";
+    }
+
+    private long calculateSchema(List<StructType> types) {
+        StringBuilder schema = new StringBuilder();
+        for (StructType type : types) {
+            schema.append(type.getName()).append('{');
+            List<StructMember> members = getMembers(type);
+            for (int i = 0; i < members.size(); i++) {
+                StructMember member = members.get(i);
+                schema.append(getTag(i)).append(':').append(member.getName()).append(':');
+                schema.append(getSchemaType(member.getType())).append(';');
+            }
+            schema.append('}');
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(schema.toString().getBytes(StandardCharsets.UTF_8));
+        return checksum.getValue();
+    }
+
+    private String getSchemaType(Type type) {
+        if (type instanceof ListType) {
+            return getSchemaType(((ListType) type).getElementType()) + "[]";
+        }
+        if (type instanceof PrimitiveType || type instanceof EnumType) {
+            return getMethod(type);
+        }
+        return type.getName().toString();
+    }
+
+    private List<StructMember> getMembers(StructType type) {
+        // The same order used by the other generators, first the attributes and then the links:
+        List<StructMember> members = new ArrayList<>();
+        type.attributes().sorted().forEach(members::add);
+        type.links().sorted().forEach(members::add);
+        return members;
+    }
+
+    private int getTag(int index) {
+        // The tags of the members start after the tag of the 'href' attribute:
+        return HREF_TAG + 1 + index;
+    }
+}
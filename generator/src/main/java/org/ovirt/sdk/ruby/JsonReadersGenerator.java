@@ -0,0 +1,249 @@
+/*
+Copyright (c) 2016 Red Hat, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ovirt.sdk.ruby;
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import javax.enterprise.inject.spi.CDI;
+import javax.inject.Inject;
+
+import org.ovirt.api.metamodel.concepts.EnumType;
+import org.ovirt.api.metamodel.concepts.Link;
+import org.ovirt.api.metamodel.concepts.ListType;
+import org.ovirt.api.metamodel.concepts.Model;
+import org.ovirt.api.metamodel.concepts.Name;
+import org.ovirt.api.metamodel.concepts.PrimitiveType;
+import org.ovirt.api.metamodel.concepts.StructMember;
+import org.ovirt.api.metamodel.concepts.StructType;
+import org.ovirt.api.metamodel.concepts.Type;
+import org.ovirt.api.metamodel.tool.SchemaNames;
+
+/**
+ * This class is responsible for generating the classes that create instances of model types from JSON documents. The
+ * documents are parsed by the native parser of the Ruby {@code json} library, and the generated classes convert the
+ * resulting hashes and arrays into instances of the model types.
+ */
+public class JsonReadersGenerator implements RubyGenerator {
+    // The directory were the output will be generated:
+    protected File out;
+
+    // Reference to the objects used to generate the code:
+    @Inject private SchemaNames schemaNames;
+    @Inject private RubyNames rubyNames;
+    @Inject private StructLayouts structLayouts;
+
+    // The buffer used to generate the Ruby code:
+    @Inject private RubyBuffer buffer;
+
+    public void setOut(File newOut) {
+        out = newOut;
+    }
+
+    public void generate(Model model) {
+        // Calculate the file name:
+        String fileName = rubyNames.getModulePath() + "/json_readers";
+        buffer = CDI.current().select(RubyBuffer.class).get();
+        buffer.setFileName(fileName);
+
+        // Generate the source:
+        generateSource(model);
+
+        // Write the file:
+        try {
+            buffer.write(out);
+        }
+        catch (IOException exception) {
+            throw new IllegalStateException("Error writing JSON readers file \"" + fileName + "\"", exception);
+        }
+    }
+
+    private void generateSource(Model model) {
+        // Begin module:
+        String moduleName = rubyNames.getModuleName();
+        buffer.beginModule(moduleName);
+        buffer.addLine();
+
+        // Generate a reader for each struct type:
+        model.types()
+            .filter(StructType.class::isInstance)
+            .map(StructType.class::cast)
+            .sorted()
+            .forEach(this::generateReader);
+
+        // End module:
+        buffer.endModule(moduleName);
+        buffer.addLine();
+    }
+
+    private void generateReader(StructType type) {
+        // Begin class:
+        RubyName typeName = rubyNames.getTypeName(type);
+        RubyName readerName = rubyNames.getJsonReaderName(type);
+        RubyName baseName = rubyNames.getBaseJsonReaderName();
+        buffer.addLine("class %1$s < %2$s # :nodoc:", readerName.getClassName(), baseName.getClassName());
+        buffer.addLine();
+
+        // Check if there are links to lists, as those are represented using the 'link' key:
+        List<Link> listLinks = type.links()
+            .filter(link -> link.getType() instanceof ListType)
+            .sorted()
+            .collect(toList());
+
+        // Generate the method that reads one instance:
+        buffer.addLine("def self.read_one(hash)");
+        buffer.addLine(  "# Do nothing if there is no value:");
+        buffer.addLine(  "return nil if hash.nil?");
+        buffer.addLine();
+        buffer.addLine(  "# Create the object without calling the constructor, storing the members of the types that");
+        buffer.addLine(  "# use sparse storage directly in the hash:");
+        buffer.addLine(  "object = %s.allocate", typeName.getClassName());
+        if (structLayouts.hasValues(type)) {
+            buffer.addLine("values = {}");
+            buffer.addLine("object.instance_variable_set(:%1$s, values)", StructLayouts.VALUES_VARIABLE);
+        }
+        buffer.addLine(  "object.ignore_changes");
+        buffer.addLine();
+        buffer.addLine(  "# Process the members that are present and not null, ignoring the rest, so that the hash of");
+        buffer.addLine(  "# the types with sparse storage only contains values that aren't nil:");
+        buffer.addLine(  "hash.each do |key, value|");
+        buffer.addLine(    "next if value.nil?");
+        buffer.addLine(    "case key");
+        buffer.addLine(    "when 'href'");
+        buffer.addLine(      "object.href = value");
+        type.attributes().sorted().forEach(this::generateMemberRead);
+        type.links().sorted().forEach(this::generateMemberRead);
+        if (!listLinks.isEmpty()) {
+            buffer.addLine("when 'link'");
+            buffer.addLine(  "read_links(value, object)");
+        }
+        buffer.addLine(    "end");
+        buffer.addLine(  "end");
+        buffer.addLine();
+        buffer.addLine(  "# Objects returned by the readers start without changes:");
+        buffer.addLine(  "object.clear_changes(false)");
+        buffer.addLine(  "return object");
+        buffer.addLine("end");
+        buffer.addLine();
+
+        // Generate the method that reads many instances:
+        buffer.addLine("def self.read_many(value)");
+        buffer.addLine(  "list = %1$s.new", rubyNames.getBaseListName().getClassName());
+        buffer.addLine(  "%1$s.unwrap(value).each do |item|", baseName.getClassName());
+        buffer.addLine(    "list << read_one(item)");
+        buffer.addLine(  "end");
+        buffer.addLine(  "return list");
+        buffer.addLine("end");
+        buffer.addLine();
+
+        // Generate the method that reads links to lists:
+        if (!listLinks.isEmpty()) {
+            buffer.addLine("def self.read_links(links, object)");
+            buffer.addLine(  "%1$s.unwrap(links).each do |link|", baseName.getClassName());
+            buffer.addLine(    "rel = link['rel']");
+            buffer.addLine(    "href = link['href']");
+            buffer.addLine(    "next unless rel && href");
+            buffer.addLine(    "list = %1$s.new", rubyNames.getBaseListName().getClassName());
+            buffer.addLine(    "list.href = href");
+            buffer.addLine(    "case rel");
+            listLinks.forEach(link -> {
+                Name name = link.getName();
+                String property = rubyNames.getMemberStyleName(name);
+                String rel = name.words().map(String::toLowerCase).collect(joining());
+                buffer.addLine("when '%1$s'", rel);
+                buffer.addLine(  "object.%1$s = list", property);
+            });
+            buffer.addLine(    "end");
+            buffer.addLine(  "end");
+            buffer.addLine("end");
+            buffer.addLine();
+        }
+
+        // End class:
+        buffer.addLine("end");
+        buffer.addLine();
+    }
+
+    private void generateMemberRead(StructMember member) {
+        Name name = member.getName();
+        Type type = member.getType();
+        String property = rubyNames.getMemberStyleName(name);
+        String key = schemaNames.getSchemaTagName(name);
+        String variable = String.format("object.%1$s", property);
+        if (structLayouts.isSparse(member.getDeclaringType())) {
+            variable = String.format("values[:%1$s]", property);
+        }
+        if (type instanceof PrimitiveType) {
+            buffer.addLine("when '%1$s'", key);
+            generateReadPrimitive((PrimitiveType) type, variable, false);
+        }
+        else if (type instanceof EnumType) {
+            buffer.addLine("when '%1$s'", key);
+            buffer.addLine(  "%1$s = JsonReader.read_string(value)", variable);
+        }
+        else if (type instanceof StructType) {
+            buffer.addLine("when '%1$s'", key);
+            RubyName readerName = rubyNames.getJsonReaderName(type);
+            buffer.addLine(  "%1$s = %2$s.read_one(value)", variable, readerName.getClassName());
+        }
+        else if (type instanceof ListType) {
+            Type elementType = ((ListType) type).getElementType();
+            if (elementType instanceof PrimitiveType) {
+                buffer.addLine("when '%1$s'", key);
+                generateReadPrimitive((PrimitiveType) elementType, variable, true);
+            }
+            else if (elementType instanceof EnumType) {
+                buffer.addLine("when '%1$s'", key);
+                buffer.addLine(  "%1$s = JsonReader.read_strings(value)", variable);
+            }
+            else if (elementType instanceof StructType) {
+                buffer.addLine("when '%1$s'", key);
+                RubyName readerName = rubyNames.getJsonReaderName(elementType);
+                buffer.addLine(  "%1$s = %2$s.read_many(value)", variable, readerName.getClassName());
+            }
+        }
+    }
+
+    private void generateReadPrimitive(PrimitiveType type, String variable, boolean many) {
+        Model model = type.getModel();
+        String method = null;
+        if (type == model.getStringType()) {
+            method = "read_string";
+        }
+        else if (type == model.getBooleanType()) {
+            method = "read_boolean";
+        }
+        else if (type == model.getIntegerType()) {
+            method = "read_integer";
+        }
+        else if (type == model.getDecimalType()) {
+            method = "read_decimal";
+        }
+        else if (type == model.getDateType()) {
+            method = "read_date";
+        }
+        if (method != null) {
+            if (many) {
+                method += "s";
+            }
+            buffer.addLine("%1$s = JsonReader.%2$s(value)", variable, method);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+Copyright (c) 2016 Red Hat, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ovirt.sdk.ruby;
+
+import java.io.File;
+import java.io.IOException;
+import javax.enterprise.inject.spi.CDI;
+import javax.inject.Inject;
+
+import org.ovirt.api.metamodel.concepts.EnumType;
+import org.ovirt.api.metamodel.concepts.ListType;
+import org.ovirt.api.metamodel.concepts.Model;
+import org.ovirt.api.metamodel.concepts.Name;
+import org.ovirt.api.metamodel.concepts.PrimitiveType;
+import org.ovirt.api.metamodel.concepts.StructMember;
+import org.ovirt.api.metamodel.concepts.StructType;
+import org.ovirt.api.metamodel.concepts.Type;
+import org.ovirt.api.metamodel.tool.Names;
+import org.ovirt.api.metamodel.tool.SchemaNames;
+
+/**
+ * This class is responsible for generating the classes that take instances of model types and generate the
+ * corresponding JSON documents. The generated code appends the JSON text directly to a string, using precomputed
+ * fragments for the names of the members.
+ */
+public class JsonWritersGenerator implements RubyGenerator {
+    // The directory were the output will be generated:
+    protected File out;
+
+    // Reference to the objects used to generate the code:
+    @Inject private Names names;
+    @Inject private SchemaNames schemaNames;
+    @Inject private RubyNames rubyNames;
+
+    // The buffer used to generate the Ruby code:
+    private RubyBuffer buffer;
+
+    // Indicates if the code being generated should write only the members that have been modified:
+    private boolean changes;
+
+    public void setOut(File newOut) {
+        out = newOut;
+    }
+
+    public void generate(Model model) {
+        // Calculate the file name:
+        String fileName = rubyNames.getModulePath() + "/json_writers";
+        buffer = CDI.current().select(RubyBuffer.class).get();
+        buffer.setFileName(fileName);
+
+        // Generate the source:
+        generateSource(model);
+
+        // Write the file:
+        try {
+            buffer.write(out);
+        }
+        catch (IOException exception) {
+            throw new IllegalStateException("Error writing JSON writers file \"" + fileName + "\"", exception);
+        }
+    }
+
+    private void generateSource(Model model) {
+        // Begin module:
+        String moduleName = rubyNames.getModuleName();
+        buffer.beginModule(moduleName);
+        buffer.addLine();
+
+        // Generate a writer for each struct type:
+        model.types()
+            .filter(StructType.class::isInstance)
+            .map(StructType.class::cast)
+            .sorted()
+            .forEach(this::generateWriter);
+
+        // End module:
+        buffer.endModule(moduleName);
+    }
+
+    private void generateWriter(StructType type) {
+        // Begin class:
+        RubyName writerName = rubyNames.getJsonWriterName(type);
+        RubyName baseName = rubyNames.getBaseJsonWriterName();
+        buffer.addLine("class %1$s < %2$s # :nodoc:", writerName.getClassName(), baseName.getClassName());
+        buffer.addLine();
+
+        // Generate the method that writes one object:
+        buffer.addLine("def self.write_one(object, buffer)");
+        generateObjectWrite(type);
+        buffer.addLine("end");
+        buffer.addLine();
+
+        // Generate the method that writes only the members that have been modified, used by the update methods:
+        buffer.addLine("def self.write_changes(object, buffer)");
+        changes = true;
+        generateObjectWrite(type);
+        changes = false;
+        buffer.addLine("end");
+        buffer.addLine();
+
+        // Generate the method that writes many objects, wrapped in an object that contains the array, the same that
+        // the server does:
+        String singularTag = schemaNames.getSchemaTagName(type.getName());
+        buffer.addLine("def self.write_many(list, buffer, singular = nil)");
+        buffer.addLine(  "singular ||= '%1$s'", singularTag);
+        buffer.addLine(  "buffer << '{\"' << singular << '\":['");
+        buffer.addLine(  "list.each do |item|");
+        buffer.addLine(    "write_one(item, buffer)");
+        buffer.addLine(    "buffer << ','");
+        buffer.addLine(  "end");
+        buffer.addLine(  "%1$s.close(buffer, ']')", baseName.getClassName());
+        buffer.addLine(  "buffer << '}'");
+        buffer.addLine("end");
+        buffer.addLine();
+
+        // End class:
+        buffer.addLine("end");
+        buffer.addLine();
+    }
+
+    private void generateObjectWrite(StructType type) {
+        // Each member is written followed by a comma, and the last comma is replaced by the closing brace:
+        RubyName baseName = rubyNames.getBaseJsonWriterName();
+        buffer.addLine("buffer << '{'");
+        buffer.addLine("href = object.href");
+        buffer.addLine("buffer << '\"href\":' << href.to_json << ',' unless href.nil?");
+        type.attributes().sorted().forEach(this::generateMemberWrite);
+        type.links().sorted().forEach(this::generateMemberWrite);
+        buffer.addLine("%1$s.close(buffer, '}')", baseName.getClassName());
+    }
+
+    private void generateMemberWrite(StructMember member) {
+        Name name = member.getName();
+        Type type = member.getType();
+        String property = rubyNames.getMemberStyleName(name);
+        String key = schemaNames.getSchemaTagName(name);
+        String value = "object." + property;
+        if (type instanceof PrimitiveType || type instanceof EnumType) {
+            if (changes) {
+                buffer.addLine("if object.changed?(:%1$s)", property);
+            }
+            generateValueWrite(type, key, value);
+            if (changes) {
+                buffer.addLine("end");
+            }
+        }
+        else if (type instanceof StructType) {
+            generateStructWrite(member);
+        }
+        else if (type instanceof ListType) {
+            Type elementType = ((ListType) type).getElementType();
+            if (elementType instanceof PrimitiveType || elementType instanceof EnumType) {
+                if (changes) {
+                    buffer.addLine("if object.changed?(:%1$s)", property);
+                }
+                generatePrimitiveListWrite(member);
+                if (changes) {
+                    buffer.addLine("end");
+                }
+            }
+            else if (elementType instanceof StructType) {
+                generateStructListWrite(member);
+            }
+        }
+    }
+
+    private void generateValueWrite(Type type, String key, String value) {
+        if (isBoolean(type)) {
+            buffer.addLine(
+                "buffer << (%2$s ? '\"%1$s\":true,' : '\"%1$s\":false,') unless %2$s.nil?",
+                key,
+                value
+            );
+        }
+        else {
+            buffer.addLine(
+                "buffer << '\"%1$s\":' << %2$s << ',' unless %3$s.nil?",
+                key,
+                renderValue(type, value),
+                value
+            );
+        }
+    }
+
+    private void generatePrimitiveListWrite(StructMember member) {
+        Name name = member.getName();
+        Type elementType = ((ListType) member.getType()).getElementType();
+        String property = rubyNames.getMemberStyleName(name);
+        String pluralKey = schemaNames.getSchemaTagName(name);
+        String singularKey = schemaNames.getSchemaTagName(names.getSingular(name));
+        buffer.addLine(
+            "buffer << '\"%1$s\":{\"%2$s\":[' << object.%3$s.map { |item| %4$s }.join(',') << ']},' " +
+            "unless object.%3$s.nil?",
+            pluralKey,
+            singularKey,
+            property,
+            renderValue(elementType, "item")
+        );
+    }
+
+    private void generateStructWrite(StructMember member) {
+        Name name = member.getName();
+        Type type = member.getType();
+        String property = rubyNames.getMemberStyleName(name);
+        String key = schemaNames.getSchemaTagName(name);
+        RubyName writerName = rubyNames.getJsonWriterName(type);
+        if (changes) {
+            // An object that replaced the previous one is written completely, but one that has only been modified
+            // is written with its own changes:
+            buffer.addLine(
+                "if !object.%1$s.nil? && (object.changed?(:%1$s) || object.%1$s.changed?)",
+                property
+            );
+            buffer.addLine(  "buffer << '\"%1$s\":'", key);
+            buffer.addLine(  "if object.changed?(:%1$s)", property);
+            buffer.addLine(    "%1$s.write_one(object.%2$s, buffer)", writerName.getClassName(), property);
+            buffer.addLine(  "else");
+            buffer.addLine(    "%1$s.write_changes(object.%2$s, buffer)", writerName.getClassName(), property);
+            buffer.addLine(  "end");
+            buffer.addLine(  "buffer << ','");
+            buffer.addLine("end");
+        }
+        else {
+            buffer.addLine("unless object.%1$s.nil?", property);
+            buffer.addLine(  "buffer << '\"%1$s\":'", key);
+            buffer.addLine(  "%1$s.write_one(object.%2$s, buffer)", writerName.getClassName(), property);
+            buffer.addLine(  "buffer << ','");
+            buffer.addLine("end");
+        }
+    }
+
+    private void generateStructListWrite(StructMember member) {
+        Name name = member.getName();
+        Type elementType = ((ListType) member.getType()).getElementType();
+        String property = rubyNames.getMemberStyleName(name);
+        String pluralKey = schemaNames.getSchemaTagName(name);
+        String singularKey = schemaNames.getSchemaTagName(names.getSingular(name));
+        RubyName writerName = rubyNames.getJsonWriterName(elementType);
+        if (changes) {
+            // Lists are always written completely, either when they have been replaced or when any of their
+            // elements has been modified:
+            buffer.addLine(
+                "if !object.%1$s.nil? && (object.changed?(:%1$s) || object.%1$s.any?(&:changed?))",
+                property
+            );
+        }
+        else {
+            buffer.addLine("unless object.%1$s.nil?", property);
+        }
+        buffer.addLine(  "buffer << '\"%1$s\":'", pluralKey);
+        buffer.addLine(
+            "%1$s.write_many(object.%2$s, buffer, '%3$s')",
+            writerName.getClassName(),
+            property,
+            singularKey
+        );
+        buffer.addLine(  "buffer << ','");
+        buffer.addLine("end");
+    }
+
+    private boolean isBoolean(Type type) {
+        return type instanceof PrimitiveType && type == type.getModel().getBooleanType();
+    }
+
+    private String renderValue(Type type, String value) {
+        if (type instanceof PrimitiveType) {
+            Model model = type.getModel();
+            if (type == model.getIntegerType() || type == model.getDecimalType() || type == model.getBooleanType()) {
+                return value + ".to_s";
+            }
+            if (type == model.getDateType()) {
+                return String.format("%1$s.render_date(%2$s)", rubyNames.getBaseJsonWriterName().getClassName(), value);
+            }
+        }
+        return value + ".to_json";
+    }
+}
@@ -0,0 +1,531 @@
+/*
+Copyright (c) 2016 Red Hat, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ovirt.sdk.ruby;
+
+import static java.util.stream.Collectors.toList;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import javax.inject.Inject;
+
+import org.apache.commons.io.FileUtils;
+import org.ovirt.api.metamodel.concepts.EnumType;
+import org.ovirt.api.metamodel.concepts.ListType;
+import org.ovirt.api.metamodel.concepts.Model;
+import org.ovirt.api.metamodel.concepts.Name;
+import org.ovirt.api.metamodel.concepts.PrimitiveType;
+import org.ovirt.api.metamodel.concepts.StructMember;
+import org.ovirt.api.metamodel.concepts.StructType;
+import org.ovirt.api.metamodel.concepts.Type;
+import org.ovirt.api.metamodel.tool.Names;
+import org.ovirt.api.metamodel.tool.SchemaNames;
+
+/**
+ * This class is responsible for generating the C source of the native XML writers of the extension. There is one
+ * function for each struct type, that reads the instance variables of the object directly and appends the XML text
+ * to a Ruby string used as buffer, which is then written to the {@code XmlWriter} at once. The functions are called
+ * through the {@code XmlWriter#write_struct} method, using the index of the type in the sorted list of struct types of
+ * the model, the same index that the Ruby writers generated by {@link WritersGenerator} use.
+ *
+ * The source is generated in the {@code ext/ovirtsdk4c} directory that is next to the directory where the Ruby
+ * sources are generated.
+ */
+public class NativeWritersGenerator implements RubyGenerator {
+    // The name of the generated file:
+    private static final String FILE_NAME = "ov_xml_writers.c";
+
+    // The kinds of values, as they are named in the generated C code:
+    private static final String OV_STRING = "OV_XML_WRITERS_STRING";
+    private static final String OV_BOOLEAN = "OV_XML_WRITERS_BOOLEAN";
+    private static final String OV_NUMBER = "OV_XML_WRITERS_NUMBER";
+    private static final String OV_DATE = "OV_XML_WRITERS_DATE";
+
+    // The directory were the output will be generated:
+    protected File out;
+
+    // Reference to the objects used to generate the code:
+    @Inject private Names names;
+    @Inject private SchemaNames schemaNames;
+    @Inject private RubyNames rubyNames;
+    @Inject private StructLayouts structLayouts;
+
+    // The buffer where the source is generated, and the names of the instance variables used by the writers:
+    private StringBuilder source;
+    private List<String> variables;
+
+    public void setOut(File newOut) {
+        out = newOut;
+    }
+
+    public void generate(Model model) throws IOException {
+        // Get the struct types, sorted so that the indexes are the same used by the Ruby writers:
+        List<StructType> types = model.types()
+            .filter(StructType.class::isInstance)
+            .map(StructType.class::cast)
+            .sorted()
+            .collect(toList());
+
+        // Collect the names of the instance variables, so that they are converted to identifiers only once:
+        TreeSet<String> collected = new TreeSet<>();
+        collected.add("@href");
+        for (StructType type : types) {
+            getMembers(type).forEach(member -> collected.add(getVariable(member)));
+        }
+        variables = new ArrayList<>(collected);
+
+        // Generate the source:
+        source = new StringBuilder();
+        generateSource(types);
+
+        // Write the file:
+        File extDir = new File(out.getAbsoluteFile().getParentFile(), "ext/ovirtsdk4c");
+        File file = new File(extDir, FILE_NAME);
+        try {
+            FileUtils.writeStringToFile(file, source.toString(), StandardCharsets.UTF_8);
+        }
+        catch (IOException exception) {
+            throw new IllegalStateException("Error writing native writers file \"" + file + "\"", exception);
+        }
+    }
+
+    private void generateSource(List<StructType> types) {
+        // License and warning:
+        source.append("/*\n");
+        source.append("Copyright (c) 2016 Red Hat, Inc.\n");
+        source.append("\n");
+        source.append("Licensed under the Apache License, Version 2.0 (the \"License\");\n");
+        source.append("you may not use this file except in compliance with the License.\n");
+        source.append("You may obtain a copy of the License at\n");
+        source.append("\n");
+        source.append("  http://www.apache.org/licenses/LICENSE-2.0\n");
+        source.append("\n");
+        source.append("Unless required by applicable law or agreed to in writing, software\n");
+        source.append("distributed under the License is distributed on an \"AS IS\" BASIS,\n");
+        source.append("WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.\n");
+        source.append("See the License for the specific language governing permissions and\n");
+        source.append("limitations under the License.\n");
+        source.append("*/\n");
+        source.append("\n");
+        source.append("/* This file is generated from the model, don't modify it manually. */\n");
+        source.append("\n");
+
+        // Includes:
+        source.append("#include <ruby.h>\n");
+        source.append("\n");
+        source.append("#include <stdbool.h>\n");
+        source.append("#include <stdio.h>\n");
+        source.append("\n");
+        source.append("#include \"ov_module.h\"\n");
+        source.append("#include \"ov_error.h\"\n");
+        source.append("#include \"ov_xml_writer.h\"\n");
+        source.append("#include \"ov_xml_writers.h\"\n");
+        source.append("\n");
+
+        // Macros and types:
+        source.append("/* Appends a string literal to the buffer: */\n");
+        source.append("#define OV_CAT(buffer, literal) rb_str_cat(buffer, literal, sizeof(literal) - 1)\n");
+        source.append("\n");
+        source.append("typedef enum {\n");
+        source.append("    OV_XML_WRITERS_STRING,\n");
+        source.append("    OV_XML_WRITERS_BOOLEAN,\n");
+        source.append("    OV_XML_WRITERS_NUMBER,\n");
+        source.append("    OV_XML_WRITERS_DATE\n");
+        source.append("} ov_xml_writers_kind;\n");
+        source.append("\n");
+        source.append("typedef void (*ov_xml_writers_function)(VALUE buffer, VALUE object, const char* tag,\n");
+        source.append("        long length);\n");
+        source.append("\n");
+
+        // Identifiers:
+        source.append("/* Identifiers: */\n");
+        source.append("static ID XMLSCHEMA_ID;\n");
+        source.append("static ID VALUES_ID;\n");
+        source.append("\n");
+        source.append("/* Names and identifiers of the instance variables: */\n");
+        source.append(String.format("#define OV_XML_WRITERS_VARIABLES %d\n", variables.size()));
+        source.append("static const char* ov_xml_writers_names[OV_XML_WRITERS_VARIABLES] = {\n");
+        for (String variable : variables) {
+            source.append(String.format("    \"%s\",\n", variable));
+        }
+        source.append("};\n");
+        source.append("static ID ov_xml_writers_ids[OV_XML_WRITERS_VARIABLES];\n");
+        source.append("\n");
+        source.append("/* Symbols used as keys by the types that have sparse storage, the name without the '@': */\n");
+        source.append("static VALUE ov_xml_writers_keys[OV_XML_WRITERS_VARIABLES];\n");
+        source.append("\n");
+
+        // Utility functions:
+        generateUtilities();
+
+        // Declarations of the functions of the types, as they call each other:
+        for (StructType type : types) {
+            source.append(String.format(
+                "static void %s(VALUE buffer, VALUE object, const char* tag, long length);\n",
+                getFunction(type)
+            ));
+        }
+        source.append("\n");
+
+        // Functions of the types:
+        types.forEach(this::generateWriter);
+
+        // Table of functions, indexed like the Ruby writers:
+        source.append(String.format("#define OV_XML_WRITERS_TYPES %d\n", types.size()));
+        source.append("static const ov_xml_writers_function ov_xml_writers_functions[OV_XML_WRITERS_TYPES] = {\n");
+        for (StructType type : types) {
+            source.append(String.format("    %s,\n", getFunction(type)));
+        }
+        source.append("};\n");
+        source.append("\n");
+
+        // Method and initialization:
+        generateEntry();
+    }
+
+    private void generateUtilities() {
+        // Escaping, the same that libxml does for text and attribute values:
+        source.append("static void ov_xml_writers_escape(VALUE buffer, const char* text, long length,\n");
+        source.append("        bool attribute) {\n");
+        source.append("    const char* entity = NULL;\n");
+        source.append("    long start = 0;\n");
+        source.append("    long i;\n");
+        source.append("\n");
+        source.append("    for (i = 0; i < length; i++) {\n");
+        source.append("        switch (text[i]) {\n");
+        source.append("        case '&': entity = \"&amp;\"; break;\n");
+        source.append("        case '<': entity = \"&lt;\"; break;\n");
+        source.append("        case '>': entity = \"&gt;\"; break;\n");
+        source.append("        case '\"': entity = \"&quot;\"; break;\n");
+        source.append("        case '\\r': entity = \"&#13;\"; break;\n");
+        source.append("        case '\\n': entity = attribute? \"&#10;\": NULL; break;\n");
+        source.append("        case '\\t': entity = attribute? \"&#9;\": NULL; break;\n");
+        source.append("        default: entity = NULL;\n");
+        source.append("        }\n");
+        source.append("        if (entity != NULL) {\n");
+        source.append("            rb_str_cat(buffer, text + start, i - start);\n");
+        source.append("            rb_str_cat2(buffer, entity);\n");
+        source.append("            start = i + 1;\n");
+        source.append("        }\n");
+        source.append("    }\n");
+        source.append("    rb_str_cat(buffer, text + start, length - start);\n");
+        source.append("}\n");
+        source.append("\n");
+
+        // Values, converted the same way than the Ruby writers do:
+        source.append("static void ov_xml_writers_value(VALUE buffer, VALUE value, ov_xml_writers_kind kind,\n");
+        source.append("        bool attribute) {\n");
+        source.append("    char number[32];\n");
+        source.append("    int length = 0;\n");
+        source.append("\n");
+        source.append("    switch (kind) {\n");
+        source.append("    case OV_XML_WRITERS_BOOLEAN:\n");
+        source.append("        if (RTEST(value)) {\n");
+        source.append("            OV_CAT(buffer, \"true\");\n");
+        source.append("        }\n");
+        source.append("        else {\n");
+        source.append("            OV_CAT(buffer, \"false\");\n");
+        source.append("        }\n");
+        source.append("        return;\n");
+        source.append("    case OV_XML_WRITERS_NUMBER:\n");
+        source.append("        if (FIXNUM_P(value)) {\n");
+        source.append("            length = snprintf(number, sizeof(number), \"%ld\", FIX2LONG(value));\n");
+        source.append("            rb_str_cat(buffer, number, length);\n");
+        source.append("            return;\n");
+        source.append("        }\n");
+        source.append("        value = rb_obj_as_string(value);\n");
+        source.append("        break;\n");
+        source.append("    case OV_XML_WRITERS_DATE:\n");
+        source.append("        value = rb_funcall(value, XMLSCHEMA_ID, 0);\n");
+        source.append("        break;\n");
+        source.append("    default:\n");
+        source.append("        break;\n");
+        source.append("    }\n");
+        source.append("    Check_Type(value, T_STRING);\n");
+        source.append("    ov_xml_writers_escape(buffer, RSTRING_PTR(value), RSTRING_LEN(value), attribute);\n");
+        source.append("}\n");
+        source.append("\n");
+
+        // Start and end tags. The start tag is left open, and closed as empty if nothing is written inside:
+        source.append("static void ov_xml_writers_start(VALUE buffer, const char* tag, long length) {\n");
+        source.append("    OV_CAT(buffer, \"<\");\n");
+        source.append("    rb_str_cat(buffer, tag, length);\n");
+        source.append("}\n");
+        source.append("\n");
+        source.append("static void ov_xml_writers_end(VALUE buffer, const char* tag, long length, long start) {\n");
+        source.append("    if (RSTRING_LEN(buffer) == start) {\n");
+        source.append("        rb_str_set_len(buffer, start - 1);\n");
+        source.append("        OV_CAT(buffer, \"/>\");\n");
+        source.append("        return;\n");
+        source.append("    }\n");
+        source.append("    OV_CAT(buffer, \"</\");\n");
+        source.append("    rb_str_cat(buffer, tag, length);\n");
+        source.append("    OV_CAT(buffer, \">\");\n");
+        source.append("}\n");
+        source.append("\n");
+
+        // Values of members, taken from the instance variable or from the hash of the types with sparse storage:
+        source.append("static VALUE ov_xml_writers_member(VALUE object, long index, bool sparse) {\n");
+        source.append("    VALUE values;\n");
+        source.append("\n");
+        source.append("    if (!sparse) {\n");
+        source.append("        return rb_attr_get(object, ov_xml_writers_ids[index]);\n");
+        source.append("    }\n");
+        source.append("    values = rb_attr_get(object, VALUES_ID);\n");
+        source.append("    if (NIL_P(values)) {\n");
+        source.append("        return Qnil;\n");
+        source.append("    }\n");
+        source.append("    return rb_hash_lookup(values, ov_xml_writers_keys[index]);\n");
+        source.append("}\n");
+        source.append("\n");
+
+        // Lists of structs, written like the 'write_many' method of the Ruby writers:
+        source.append("static void ov_xml_writers_list(VALUE buffer, VALUE list, const char* plural,\n");
+        source.append("        long plural_length, const char* singular, long singular_length,\n");
+        source.append("        ov_xml_writers_function function) {\n");
+        source.append("    VALUE href;\n");
+        source.append("    long start;\n");
+        source.append("    long i;\n");
+        source.append("\n");
+        source.append("    Check_Type(list, T_ARRAY);\n");
+        source.append("    ov_xml_writers_start(buffer, plural, plural_length);\n");
+        source.append(String.format(
+            "    href = rb_attr_get(list, ov_xml_writers_ids[%d]);\n",
+            variables.indexOf("@href")
+        ));
+        source.append("    if (!NIL_P(href)) {\n");
+        source.append("        OV_CAT(buffer, \" href=\\\"\");\n");
+        source.append("        ov_xml_writers_value(buffer, href, OV_XML_WRITERS_STRING, true);\n");
+        source.append("        OV_CAT(buffer, \"\\\"\");\n");
+        source.append("    }\n");
+        source.append("    OV_CAT(buffer, \">\");\n");
+        source.append("    start = RSTRING_LEN(buffer);\n");
+        source.append("    for (i = 0; i < RARRAY_LEN(list); i++) {\n");
+        source.append("        function(buffer, rb_ary_entry(list, i), singular, singular_length);\n");
+        source.append("    }\n");
+        source.append("    ov_xml_writers_end(buffer, plural, plural_length, start);\n");
+        source.append("}\n");
+        source.append("\n");
+
+        // Lists of primitive values, that are written only when they aren't empty:
+        source.append("static void ov_xml_writers_values(VALUE buffer, VALUE list, const char* plural,\n");
+        source.append("        long plural_length, const char* singular, long singular_length,\n");
+        source.append("        ov_xml_writers_kind kind) {\n");
+        source.append("    VALUE item;\n");
+        source.append("    long i;\n");
+        source.append("\n");
+        source.append("    Check_Type(list, T_ARRAY);\n");
+        source.append("    if (RARRAY_LEN(list) == 0) {\n");
+        source.append("        return;\n");
+        source.append("    }\n");
+        source.append("    ov_xml_writers_start(buffer, plural, plural_length);\n");
+        source.append("    OV_CAT(buffer, \">\");\n");
+        source.append("    for (i = 0; i < RARRAY_LEN(list); i++) {\n");
+        source.append("        item = rb_ary_entry(list, i);\n");
+        source.append("        if (NIL_P(item)) {\n");
+        source.append("            continue;\n");
+        source.append("        }\n");
+        source.append("        ov_xml_writers_start(buffer, singular, singular_length);\n");
+        source.append("        OV_CAT(buffer, \">\");\n");
+        source.append("        ov_xml_writers_value(buffer, item, kind, false);\n");
+        source.append("        OV_CAT(buffer, \"</\");\n");
+        source.append("        rb_str_cat(buffer, singular, singular_length);\n");
+        source.append("        OV_CAT(buffer, \">\");\n");
+        source.append("    }\n");
+        source.append("    OV_CAT(buffer, \"</\");\n");
+        source.append("    rb_str_cat(buffer, plural, plural_length);\n");
+        source.append("    OV_CAT(buffer, \">\");\n");
+        source.append("}\n");
+        source.append("\n");
+    }
+
+    private void generateWriter(StructType type) {
+        List<StructMember> attributes = new ArrayList<>();
+        List<StructMember> elements = new ArrayList<>();
+        getMembers(type).forEach(member -> {
+            if (schemaNames.isRepresentedAsAttribute(member.getName())) {
+                attributes.add(member);
+            }
+            else {
+                elements.add(member);
+            }
+        });
+
+        source.append(String.format(
+            "static void %s(VALUE buffer, VALUE object, const char* tag, long length) {\n",
+            getFunction(type)
+        ));
+        source.append("    VALUE value;\n");
+        source.append("    long start;\n");
+        source.append("\n");
+        source.append("    ov_xml_writers_start(buffer, tag, length);\n");
+        generateAttributeWrite("href", "@href", false, OV_STRING);
+        for (StructMember member : attributes) {
+            Type memberType = member.getType();
+            String attribute = schemaNames.getSchemaTagName(member.getName());
+            if (memberType instanceof PrimitiveType || memberType instanceof EnumType) {
+                generateAttributeWrite(attribute, getVariable(member), isSparse(member), getKind(memberType));
+            }
+        }
+        source.append("    OV_CAT(buffer, \">\");\n");
+        source.append("    start = RSTRING_LEN(buffer);\n");
+        elements.forEach(this::generateElementWrite);
+        source.append("    ov_xml_writers_end(buffer, tag, length, start);\n");
+        source.append("}\n");
+        source.append("\n");
+    }
+
+    private void generateAttributeWrite(String attribute, String variable, boolean sparse, String kind) {
+        generateMemberGet(variable, sparse);
+        source.append("    if (!NIL_P(value)) {\n");
+        source.append(String.format("        OV_CAT(buffer, \" %s=\\\"\");\n", attribute));
+        source.append(String.format("        ov_xml_writers_value(buffer, value, %s, true);\n", kind));
+        source.append("        OV_CAT(buffer, \"\\\"\");\n");
+        source.append("    }\n");
+    }
+
+    private void generateElementWrite(StructMember member) {
+        Name name = member.getName();
+        Type type = member.getType();
+        String tag = schemaNames.getSchemaTagName(name);
+        generateMemberGet(getVariable(member), isSparse(member));
+        source.append("    if (!NIL_P(value)) {\n");
+        if (type instanceof PrimitiveType || type instanceof EnumType) {
+            source.append(String.format("        OV_CAT(buffer, \"<%s>\");\n", tag));
+            source.append(String.format("        ov_xml_writers_value(buffer, value, %s, false);\n", getKind(type)));
+            source.append(String.format("        OV_CAT(buffer, \"</%s>\");\n", tag));
+        }
+        else if (type instanceof StructType) {
+            source.append(String.format(
+                "        %s(buffer, value, \"%s\", %d);\n",
+                getFunction(type),
+                tag,
+                tag.length()
+            ));
+        }
+        else if (type instanceof ListType) {
+            Type elementType = ((ListType) type).getElementType();
+            String singularTag = schemaNames.getSchemaTagName(names.getSingular(name));
+            if (elementType instanceof StructType) {
+                source.append(String.format(
+                    "        ov_xml_writers_list(buffer, value, \"%s\", %d, \"%s\", %d, %s);\n",
+                    tag,
+                    tag.length(),
+                    singularTag,
+                    singularTag.length(),
+                    getFunction(elementType)
+                ));
+            }
+            else {
+                source.append(String.format(
+                    "        ov_xml_writers_values(buffer, value, \"%s\", %d, \"%s\", %d, %s);\n",
+                    tag,
+                    tag.length(),
+                    singularTag,
+                    singularTag.length(),
+                    getKind(elementType)
+                ));
+            }
+        }
+        source.append("    }\n");
+    }
+
+    private void generateMemberGet(String variable, boolean sparse) {
+        source.append(String.format(
+            "    value = ov_xml_writers_member(object, %d, %s);\n",
+            variables.indexOf(variable),
+            sparse
+        ));
+    }
+
+    private void generateEntry() {
+        source.append("static VALUE ov_xml_writers_write_struct(VALUE self, VALUE index, VALUE object, VALUE tag) {\n");
+        source.append("    VALUE buffer;\n");
+        source.append("    long i;\n");
+        source.append("\n");
+        source.append("    i = NUM2LONG(index);\n");
+        source.append("    if (i < 0 || i >= OV_XML_WRITERS_TYPES) {\n");
+        source.append("        rb_raise(ov_error_class, \"The type index %ld isn't valid\", i);\n");
+        source.append("    }\n");
+        source.append("    if (TYPE(object) != T_OBJECT) {\n");
+        source.append("        rb_raise(rb_eTypeError, \"The value to write isn't a struct\");\n");
+        source.append("    }\n");
+        source.append("    Check_Type(tag, T_STRING);\n");
+        source.append("\n");
+        source.append("    /* Generate the complete text in the buffer, and write it to the XML writer at once: */\n");
+        source.append("    buffer = rb_str_buf_new(256);\n");
+        source.append("    ov_xml_writers_functions[i](buffer, object, RSTRING_PTR(tag), RSTRING_LEN(tag));\n");
+        source.append("    ov_xml_writer_write_raw(self, buffer);\n");
+        source.append("    return Qnil;\n");
+        source.append("}\n");
+        source.append("\n");
+        source.append("void ov_xml_writers_define(void) {\n");
+        source.append("    int i;\n");
+        source.append("\n");
+        source.append("    /* Define the methods: */\n");
+        source.append("    rb_define_method(ov_xml_writer_class, \"write_struct\", ov_xml_writers_write_struct, 3);\n");
+        source.append("\n");
+        source.append("    /* Create the identifiers: */\n");
+        source.append("    XMLSCHEMA_ID = rb_intern(\"xmlschema\");\n");
+        source.append(String.format("    VALUES_ID = rb_intern(\"%s\");\n", StructLayouts.VALUES_VARIABLE));
+        source.append("    for (i = 0; i < OV_XML_WRITERS_VARIABLES; i++) {\n");
+        source.append("        ov_xml_writers_ids[i] = rb_intern(ov_xml_writers_names[i]);\n");
+        source.append("        ov_xml_writers_keys[i] = ID2SYM(rb_intern(ov_xml_writers_names[i] + 1));\n");
+        source.append("    }\n");
+        source.append("}\n");
+    }
+
+    private String getKind(Type type) {
+        if (type instanceof PrimitiveType) {
+            Model model = type.getModel();
+            if (type == model.getBooleanType()) {
+                return OV_BOOLEAN;
+            }
+            if (type == model.getIntegerType() || type == model.getDecimalType()) {
+                return OV_NUMBER;
+            }
+            if (type == model.getDateType()) {
+                return OV_DATE;
+            }
+        }
+        return OV_STRING;
+    }
+
+    private List<StructMember> getMembers(StructType type) {
+        // The same order used by the Ruby writers, first the attributes and then the links:
+        List<StructMember> members = new ArrayList<>();
+        type.attributes().sorted().forEach(members::add);
+        type.links().sorted().forEach(members::add);
+        return members;
+    }
+
+    private String getVariable(StructMember member) {
+        return "@" + rubyNames.getMemberStyleName(member.getName());
+    }
+
+    private boolean isSparse(StructMember member) {
+        // The storage is decided by the type that declares the member, as that is where the accessors are generated:
+        return structLayouts.isSparse(member.getDeclaringType());
+    }
+
+    private String getFunction(Type type) {
+        return "ov_xml_writers_write_" + schemaNames.getSchemaTagName(type.getName());
+    }
+}
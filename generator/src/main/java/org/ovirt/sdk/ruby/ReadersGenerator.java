@@ -21,6 +21,7 @@ import static java.util.stream.Collectors.toList;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import javax.enterprise.inject.spi.CDI;
 import javax.inject.Inject;
@@ -48,6 +49,17 @@ public class ReadersGenerator implements RubyGenerator {
     @Inject private Names names;
     @Inject private SchemaNames schemaNames;
     @Inject private RubyNames rubyNames;
+    @Inject private StructLayouts structLayouts;
+    @Inject private XmlTags xmlTags;
+
+    // The model that is being generated:
+    private Model model;
+
+    // Indicates if the code being generated reads into an existing object, reusing its nested objects and lists:
+    private boolean into;
+
+    // Indicates if the code being generated reads into plain frozen hashes and arrays instead of typed objects:
+    private boolean raw;
 
     // The buffer used to generate the Ruby code:
     @Inject private RubyBuffer buffer;
@@ -75,6 +87,9 @@ public class ReadersGenerator implements RubyGenerator {
     }
 
     private void generateSource(Model model) {
+        // Save the model, as it is needed to calculate the identifiers of the tags:
+        this.model = model;
+
         // Begin module:
         String moduleName = rubyNames.getModuleName();
         buffer.beginModule(moduleName);
@@ -87,7 +102,9 @@ public class ReadersGenerator implements RubyGenerator {
             .sorted()
             .forEach(this::generateReader);
 
-        // Generate code to register the readers:
+        // Generate the table that contains for each tag the reader class and method. It contains only frozen strings,
+        // symbols and classes, and it is frozen itself, so that it can be shared by multiple ractors:
+        buffer.addLine("Reader::READERS = {");
         model.types()
             .filter(StructType.class::isInstance)
             .map(StructType.class::cast)
@@ -97,9 +114,10 @@ public class ReadersGenerator implements RubyGenerator {
                 String singularTag = schemaNames.getSchemaTagName(typeName);
                 String pluralTag = schemaNames.getSchemaTagName(names.getPlural(typeName));
                 String className = rubyNames.getReaderName(type).getClassName();
-                buffer.addLine("Reader.register('%1$s', %2$s.method(:read_one))", singularTag, className);
-                buffer.addLine("Reader.register('%1$s', %2$s.method(:read_many))", pluralTag, className);
+                buffer.addLine("'%1$s' => [%2$s, :read_one].freeze,", singularTag, className);
+                buffer.addLine("'%1$s' => [%2$s, :read_many].freeze,", pluralTag, className);
             });
+        buffer.addLine("}.freeze");
 
         // End module:
         buffer.endModule(moduleName);
@@ -114,22 +132,126 @@ public class ReadersGenerator implements RubyGenerator {
         buffer.addLine("class %1$s < %2$s # :nodoc:", readerName.getClassName(), baseName.getClassName());
         buffer.addLine();
 
-        // Generate the method that reads one instance:
-        buffer.addLine("def self.read_one(reader)");
+        // Generate the method that reads one instance, and the one that reads into an existing instance:
+        generateReadOne(type, false);
+        generateReadOne(type, true);
+
+        // Generate the method that reads many instances:
+        buffer.addLine("def self.read_many(reader, list = nil)");
+        buffer.addLine(  "# Create the list, or reuse the given one:");
+        buffer.addLine(  "list = %1$s.new if list.nil?", rubyNames.getBaseListName().getClassName());
+        buffer.addLine();
+        buffer.addLine(  "# Do nothing if there aren't more tags:");
+        buffer.addLine(  "unless reader.forward");
+        buffer.addLine(    "list.clear");
+        buffer.addLine(    "return list");
+        buffer.addLine(  "end");
+        buffer.addLine();
+        buffer.addLine(  "# Process the attributes:");
+        buffer.addLine(  "list.href = reader.attributes['href']");
+        buffer.addLine();
+        buffer.addLine(  "# Discard the start tag:");
+        buffer.addLine(  "empty = reader.empty_element?");
+        buffer.addLine(  "reader.read");
+        buffer.addLine();
+        buffer.addLine(  "# Process the inner elements, reusing the objects that are already in the list, except");
+        buffer.addLine(  "# those that came from an identity map, as other objects may reference them:");
+        buffer.addLine(  "index = 0");
+        buffer.addLine(  "unless empty");
+        buffer.addLine(    "while reader.forward do");
+        buffer.addLine(      "item = list[index]");
+        buffer.addLine(      "if item.nil? || item.identity_shared?");
+        buffer.addLine(        "list[index] = read_one(reader)");
+        buffer.addLine(      "else");
+        buffer.addLine(        "list[index] = read_into(reader, item)");
+        buffer.addLine(      "end");
+        buffer.addLine(      "index += 1");
+        buffer.addLine(    "end");
+        buffer.addLine();
+        buffer.addLine(    "# Discard the end tag:");
+        buffer.addLine(    "reader.read");
+        buffer.addLine(  "end");
+        buffer.addLine();
+        buffer.addLine(  "# Remove the objects that weren't reused:");
+        buffer.addLine(  "list.slice!(index, list.size - index) if list.size > index");
+        buffer.addLine();
+        buffer.addLine(  "return list");
+        buffer.addLine("end");
+        buffer.addLine();
+
+        // Generate the methods that read lists into columns:
+        generateReadColumns(type);
+
+        // Generate the methods that read plain hashes and arrays:
+        generateReadRaw(type);
+
+        // Generate the methods that read links to lists:
+        generateReadLink(type, false);
+        generateReadLink(type, true);
+
+        // End class:
+        buffer.addLine("end");
+        buffer.addLine();
+    }
+
+    private void generateReadOne(StructType type, boolean newInto) {
+        into = newInto;
+        RubyName typeName = rubyNames.getTypeName(type);
+        if (into) {
+            buffer.addLine("def self.read_into(reader, object)");
+        }
+        else {
+            buffer.addLine("def self.read_one(reader)");
+        }
         buffer.addLine(  "# Do nothing if there aren't more tags:");
         buffer.addLine(  "return nil unless reader.forward");
         buffer.addLine();
-        buffer.addLine(  "# Create the object:");
-        buffer.addLine(  "object = %s.new", typeName.getClassName());
+        if (into) {
+            buffer.addLine("# Save the nested objects and lists, so that they can be reused, and clear the members,");
+            buffer.addLine("# without recording those modifications:");
+            buffer.addLine("object.ignore_changes");
+            generateMembersSave(type);
+        }
+        else {
+            buffer.addLine("# If the reader has an identity map, then references to objects that have already been");
+            buffer.addLine("# read in this document are shared:");
+            buffer.addLine("cache = nil");
+            buffer.addLine("identities = reader.identities");
+            buffer.addLine("if !identities.nil? && reader.empty_element?");
+            buffer.addLine(  "href = reader.get_attribute('href')");
+            buffer.addLine(  "unless href.nil?");
+            buffer.addLine(    "cache = identities[%1$s] ||= {}", typeName.getClassName());
+            buffer.addLine(    "shared = cache[href]");
+            buffer.addLine(    "unless shared.nil?");
+            buffer.addLine(      "reader.read");
+            buffer.addLine(      "return shared");
+            buffer.addLine(    "end");
+            buffer.addLine(  "end");
+            buffer.addLine("end");
+            buffer.addLine();
+            generateAllocate(type, typeName);
+        }
         buffer.addLine();
-        buffer.addLine(  "# Process the attributes:");
-        buffer.addLine(  "object.href = reader.get_attribute('href')");
+        buffer.addLine(  "# Process the attributes, all of them fetched with a single call:");
+        buffer.addLine(  "attributes = reader.attributes");
+        buffer.addLine(  "unless attributes.empty?");
+        buffer.addLine(    "object.href = attributes['href']");
         generateAttributesRead(type);
+        buffer.addLine(  "end");
         buffer.addLine();
         buffer.addLine(  "# Discard the start tag:");
         buffer.addLine(  "empty = reader.empty_element?");
         buffer.addLine(  "reader.read");
-        buffer.addLine(  "return object if empty");
+        buffer.addLine("if empty");
+        if (!into) {
+            buffer.addLine("unless cache.nil?");
+            buffer.addLine(  "cache[href] = object");
+            buffer.addLine(  "object.identity_shared!");
+            buffer.addLine("end");
+        }
+        buffer.addLine(  "object.clear_changes(false)");
+        buffer.addLine(  "return object");
+        buffer.addLine("end");
         buffer.addLine();
         buffer.addLine(  "# Process the inner elements:");
         generateElementsRead(type);
@@ -137,72 +259,243 @@ public class ReadersGenerator implements RubyGenerator {
         buffer.addLine(  "# Discard the end tag:");
         buffer.addLine(  "reader.read");
         buffer.addLine();
+        buffer.addLine(  "# The nested objects have already been cleared when they were read, so only the changes");
+        buffer.addLine(  "# recorded by the setters of this object need to be forgotten:");
+        buffer.addLine(  "object.clear_changes(false)");
         buffer.addLine(  "return object");
         buffer.addLine("end");
         buffer.addLine();
+        into = false;
+    }
+
+    private void generateReadLink(StructType type, boolean newRaw) {
+        List<Link> listLinks = type.links()
+            .filter(link -> link.getType() instanceof ListType)
+            .sorted()
+            .collect(toList());
+        if (listLinks.isEmpty()) {
+            return;
+        }
+        buffer.addLine("def self.%1$s(reader, object)", newRaw ? "read_raw_link" : "read_link");
+        buffer.addLine(  "# Process the attributes:");
+        buffer.addLine(  "attributes = reader.attributes");
+        buffer.addLine(  "rel = attributes['rel']");
+        buffer.addLine(  "href = attributes['href']");
+        buffer.addLine(  "if rel && href");
+        if (newRaw) {
+            buffer.addLine("list = { :href => href }.freeze");
+        }
+        else {
+            buffer.addLine("list = %1$s.new", rubyNames.getBaseListName().getClassName());
+            buffer.addLine("list.href = href");
+        }
+        buffer.addLine(    "case rel");
+        listLinks.forEach(link -> {
+            Name name = link.getName();
+            String property = rubyNames.getMemberStyleName(name);
+            String rel = name.words().map(String::toLowerCase).collect(joining());
+            buffer.addLine("when '%1$s'", rel);
+            if (newRaw) {
+                buffer.addLine("object[:%1$s] = list", property);
+            }
+            else {
+                buffer.addLine("object.%1$s = list", property);
+            }
+        });
+        buffer.addLine(    "end");
+        buffer.addLine(  "end");
         buffer.addLine();
+        buffer.addLine(  "# Discard the rest of the element:");
+        buffer.addLine(  "reader.next_element");
+        buffer.addLine("end");
+        buffer.addLine();
+    }
 
-        // Generate the method that reads many instances:
-        buffer.addLine("def self.read_many(reader)");
+    private void generateReadRaw(StructType type) {
+        raw = true;
+
+        // Generate the method that reads one hash:
+        buffer.addLine("def self.read_raw_one(reader)");
         buffer.addLine(  "# Do nothing if there aren't more tags:");
-        buffer.addLine(  "list = %1$s.new", rubyNames.getBaseListName().getClassName());
-        buffer.addLine(  "return list unless reader.forward");
+        buffer.addLine(  "return nil unless reader.forward");
         buffer.addLine();
-        buffer.addLine(  "# Process the attributes:");
-        buffer.addLine(  "list.href = reader.get_attribute('href')");
+        buffer.addLine(  "# Create the hash:");
+        buffer.addLine(  "object = {}");
+        buffer.addLine();
+        buffer.addLine(  "# Process the attributes, all of them fetched with a single call:");
+        buffer.addLine(  "attributes = reader.attributes");
+        buffer.addLine(  "unless attributes.empty?");
+        buffer.addLine(    "value = attributes['href']");
+        buffer.addLine(    "object[:href] = value unless value.nil?");
+        generateAttributesRead(type);
+        buffer.addLine(  "end");
         buffer.addLine();
         buffer.addLine(  "# Discard the start tag:");
         buffer.addLine(  "empty = reader.empty_element?");
         buffer.addLine(  "reader.read");
-        buffer.addLine(  "return list if empty");
+        buffer.addLine(  "return object.freeze if empty");
         buffer.addLine();
         buffer.addLine(  "# Process the inner elements:");
-        buffer.addLine(  "while reader.forward do");
-        buffer.addLine(    "list << read_one(reader)");
-        buffer.addLine(  "end");
+        generateElementsRead(type);
         buffer.addLine();
         buffer.addLine(  "# Discard the end tag:");
         buffer.addLine(  "reader.read");
         buffer.addLine();
-        buffer.addLine(  "return list");
+        buffer.addLine(  "return object.freeze");
         buffer.addLine("end");
         buffer.addLine();
 
-        // Generate the method that reads links to lists:
-        List<Link> listLinks = type.links()
-            .filter(link -> link.getType() instanceof ListType)
-            .sorted()
-            .collect(toList());
-        if (!listLinks.isEmpty()) {
-            buffer.addLine("def self.read_link(reader, object)");
-            buffer.addLine(  "# Process the attributes:");
-            buffer.addLine(  "rel = reader.get_attribute('rel')");
-            buffer.addLine(  "href = reader.get_attribute('href')");
-            buffer.addLine(  "if rel && href");
-            buffer.addLine(    "list = %1$s.new", rubyNames.getBaseListName().getClassName());
-            buffer.addLine(    "list.href = href");
-            buffer.addLine(    "case rel");
-            listLinks.forEach(link -> {
-                Name name = link.getName();
-                String property = rubyNames.getMemberStyleName(name);
-                String rel = name.words().map(String::toLowerCase).collect(joining());
-                buffer.addLine("when '%1$s'", rel);
-                buffer.addLine(  "object.%1$s = list", property);
-            });
-            buffer.addLine(    "end");
-            buffer.addLine(  "end");
-            buffer.addLine();
-            buffer.addLine(  "# Discard the rest of the element:");
-            buffer.addLine(  "reader.next_element");
-            buffer.addLine("end");
-            buffer.addLine();
-        }
+        // Generate the method that reads an array of hashes:
+        buffer.addLine("def self.read_raw_many(reader)");
+        buffer.addLine(  "# Create the array:");
+        buffer.addLine(  "list = []");
+        buffer.addLine();
+        buffer.addLine(  "# Do nothing if there aren't more tags:");
+        buffer.addLine(  "return list.freeze unless reader.forward");
+        buffer.addLine();
+        buffer.addLine(  "# Discard the start tag:");
+        buffer.addLine(  "empty = reader.empty_element?");
+        buffer.addLine(  "reader.read");
+        buffer.addLine();
+        buffer.addLine(  "# Process the inner elements:");
+        buffer.addLine(  "unless empty");
+        buffer.addLine(    "while reader.forward do");
+        buffer.addLine(      "list << read_raw_one(reader)");
+        buffer.addLine(    "end");
+        buffer.addLine();
+        buffer.addLine(    "# Discard the end tag:");
+        buffer.addLine(    "reader.read");
+        buffer.addLine(  "end");
+        buffer.addLine();
+        buffer.addLine(  "return list.freeze");
+        buffer.addLine("end");
+        buffer.addLine();
 
-        // End class:
+        raw = false;
+    }
+
+    private void generateReadColumns(StructType type) {
+        // The names of the members that can be selected. They are checked here, and also when the columns are
+        // extracted from the objects read from JSON documents, so that both paths accept the same names:
+        buffer.addLine("COLUMNS = [");
+        type.attributes().sorted().forEach(this::generateColumnName);
+        type.links().sorted().forEach(this::generateColumnName);
+        buffer.addLine("].freeze");
+        buffer.addLine();
+
+        buffer.addLine("def self.read_columns(reader, names)");
+        buffer.addLine(  "# Check that the selected names are members of the type:");
+        buffer.addLine(  "Reader.check_columns(names, COLUMNS)");
+        buffer.addLine();
+        buffer.addLine(  "# Create one array for each of the selected members:");
+        buffer.addLine(  "columns = {}");
+        buffer.addLine(  "names.each do |name|");
+        buffer.addLine(    "columns[name] = []");
+        buffer.addLine(  "end");
+        buffer.addLine();
+        buffer.addLine(  "# Do nothing if there aren't more tags:");
+        buffer.addLine(  "return columns unless reader.forward");
+        buffer.addLine();
+        buffer.addLine(  "# Discard the start tag:");
+        buffer.addLine(  "empty = reader.empty_element?");
+        buffer.addLine(  "reader.read");
+        buffer.addLine();
+        buffer.addLine(  "# Process the inner elements, one row each:");
+        buffer.addLine(  "index = 0");
+        buffer.addLine(  "unless empty");
+        buffer.addLine(    "while reader.forward do");
+        buffer.addLine(      "read_row(reader, columns, index)");
+        buffer.addLine(      "index += 1");
+        buffer.addLine(    "end");
+        buffer.addLine();
+        buffer.addLine(    "# Discard the end tag:");
+        buffer.addLine(    "reader.read");
+        buffer.addLine(  "end");
+        buffer.addLine();
+        buffer.addLine(  "# Make sure that all the columns have one value per row, even if the last rows lack it:");
+        buffer.addLine(  "columns.each_value do |column|");
+        buffer.addLine(    "column[index - 1] = nil if column.size < index");
+        buffer.addLine(  "end");
+        buffer.addLine();
+        buffer.addLine(  "return columns");
+        buffer.addLine("end");
+        buffer.addLine();
+
+        buffer.addLine("def self.read_row(reader, columns, index)");
+        buffer.addLine(  "# Process the attributes:");
+        buffer.addLine(  "attributes = reader.attributes");
+        buffer.addLine(  "unless attributes.empty?");
+        type.attributes().sorted().forEach(this::generateAttributeColumnRead);
+        type.links().sorted().forEach(this::generateAttributeColumnRead);
+        buffer.addLine(  "end");
+        buffer.addLine();
+        buffer.addLine(  "# Discard the start tag:");
+        buffer.addLine(  "empty = reader.empty_element?");
+        buffer.addLine(  "reader.read");
+        buffer.addLine(  "return if empty");
+        buffer.addLine();
+        buffer.addLine(  "# Process the inner elements, skipping the ones that haven't been selected:");
+        buffer.addLine(  "while reader.forward do");
+        buffer.addLine(    "case reader.node_id");
+        type.attributes().sorted().forEach(this::generateElementColumnRead);
+        type.links().sorted().forEach(this::generateElementColumnRead);
+        buffer.addLine(    "else");
+        buffer.addLine(      "reader.next_element");
+        buffer.addLine(    "end");
+        buffer.addLine(  "end");
+        buffer.addLine();
+        buffer.addLine(  "# Discard the end tag:");
+        buffer.addLine(  "reader.read");
         buffer.addLine("end");
         buffer.addLine();
     }
 
+    private void generateColumnName(StructMember member) {
+        buffer.addLine(":%1$s,", rubyNames.getMemberStyleName(member.getName()));
+    }
+
+    private void generateAttributeColumnRead(StructMember member) {
+        Name name = member.getName();
+        Type type = member.getType();
+        if (type instanceof PrimitiveType || type instanceof EnumType) {
+            String property = rubyNames.getMemberStyleName(name);
+            String tag = schemaNames.getSchemaTagName(name);
+            buffer.addLine("column = columns[:%1$s]", property);
+            buffer.addLine("column[index] = attributes['%1$s'] unless column.nil?", tag);
+        }
+    }
+
+    private void generateElementColumnRead(StructMember member) {
+        Name name = member.getName();
+        String property = rubyNames.getMemberStyleName(name);
+        String tag = schemaNames.getSchemaTagName(name);
+        buffer.addLine("when %1$d # %2$s", xmlTags.getId(model, tag), tag);
+        buffer.addLine(  "column = columns[:%1$s]", property);
+        buffer.addLine(  "if column.nil?");
+        buffer.addLine(    "reader.next_element");
+        buffer.addLine(  "else");
+        generateMemberRead(member, "column[index]");
+        buffer.addLine(  "end");
+    }
+
+    private void generateMembersSave(StructType type) {
+        List<StructMember> members = new ArrayList<>();
+        type.attributes().sorted().forEach(members::add);
+        type.links().sorted().forEach(members::add);
+        for (StructMember member : members) {
+            Type memberType = member.getType();
+            if (memberType instanceof StructType || memberType instanceof ListType) {
+                String property = rubyNames.getMemberStyleName(member.getName());
+                buffer.addLine("old_%1$s = object.%1$s", property);
+            }
+        }
+        buffer.addLine("object.href = nil");
+        for (StructMember member : members) {
+            String property = rubyNames.getMemberStyleName(member.getName());
+            buffer.addLine("object.%1$s = nil", property);
+        }
+    }
+
     private void generateAttributesRead(StructType type) {
         type.attributes().sorted().forEach(this::generateAttributeRead);
         type.links().sorted().forEach(this::generateAttributeRead);
@@ -214,8 +507,13 @@ public class ReadersGenerator implements RubyGenerator {
         if (type instanceof PrimitiveType || type instanceof EnumType) {
             String property = rubyNames.getMemberStyleName(name);
             String tag = schemaNames.getSchemaTagName(name);
-            buffer.addLine("value = reader.get_attribute('%s')", tag);
-            buffer.addLine("object.%1$s = value if not value.nil?", property);
+            buffer.addLine("value = attributes['%s']", tag);
+            if (raw) {
+                buffer.addLine("object[:%1$s] = value unless value.nil?", property);
+            }
+            else {
+                buffer.addLine("%1$s = value if not value.nil?", getTarget(member));
+            }
         }
     }
 
@@ -227,17 +525,34 @@ public class ReadersGenerator implements RubyGenerator {
             .count();
         long membersCount = attributesCount + linksCount;
         if (membersCount > 0) {
-            buffer.addLine("while reader.forward do");
-            buffer.addLine(  "case reader.node_name");
+            // The server writes the elements in the order that the members are declared in the model, so first check
+            // them in that order, and fall back to the general dispatch only when an element is out of order or
+            // unknown. Members represented as XML attributes never appear as elements, so they aren't checked:
+            buffer.addLine("id = reader.next_id");
+            if (listLinksCount > 0) {
+                buffer.addLine("while id == %1$d do # link", xmlTags.getId(model, "link"));
+                buffer.addLine(  "%1$s(reader, object)", raw ? "read_raw_link" : "read_link");
+                buffer.addLine(  "id = reader.next_id");
+                buffer.addLine("end");
+            }
+            type.attributes()
+                .filter(attribute -> !schemaNames.isRepresentedAsAttribute(attribute.getName()))
+                .forEach(this::generateExpectedElementRead);
+            type.links()
+                .filter(link -> !schemaNames.isRepresentedAsAttribute(link.getName()))
+                .forEach(this::generateExpectedElementRead);
+            buffer.addLine("while id do");
+            buffer.addLine(  "case id");
             type.attributes().sorted().forEach(this::generateElementRead);
             type.links().sorted().forEach(this::generateElementRead);
             if (listLinksCount > 0) {
-                buffer.addLine("when 'link'");
-                buffer.addLine(  "read_link(reader, object)");
+                buffer.addLine("when %1$d # link", xmlTags.getId(model, "link"));
+                buffer.addLine(  "%1$s(reader, object)", raw ? "read_raw_link" : "read_link");
             }
             buffer.addLine(  "else");
             buffer.addLine(    "reader.next_element");
             buffer.addLine(  "end");
+            buffer.addLine(  "id = reader.next_id");
             buffer.addLine("end");
         }
         else {
@@ -245,13 +560,70 @@ public class ReadersGenerator implements RubyGenerator {
         }
     }
 
+    private void generateExpectedElementRead(StructMember member) {
+        String tag = schemaNames.getSchemaTagName(member.getName());
+        buffer.addLine("if id == %1$d # %2$s", xmlTags.getId(model, tag), tag);
+        generateMemberRead(member);
+        buffer.addLine(  "id = reader.next_id");
+        buffer.addLine("end");
+    }
+
     private void generateElementRead(StructMember member) {
-        Name name = member.getName();
+        String tag = schemaNames.getSchemaTagName(member.getName());
+        buffer.addLine("when %1$d # %2$s", xmlTags.getId(model, tag), tag);
+        generateMemberRead(member);
+    }
+
+    private void generateMemberRead(StructMember member) {
+        String property = rubyNames.getMemberStyleName(member.getName());
+        if (raw) {
+            // The raw hashes only contain the members that have values, like the ones created from JSON documents, so
+            // empty elements are read into a local variable first:
+            generateMemberRead(member, "value");
+            buffer.addLine("object[:%1$s] = value unless value.nil?", property);
+        }
+        else if (isValuesTarget(member)) {
+            // The hash of a type with sparse storage only contains the values that aren't nil, so empty elements are
+            // read into a local variable first:
+            generateMemberRead(member, "value");
+            buffer.addLine("%1$s = value unless value.nil?", getTarget(member));
+        }
+        else {
+            generateMemberRead(member, getTarget(member));
+        }
+    }
+
+    private void generateAllocate(StructType type, RubyName typeName) {
+        // The constructor isn't called, so the cost of creating the object doesn't depend on the number of members of
+        // the type. When the type uses sparse storage the hash is created here, and then the members are stored
+        // directly in it, without calling the setters:
+        buffer.addLine("# Create the object, without calling the constructor:");
+        buffer.addLine("object = %s.allocate", typeName.getClassName());
+        if (structLayouts.hasValues(type)) {
+            buffer.addLine("values = {}");
+            buffer.addLine("object.instance_variable_set(:%1$s, values)", StructLayouts.VALUES_VARIABLE);
+        }
+
+        // The setters that are called for the rest of the members don't need to record the modifications, as they
+        // are forgotten when the object has been read:
+        buffer.addLine("object.ignore_changes");
+    }
+
+    private String getTarget(StructMember member) {
+        // When reading into an existing object there is no local reference to the hash, so the setters are used:
+        String property = rubyNames.getMemberStyleName(member.getName());
+        if (isValuesTarget(member)) {
+            return String.format("values[:%1$s]", property);
+        }
+        return String.format("object.%1$s", property);
+    }
+
+    private boolean isValuesTarget(StructMember member) {
+        return !into && structLayouts.isSparse(member.getDeclaringType());
+    }
+
+    private void generateMemberRead(StructMember member, String variable) {
         Type type = member.getType();
-        String property = rubyNames.getMemberStyleName(name);
-        String tag = schemaNames.getSchemaTagName(name);
-        String variable = String.format("object.%1$s", property);
-        buffer.addLine("when '%1$s'", tag);
         if (type instanceof PrimitiveType) {
             generateReadPrimitive(member, variable);
         }
@@ -276,16 +648,16 @@ public class ReadersGenerator implements RubyGenerator {
             buffer.addLine("%1$s = Reader.read_string(reader)", variable);
         }
         else if (type == model.getBooleanType()) {
-            buffer.addLine("%1$s = Reader.read_boolean(reader)", variable);
+            buffer.addLine("%1$s = reader.read_boolean", variable);
         }
         else if (type == model.getIntegerType()) {
-            buffer.addLine("%1$s = Reader.read_integer(reader)", variable);
+            buffer.addLine("%1$s = reader.read_integer", variable);
         }
         else if (type == model.getDecimalType()) {
-            buffer.addLine("%1$s = Reader.read_decimal(reader)", variable);
+            buffer.addLine("%1$s = reader.read_decimal", variable);
         }
         else if (type == model.getDateType()) {
-            buffer.addLine("%1$s = Reader.read_date(reader)", variable);
+            buffer.addLine("%1$s = reader.read_date", variable);
         }
         else {
             buffer.addLine("reader.next_element");
@@ -298,7 +670,22 @@ public class ReadersGenerator implements RubyGenerator {
 
     private void generateReadStruct(StructMember member, String variable) {
         RubyName readerName = rubyNames.getReaderName(member.getType());
-        buffer.addLine("%1$s = %2$s.read_one(reader)", variable, readerName.getClassName());
+        if (raw) {
+            buffer.addLine("%1$s = %2$s.read_raw_one(reader)", variable, readerName.getClassName());
+        }
+        else if (into) {
+            // Objects that came from an identity map may be referenced by other objects, so they aren't overwritten:
+            String old = "old_" + rubyNames.getMemberStyleName(member.getName());
+            buffer.addLine(
+                "%1$s = %2$s.nil? || %2$s.identity_shared? ? %3$s.read_one(reader) : %3$s.read_into(reader, %2$s)",
+                variable,
+                old,
+                readerName.getClassName()
+            );
+        }
+        else {
+            buffer.addLine("%1$s = %2$s.read_one(reader)", variable, readerName.getClassName());
+        }
     }
 
     private void generateReadList(StructMember member, String variable) {
@@ -306,13 +693,28 @@ public class ReadersGenerator implements RubyGenerator {
         Type elementType = type.getElementType();
         if (elementType instanceof PrimitiveType) {
             generateReadPrimitives((PrimitiveType) elementType, variable);
+            if (raw) {
+                buffer.addLine("%1$s.freeze", variable);
+            }
         }
         else if (elementType instanceof EnumType) {
             generateReadEnum((EnumType) elementType, variable);
+            if (raw) {
+                buffer.addLine("%1$s.freeze", variable);
+            }
         }
         else if (elementType instanceof StructType) {
             RubyName readerName = rubyNames.getReaderName(elementType);
-            buffer.addLine("%1$s = %2$s.read_many(reader)", variable, readerName.getClassName());
+            if (raw) {
+                buffer.addLine("%1$s = %2$s.read_raw_many(reader)", variable, readerName.getClassName());
+            }
+            else if (into) {
+                String old = "old_" + rubyNames.getMemberStyleName(member.getName());
+                buffer.addLine("%1$s = %2$s.read_many(reader, %3$s)", variable, readerName.getClassName(), old);
+            }
+            else {
+                buffer.addLine("%1$s = %2$s.read_many(reader)", variable, readerName.getClassName());
+            }
         }
         else {
             buffer.addLine("reader.next_element");
@@ -325,16 +727,16 @@ public class ReadersGenerator implements RubyGenerator {
             buffer.addLine("%1$s = Reader.read_strings(reader)", variable);
         }
         else if (type == model.getBooleanType()) {
-            buffer.addLine("%1$s = Reader.read_booleans(reader)", variable);
+            buffer.addLine("%1$s = reader.read_booleans", variable);
         }
         else if (type == model.getIntegerType()) {
-            buffer.addLine("%1$s = Reader.read_integers(reader)", variable);
+            buffer.addLine("%1$s = reader.read_integers", variable);
         }
         else if (type == model.getDecimalType()) {
-            buffer.addLine("%1$s = Reader.read_decimals(reader)", variable);
+            buffer.addLine("%1$s = reader.read_decimals", variable);
         }
         else if (type == model.getDateType()) {
-            buffer.addLine("%1$s = Reader.read_dates(reader)", variable);
+            buffer.addLine("%1$s = reader.read_dates", variable);
         }
         else {
             buffer.addLine("reader.next_element");
@@ -114,6 +114,7 @@ public class RubyBuffer {
         boolean isBegin =
             line.endsWith("(") ||
             line.endsWith("[") ||
+            line.endsWith("{") ||
             line.endsWith("|") ||
             line.equals("begin") ||
             line.equals("else") ||
@@ -130,6 +131,7 @@ public class RubyBuffer {
         boolean isEnd =
             line.equals(")") ||
             line.equals("]") ||
+            line.startsWith("}") ||
             line.equals("else") ||
             line.equals("else") ||
             line.equals("end") ||
@@ -328,6 +330,10 @@ public class RubyBuffer {
     public String toString() {
         StringBuilder buffer = new StringBuilder();
 
+        // Make all the string literals frozen, so that the generated constants can be shared by multiple ractors:
+        buffer.append("# frozen_string_literal: true\n");
+        buffer.append("\n");
+
         // License:
         buffer.append("#\n");
         buffer.append("# Copyright (c) 2015-2016 Red Hat, Inc.\n");
@@ -39,7 +39,10 @@ import org.ovirt.api.metamodel.tool.Words;
 public class RubyNames {
     // The names of the base classes:
     public static final Name ACTION_NAME = NameParser.parseUsingCase("Action");
+    public static final Name BINARY_CODEC_NAME = NameParser.parseUsingCase("BinaryCodec");
     public static final Name FAULT_NAME = NameParser.parseUsingCase("Fault");
+    public static final Name JSON_READER_NAME = NameParser.parseUsingCase("JsonReader");
+    public static final Name JSON_WRITER_NAME = NameParser.parseUsingCase("JsonWriter");
     public static final Name LIST_NAME = NameParser.parseUsingCase("List");
     public static final Name READER_NAME = NameParser.parseUsingCase("Reader");
     public static final Name SERVICE_NAME = NameParser.parseUsingCase("Service");
@@ -47,6 +50,9 @@ public class RubyNames {
     public static final Name WRITER_NAME = NameParser.parseUsingCase("Writer");
 
     // The names of the directories:
+    public static final Name BINARY_CODECS_DIR = NameParser.parseUsingCase("BinaryCodecs");
+    public static final Name JSON_READERS_DIR = NameParser.parseUsingCase("JsonReaders");
+    public static final Name JSON_WRITERS_DIR = NameParser.parseUsingCase("JsonWriters");
     public static final Name READERS_DIR = NameParser.parseUsingCase("Readers");
     public static final Name SERVICES_DIR = NameParser.parseUsingCase("Services");
     public static final Name TYPES_DIR = NameParser.parseUsingCase("Types");
@@ -150,6 +156,48 @@ public class RubyNames {
         return buildName(READER_NAME, null, READERS_DIR);
     }
 
+    /**
+     * Calculates the Ruby name of the base class of the JSON readers.
+     */
+    public RubyName getBaseJsonReaderName() {
+        return buildName(JSON_READER_NAME, null, JSON_READERS_DIR);
+    }
+
+    /**
+     * Calculates the Ruby name of the JSON reader for the given type.
+     */
+    public RubyName getJsonReaderName(Type type) {
+        return buildName(type.getName(), JSON_READER_NAME, JSON_READERS_DIR);
+    }
+
+    /**
+     * Calculates the Ruby name of the base class of the binary codecs.
+     */
+    public RubyName getBaseBinaryCodecName() {
+        return buildName(BINARY_CODEC_NAME, null, BINARY_CODECS_DIR);
+    }
+
+    /**
+     * Calculates the Ruby name of the binary codec for the given type.
+     */
+    public RubyName getBinaryCodecName(Type type) {
+        return buildName(type.getName(), BINARY_CODEC_NAME, BINARY_CODECS_DIR);
+    }
+
+    /**
+     * Calculates the Ruby name of the base class of the JSON writers.
+     */
+    public RubyName getBaseJsonWriterName() {
+        return buildName(JSON_WRITER_NAME, null, JSON_WRITERS_DIR);
+    }
+
+    /**
+     * Calculates the Ruby name of the JSON writer for the given type.
+     */
+    public RubyName getJsonWriterName(Type type) {
+        return buildName(type.getName(), JSON_WRITER_NAME, JSON_WRITERS_DIR);
+    }
+
     /**
      * Calculates the Ruby name of the base class of the writers.
      */
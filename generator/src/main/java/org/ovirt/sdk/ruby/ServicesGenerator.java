@@ -29,6 +29,7 @@ import java.util.Optional;
 import javax.enterprise.inject.spi.CDI;
 import javax.inject.Inject;
 
+import org.ovirt.api.metamodel.concepts.EnumType;
 import org.ovirt.api.metamodel.concepts.ListType;
 import org.ovirt.api.metamodel.concepts.Locator;
 import org.ovirt.api.metamodel.concepts.Method;
@@ -40,6 +41,7 @@ import org.ovirt.api.metamodel.concepts.PrimitiveType;
 import org.ovirt.api.metamodel.concepts.Service;
 import org.ovirt.api.metamodel.concepts.StructType;
 import org.ovirt.api.metamodel.concepts.Type;
+import org.ovirt.api.metamodel.tool.Names;
 import org.ovirt.api.metamodel.tool.SchemaNames;
 
 /**
@@ -57,8 +59,10 @@ public class ServicesGenerator implements RubyGenerator {
     protected File out;
 
     // Reference to the objects used to generate the code:
+    @Inject private Names names;
     @Inject private RubyNames rubyNames;
     @Inject private SchemaNames schemaNames;
+    @Inject private YardDoc yardDoc;
 
     // The buffer used to generate the Ruby code:
     private RubyBuffer buffer;
@@ -168,23 +172,74 @@ public class ServicesGenerator implements RubyGenerator {
     private void generateMethod(Method method) {
         Name name = method.getName();
         if (ADD.equals(name)) {
-            generateAddHttpPost(method);
+            generateAddHttpPost(method, false);
+            generateAddHttpPost(method, true);
         }
         else if (GET.equals(name) || LIST.equals(name)) {
-            generateHttpGet(method);
+            generateHttpGet(method, false, false);
+            generateHttpGet(method, true, false);
+            generateHttpGet(method, false, true);
         }
         else if (REMOVE.equals(name)) {
-            generateHttpDelete(method);
+            generateHttpDelete(method, false);
+            generateHttpDelete(method, true);
         }
         else if (UPDATE.equals(name)) {
-            generateHttpPut(method);
+            generateHttpPut(method, false);
+            generateHttpPut(method, true);
         }
         else {
-            generateActionHttpPost(method);
+            generateActionHttpPost(method, false);
+            generateActionHttpPost(method, true);
         }
     }
 
-    private void generateAddHttpPost(Method method) {
+    private void generateAsyncDoc(Method method, Parameter primaryParameter) {
+        String methodName = rubyNames.getMemberStyleName(method.getName());
+        buffer.addComment();
+        buffer.addComment(
+            "Sends the same request than the {#%1$s} method, but returns without waiting for the response, so that\n" +
+            "a single thread can have many requests in progress at the same time.",
+            methodName
+        );
+        buffer.addComment();
+        if (primaryParameter != null) {
+            buffer.addYardTag(
+                "param",
+                "%1$s [%2$s] The same parameter accepted by the {#%3$s} method.",
+                rubyNames.getMemberStyleName(primaryParameter.getName()),
+                yardDoc.getType(primaryParameter.getType()),
+                methodName
+            );
+            buffer.addComment();
+        }
+        buffer.addYardTag("param", "opts [Hash] The same options accepted by the {#%1$s} method.", methodName);
+        buffer.addComment();
+        buffer.addYardTag(
+            "return",
+            "[Future] A future whose `wait` method returns the same result than the {#%1$s} method, or raises the\n" +
+            "same errors.",
+            methodName
+        );
+        buffer.addComment();
+    }
+
+    private void generateSend(boolean async, Runnable handler) {
+        // The asynchronous methods process the response later, when the future is waited for, so the code that
+        // processes it is put in a lambda, where 'return' works as it does in the synchronous methods:
+        if (async) {
+            buffer.addLine("handler = lambda do |response|");
+            handler.run();
+            buffer.addLine("end");
+            buffer.addLine("@connection.send_async(request, &handler)");
+        }
+        else {
+            buffer.addLine("response = @connection.send(request)");
+            handler.run();
+        }
+    }
+
+    private void generateAddHttpPost(Method method, boolean async) {
         // Classify the parameters, as they have different treatment. The primary parameter will be the request body and
         // the secondary parameters will be query parameters.
         Parameter primaryParameter = getPrimaryParameter(method);
@@ -195,36 +250,42 @@ public class ServicesGenerator implements RubyGenerator {
         Type primaryParameterType = primaryParameter.getType();
         Name primaryParameterName = primaryParameter.getName();
         String arg = rubyNames.getMemberStyleName(primaryParameterName);
-        String methodDoc = method.getDoc();
-        if (methodDoc == null) {
-            methodDoc = String.format("Adds a new `%1$s`.", arg);
+        if (async) {
+            generateAsyncDoc(method, primaryParameter);
         }
-        buffer.addComment();
-        buffer.addComment(methodDoc);
-        buffer.addComment();
+        else {
+            String methodDoc = method.getDoc();
+            if (methodDoc == null) {
+                methodDoc = String.format("Adds a new `%1$s`.", arg);
+            }
+            buffer.addComment();
+            buffer.addComment(methodDoc);
+            buffer.addComment();
 
-        // Document the primary parameter:
-        String primaryParameterDoc = primaryParameter.getDoc();
-        if (primaryParameterDoc == null) {
-            primaryParameterDoc = String.format("The `%1$s` to add.", arg);
-        }
-        buffer.addYardParam(primaryParameter, primaryParameterDoc);
-        buffer.addComment();
+            // Document the primary parameter:
+            String primaryParameterDoc = primaryParameter.getDoc();
+            if (primaryParameterDoc == null) {
+                primaryParameterDoc = String.format("The `%1$s` to add.", arg);
+            }
+            buffer.addYardParam(primaryParameter, primaryParameterDoc);
+            buffer.addComment();
 
-        // Document the secondary parameters:
-        buffer.addYardTag("param", "opts [Hash] Additional options.");
-        buffer.addComment();
-        secondaryParameters.forEach(parameter -> {
-            buffer.addYardOption(parameter);
+            // Document the secondary parameters:
+            buffer.addYardTag("param", "opts [Hash] Additional options.");
             buffer.addComment();
-        });
+            secondaryParameters.forEach(parameter -> {
+                buffer.addYardOption(parameter);
+                buffer.addComment();
+            });
 
-        // Document the return value:
-        buffer.addYardReturn(primaryParameter);
-        buffer.addComment();
+            // Document the return value:
+            buffer.addYardReturn(primaryParameter);
+            buffer.addComment();
+        }
 
         // Generate the method declaration:
-        buffer.addLine("def %1$s(%2$s, opts = {})", rubyNames.getMemberStyleName(methodName), arg);
+        String methodStyleName = rubyNames.getMemberStyleName(methodName);
+        buffer.addLine("def %1$s%2$s(%3$s, opts = {})", methodStyleName, getSuffix(async), arg);
 
         // Generate the method body:
         generateConvertLiteral(primaryParameterType, arg);
@@ -232,75 +293,242 @@ public class ServicesGenerator implements RubyGenerator {
         secondaryParameters.forEach(this::generateUrlParameter);
         buffer.addLine("request = Request.new(:method => :POST, :path => @path, :query => query)");
         generateWriteRequestBody(primaryParameter, arg);
-        buffer.addLine("response = @connection.send(request)");
-        buffer.addLine("case response.code");
-        buffer.addLine("when 201, 202");
-        generateReturnResponseBody(primaryParameter);
-        buffer.addLine("else");
-        buffer.addLine(  "check_fault(response)");
-        buffer.addLine("end");
+        generateSend(async, () -> {
+            buffer.addLine("case response.code");
+            buffer.addLine("when 201, 202");
+            generateReturnResponseBody(primaryParameter);
+            buffer.addLine("else");
+            buffer.addLine(  "check_fault(response)");
+            buffer.addLine("end");
+        });
 
         // End method:
         buffer.addLine("end");
         buffer.addLine();
     }
 
-    private void generateActionHttpPost(Method method) {
+    private void generateActionHttpPost(Method method, boolean async) {
         // Document the method:
         Name methodName = method.getName();
         String actionName = rubyNames.getMemberStyleName(methodName);
-        String methodDoc = method.getDoc();
-        if (methodDoc == null) {
-            methodDoc = String.format("Executes the `%1$s` method.", actionName);
+        if (async) {
+            generateAsyncDoc(method, null);
         }
-        buffer.addComment();
-        buffer.addComment(methodDoc);
-        buffer.addComment();
+        else {
+            String methodDoc = method.getDoc();
+            if (methodDoc == null) {
+                methodDoc = String.format("Executes the `%1$s` method.", actionName);
+            }
+            buffer.addComment();
+            buffer.addComment(methodDoc);
+            buffer.addComment();
 
-        // Document the parameters:
-        buffer.addYardTag("param", "opts [Hash] Additional options.");
-        buffer.addComment();
-        method.parameters().sorted().forEach(parameter -> {
-            buffer.addYardOption(parameter);
+            // Document the parameters:
+            buffer.addYardTag("param", "opts [Hash] Additional options.");
             buffer.addComment();
-        });
+            method.parameters().sorted().forEach(parameter -> {
+                buffer.addYardOption(parameter);
+                buffer.addComment();
+            });
+        }
 
         // Generate the method declaration:
-        buffer.addLine("def %1$s(opts = {})", actionName);
+        buffer.addLine("def %1$s%2$s(opts = {})", actionName, getSuffix(async));
 
-        // Generate the method body:
-        buffer.addLine("action = Action.new(opts)");
-        buffer.addLine("writer = XmlWriter.new(nil, true)");
-        buffer.addLine("ActionWriter.write_one(action, writer)");
-        buffer.addLine("body = writer.string");
-        buffer.addLine("writer.close");
+        // Generate the method body. The request body is written directly from the options, and only for the input
+        // parameters of this action, instead of creating an action object and checking all its members:
+        List<Parameter> inParameters = method.parameters()
+            .filter(Parameter::isIn)
+            .sorted()
+            .collect(toList());
+        RubyName jsonWriterName = rubyNames.getBaseJsonWriterName();
+        buffer.addLine("if @connection.json?");
+        buffer.addLine(  "body = String.new");
+        buffer.addLine(  "body << '{'");
+        inParameters.forEach(this::generateActionJsonWrite);
+        buffer.addLine(  "%1$s.close(body, '}')", jsonWriterName.getClassName());
+        buffer.addLine("else");
+        buffer.addLine(  "body = @connection.with_writer do |writer|");
+        buffer.addLine(    "writer.write_start('action')");
+        inParameters.forEach(this::generateActionXmlWrite);
+        buffer.addLine(    "writer.write_end");
+        buffer.addLine(    "writer.string");
+        buffer.addLine(  "end");
+        buffer.addLine("end");
         buffer.addLine("request = Request.new({");
         buffer.addLine(  ":method => :POST,");
         buffer.addLine(  ":path => \"#{@path}/%1$s\",", getPath(methodName));
         buffer.addLine(  ":body => body,");
         buffer.addLine("})");
-        buffer.addLine("response = @connection.send(request)");
-        buffer.addLine("case response.code");
-        buffer.addLine("when 200");
-        buffer.addLine(  "action = check_action(response)");
-        method.parameters()
-            .filter(Parameter::isOut)
-            .findFirst()
-            .ifPresent(this::generateActionResponse);
-        buffer.addLine("else");
-        buffer.addLine(  "check_action(response)");
-        buffer.addLine("end");
+        generateSend(async, () -> {
+            buffer.addLine("case response.code");
+            buffer.addLine("when 200");
+            buffer.addLine(  "action = check_action(response)");
+            method.parameters()
+                .filter(Parameter::isOut)
+                .findFirst()
+                .ifPresent(this::generateActionResponse);
+            buffer.addLine("else");
+            buffer.addLine(  "check_action(response)");
+            buffer.addLine("end");
+        });
 
         // End method:
         buffer.addLine("end");
         buffer.addLine();
     }
 
+    private void generateActionXmlWrite(Parameter parameter) {
+        Name name = parameter.getName();
+        Type type = parameter.getType();
+        String tag = schemaNames.getSchemaTagName(name);
+        buffer.addLine("value = opts[:%1$s]", rubyNames.getMemberStyleName(name));
+        if (type instanceof PrimitiveType || type instanceof EnumType) {
+            generateActionXmlValueWrite(type, tag, "value");
+        }
+        else if (type instanceof StructType) {
+            RubyName writerName = rubyNames.getWriterName(type);
+            buffer.addLine("unless value.nil?");
+            generateConvertHash(type, "value");
+            buffer.addLine(  "%1$s.write_one(value, writer, '%2$s')", writerName.getClassName(), tag);
+            buffer.addLine("end");
+        }
+        else if (type instanceof ListType) {
+            Type elementType = ((ListType) type).getElementType();
+            String singularTag = schemaNames.getSchemaTagName(names.getSingular(name));
+            if (elementType instanceof PrimitiveType || elementType instanceof EnumType) {
+                buffer.addLine("if !value.nil? && !value.empty?");
+                buffer.addLine(  "writer.write_raw('<%1$s>')", tag);
+                buffer.addLine(  "value.each do |item|");
+                generateActionXmlValueWrite(elementType, singularTag, "item");
+                buffer.addLine(  "end");
+                buffer.addLine(  "writer.write_raw('</%1$s>')", tag);
+                buffer.addLine("end");
+            }
+            else if (elementType instanceof StructType) {
+                RubyName writerName = rubyNames.getWriterName(elementType);
+                buffer.addLine("unless value.nil?");
+                generateConvertHashes(elementType, "value");
+                buffer.addLine(
+                    "%1$s.write_many(value, writer, '%2$s', '%3$s')",
+                    writerName.getClassName(),
+                    singularTag,
+                    tag
+                );
+                buffer.addLine("end");
+            }
+        }
+    }
+
+    private void generateActionXmlValueWrite(Type type, String tag, String value) {
+        Model model = type.getModel();
+        if (type == model.getBooleanType()) {
+            buffer.addLine(
+                "writer.write_raw(%2$s ? '<%1$s>true</%1$s>' : '<%1$s>false</%1$s>') unless %2$s.nil?",
+                tag,
+                value
+            );
+        }
+        else {
+            buffer.addLine(
+                "writer.write_escaped('<%1$s>', %2$s, '</%1$s>') unless %3$s.nil?",
+                tag,
+                renderXmlValue(type, value),
+                value
+            );
+        }
+    }
+
+    private String renderXmlValue(Type type, String value) {
+        Model model = type.getModel();
+        if (type == model.getIntegerType() || type == model.getDecimalType()) {
+            return value + ".to_s";
+        }
+        if (type == model.getDateType()) {
+            return value + ".xmlschema";
+        }
+        return value;
+    }
+
+    private void generateActionJsonWrite(Parameter parameter) {
+        Name name = parameter.getName();
+        Type type = parameter.getType();
+        String key = schemaNames.getSchemaTagName(name);
+        buffer.addLine("value = opts[:%1$s]", rubyNames.getMemberStyleName(name));
+        if (type instanceof PrimitiveType || type instanceof EnumType) {
+            Model model = type.getModel();
+            if (type == model.getBooleanType()) {
+                buffer.addLine("body << (value ? '\"%1$s\":true,' : '\"%1$s\":false,') unless value.nil?", key);
+            }
+            else {
+                buffer.addLine(
+                    "body << '\"%1$s\":' << %2$s << ',' unless value.nil?",
+                    key,
+                    renderJsonValue(type, "value")
+                );
+            }
+        }
+        else if (type instanceof StructType) {
+            RubyName writerName = rubyNames.getJsonWriterName(type);
+            buffer.addLine("unless value.nil?");
+            generateConvertHash(type, "value");
+            buffer.addLine(  "body << '\"%1$s\":'", key);
+            buffer.addLine(  "%1$s.write_one(value, body)", writerName.getClassName());
+            buffer.addLine(  "body << ','");
+            buffer.addLine("end");
+        }
+        else if (type instanceof ListType) {
+            Type elementType = ((ListType) type).getElementType();
+            String singularKey = schemaNames.getSchemaTagName(names.getSingular(name));
+            if (elementType instanceof PrimitiveType || elementType instanceof EnumType) {
+                buffer.addLine(
+                    "body << '\"%1$s\":{\"%2$s\":[' << value.map { |item| %3$s }.join(',') << ']},' unless value.nil?",
+                    key,
+                    singularKey,
+                    renderJsonValue(elementType, "item")
+                );
+            }
+            else if (elementType instanceof StructType) {
+                RubyName writerName = rubyNames.getJsonWriterName(elementType);
+                buffer.addLine("unless value.nil?");
+                generateConvertHashes(elementType, "value");
+                buffer.addLine(  "body << '\"%1$s\":'", key);
+                buffer.addLine(  "%1$s.write_many(value, body, '%2$s')", writerName.getClassName(), singularKey);
+                buffer.addLine(  "body << ','");
+                buffer.addLine("end");
+            }
+        }
+    }
+
+    private String renderJsonValue(Type type, String value) {
+        Model model = type.getModel();
+        if (type == model.getIntegerType() || type == model.getDecimalType() || type == model.getBooleanType()) {
+            return value + ".to_s";
+        }
+        if (type == model.getDateType()) {
+            return String.format("%1$s.render_date(%2$s)", rubyNames.getBaseJsonWriterName().getClassName(), value);
+        }
+        return value + ".to_json";
+    }
+
+    private void generateConvertHash(Type type, String variable) {
+        RubyName typeName = rubyNames.getTypeName(type);
+        buffer.addLine("%1$s = %2$s.new(%1$s) if %1$s.is_a?(Hash)", variable, typeName.getClassName());
+    }
+
+    private void generateConvertHashes(Type type, String variable) {
+        buffer.addLine(
+            "%1$s = %1$s.map { |item| item.is_a?(Hash) ? %2$s.new(item) : item }",
+            variable,
+            rubyNames.getTypeName(type).getClassName()
+        );
+    }
+
     private void generateActionResponse(Parameter parameter) {
         buffer.addLine("return action.%1$s", rubyNames.getMemberStyleName(parameter.getName()));
     }
 
-    private void generateHttpGet(Method method) {
+    private void generateHttpGet(Method method, boolean into, boolean async) {
         // Get input and output parameters:
         List<Parameter> inParameters = method.parameters()
             .filter(Parameter::isIn)
@@ -316,6 +544,69 @@ public class ServicesGenerator implements RubyGenerator {
             .findFirst()
             .orElse(null);
 
+        // Lists of objects can also be returned as columns, which is cheaper when only a few members are needed, and
+        // objects can also be returned as plain frozen hashes and arrays, which is cheaper when they will only be
+        // converted to other formats:
+        boolean columns = !into && isStructList(mainParameter);
+        boolean raw = !into && (isStruct(mainParameter) || isStructList(mainParameter));
+
+        // Document the method:
+        Name methodName = method.getName();
+        String methodStyleName = rubyNames.getMemberStyleName(methodName);
+        if (async) {
+            generateAsyncDoc(method, null);
+        }
+        else {
+            generateHttpGetDoc(method, into, inParameters, mainParameter, columns, raw);
+        }
+
+        // Generate the method declaration:
+        if (into) {
+            buffer.addLine("def %1$s_into(target, opts = {})", methodStyleName);
+        }
+        else {
+            buffer.addLine("def %1$s%2$s(opts = {})", methodStyleName, getSuffix(async));
+        }
+
+        // Generate the method body:
+        buffer.addLine("query = {}");
+        inParameters.forEach(this::generateUrlParameter);
+        if (columns) {
+            buffer.addLine("columns = opts[:columns]");
+        }
+        if (raw) {
+            buffer.addLine("raw = opts[:raw]");
+        }
+        buffer.addLine("request = Request.new(:method => :GET, :path => @path, :query => query)");
+
+        // Pass a block to the connection, so that the reader consumes the response body while it is still being
+        // downloaded, instead of waiting till the complete body is available in memory. The asynchronous methods
+        // receive the complete body:
+        if (async) {
+            generateSend(true, () -> generateHttpGetResponse(mainParameter, null, columns, raw));
+        }
+        else {
+            buffer.addLine("@connection.send(request) do |response|");
+            generateHttpGetResponse(mainParameter, into ? "target" : null, columns, raw);
+            buffer.addLine("end");
+        }
+
+        // End method:
+        buffer.addLine("end");
+        buffer.addLine();
+    }
+
+    private void generateHttpGetResponse(Parameter mainParameter, String target, boolean columns, boolean raw) {
+        buffer.addLine("case response.code");
+        buffer.addLine("when 200");
+        generateReturnResponseBody(mainParameter, target, columns, raw);
+        buffer.addLine("else");
+        buffer.addLine(  "check_fault(response)");
+        buffer.addLine("end");
+    }
+
+    private void generateHttpGetDoc(Method method, boolean into, List<Parameter> inParameters,
+            Parameter mainParameter, boolean columns, boolean raw) {
         // Document the method:
         buffer.addComment();
         String methodDoc = method.getDoc();
@@ -325,6 +616,25 @@ public class ServicesGenerator implements RubyGenerator {
         buffer.addComment(methodDoc);
         buffer.addComment();
 
+        // Explain how the variant that reads into an existing object works:
+        String methodStyleName = rubyNames.getMemberStyleName(method.getName());
+        if (into) {
+            buffer.addComment(
+                "This variant of the `%1$s` method doesn't create a new object, instead it overwrites the given\n" +
+                "`target` in place, reusing its nested objects and lists, which is intended for loops that poll the\n" +
+                "same object repeatedly. When the server returns a format other than XML a new object is created,\n" +
+                "so always use the returned value.",
+                methodStyleName
+            );
+            buffer.addComment();
+            buffer.addYardTag(
+                "param",
+                "target [%1$s] The object that will be overwritten.",
+                yardDoc.getType(mainParameter.getType())
+            );
+            buffer.addComment();
+        }
+
         // Document the parameters:
         buffer.addYardTag("param", "opts [Hash] Additional options.");
         buffer.addComment();
@@ -333,32 +643,48 @@ public class ServicesGenerator implements RubyGenerator {
             buffer.addComment();
         });
 
-        // Document the return value:
-        buffer.addYardReturn(mainParameter);
-        buffer.addComment();
-
-        // Generate the method declaration:
-        Name methodName = method.getName();
-        buffer.addLine("def %1$s(opts = {})", rubyNames.getMemberStyleName(methodName));
+        // Document the option to return columns:
+        if (columns) {
+            buffer.addYardTag(
+                "option",
+                "opts [Array<Symbol>] :columns The names of the members that should be returned. When this option\n" +
+                "is given the result isn't a list of objects, but a hash containing one array of values for each\n" +
+                "of the given members. For example, `{ :id => ['123', '456'], :name => ['vm1', 'vm2'] }`."
+            );
+            buffer.addComment();
+        }
 
-        // Generate the method body:
-        buffer.addLine("query = {}");
-        inParameters.forEach(this::generateUrlParameter);
-        buffer.addLine("request = Request.new(:method => :GET, :path => @path, :query => query)");
-        buffer.addLine("response = @connection.send(request)");
-        buffer.addLine("case response.code");
-        buffer.addLine("when 200");
-        generateReturnResponseBody(mainParameter);
-        buffer.addLine("else");
-        buffer.addLine(  "check_fault(response)");
-        buffer.addLine("end");
+        // Document the option to return plain hashes and arrays:
+        if (raw) {
+            buffer.addYardTag(
+                "option",
+                "opts [Boolean] :raw (false) When this option is `true` the result isn't made of objects, but of\n" +
+                "frozen hashes and arrays, where the keys of the hashes are the names of the members as symbols.\n" +
+                "For example, `{ :id => '123', :name => 'myvm', :cpu => { :cores => 2 } }`."
+            );
+            buffer.addComment();
+        }
 
-        // End method:
-        buffer.addLine("end");
-        buffer.addLine();
+        // Document the return value:
+        if (columns || raw) {
+            StringBuilder returnTypes = new StringBuilder(yardDoc.getType(mainParameter.getType()));
+            if (raw) {
+                String rawType = isStruct(mainParameter) ? "Hash{Symbol => Object}" : "Array<Hash{Symbol => Object}>";
+                returnTypes.append(", ");
+                returnTypes.append(rawType);
+            }
+            if (columns) {
+                returnTypes.append(", Hash{Symbol => Array}");
+            }
+            buffer.addYardTag("return", "[%1$s]", returnTypes);
+        }
+        else {
+            buffer.addYardReturn(mainParameter);
+        }
+        buffer.addComment();
     }
 
-    private void generateHttpPut(Method method) {
+    private void generateHttpPut(Method method, boolean async) {
         // Classify the parameters, as they have different treatment. The primary parameter will be the request body and
         // the secondary parameters will be query parameters.
         Parameter primaryParameter = getPrimaryParameter(method);
@@ -368,51 +694,65 @@ public class ServicesGenerator implements RubyGenerator {
         Type primaryParameterType = primaryParameter.getType();
         Name primaryParameterName = primaryParameter.getName();
         String arg = rubyNames.getMemberStyleName(primaryParameterName);
-        String methodDoc = method.getDoc();
-        if (methodDoc == null) {
-            methodDoc = String.format("Updates the `%1$s`.", arg);
+        if (async) {
+            generateAsyncDoc(method, primaryParameter);
         }
-        buffer.addComment();
-        buffer.addComment(methodDoc);
-        buffer.addComment();
+        else {
+            String methodDoc = method.getDoc();
+            if (methodDoc == null) {
+                methodDoc = String.format("Updates the `%1$s`.", arg);
+            }
+            buffer.addComment();
+            buffer.addComment(methodDoc);
+            buffer.addComment();
+            if (primaryParameterType instanceof StructType) {
+                buffer.addComment(
+                    "Only the members of the `%1$s` that have been modified since it was created or read are",
+                    arg
+                );
+                buffer.addComment("sent to the server.");
+                buffer.addComment();
+            }
 
-        // Document the primary parameter:
-        String primaryParameterDoc = primaryParameter.getDoc();
-        if (primaryParameterDoc == null) {
-            primaryParameterDoc = String.format("The `%1$s` to update.", arg);
-        }
-        buffer.addYardParam(primaryParameter, primaryParameterDoc);
+            // Document the primary parameter:
+            String primaryParameterDoc = primaryParameter.getDoc();
+            if (primaryParameterDoc == null) {
+                primaryParameterDoc = String.format("The `%1$s` to update.", arg);
+            }
+            buffer.addYardParam(primaryParameter, primaryParameterDoc);
 
-        // Document the secondary parameters:
-        buffer.addYardTag("param", "opts [Hash] Additional options.");
-        buffer.addComment();
-        secondaryParameters.forEach(parameter -> {
-            buffer.addYardOption(parameter);
+            // Document the secondary parameters:
+            buffer.addYardTag("param", "opts [Hash] Additional options.");
             buffer.addComment();
-        });
+            secondaryParameters.forEach(parameter -> {
+                buffer.addYardOption(parameter);
+                buffer.addComment();
+            });
 
-        // Document the return value:
-        buffer.addYardReturn(primaryParameter);
-        buffer.addComment();
+            // Document the return value:
+            buffer.addYardReturn(primaryParameter);
+            buffer.addComment();
+        }
 
         // Generate the method declaration:
         Name methodName = method.getName();
-        buffer.addLine("def %1$s(%2$s, opts = {})", rubyNames.getMemberStyleName(methodName), arg);
+        String methodStyleName = rubyNames.getMemberStyleName(methodName);
+        buffer.addLine("def %1$s%2$s(%3$s, opts = {})", methodStyleName, getSuffix(async), arg);
 
         // Generate the method body:
         generateConvertLiteral(primaryParameterType, arg);
         buffer.addLine("query = {}");
         secondaryParameters.forEach(this::generateUrlParameter);
         buffer.addLine("request = Request.new(:method => :PUT, :path => @path, :query => query)");
-        generateWriteRequestBody(primaryParameter, arg);
-        buffer.addLine("response = @connection.send(request)");
-        buffer.addLine("case response.code");
-        buffer.addLine("when 200");
-        generateReturnResponseBody(primaryParameter);
-        buffer.addLine(  "return result");
-        buffer.addLine("else");
-        buffer.addLine(  "check_fault(response)");
-        buffer.addLine("end");
+        generateWriteRequestBody(primaryParameter, arg, true);
+        generateSend(async, () -> {
+            buffer.addLine("case response.code");
+            buffer.addLine("when 200");
+            generateReturnResponseBody(primaryParameter);
+            buffer.addLine("else");
+            buffer.addLine(  "check_fault(response)");
+            buffer.addLine("end");
+        });
 
         // End method:
         buffer.addLine("end");
@@ -440,45 +780,143 @@ public class ServicesGenerator implements RubyGenerator {
     }
 
     private void generateWriteRequestBody(Parameter parameter, String variable) {
+        generateWriteRequestBody(parameter, variable, false);
+    }
+
+    private void generateWriteRequestBody(Parameter parameter, String variable, boolean changes) {
         Type type = parameter.getType();
-        buffer.addLine("begin");
-        buffer.addLine(  "writer = XmlWriter.new(nil, true)");
-        if (type instanceof StructType) {
-            RubyName writer = rubyNames.getWriterName(type);
-            buffer.addLine("%1$s.write_one(%2$s, writer)", writer.getClassName(), variable);
-        }
-        else if (type instanceof ListType) {
+        if (type instanceof ListType) {
+            // Lists can be arbitrarily large, so they are written while the request is sent, instead of generating
+            // the complete document in memory first. The JSON writers don't support that, so with them the complete
+            // document is still generated:
             ListType listType = (ListType) type;
             Type elementType = listType.getElementType();
             RubyName writer = rubyNames.getWriterName(elementType);
-            buffer.addLine("%1$s.write_many(%2$s, writer)", writer.getClassName(), variable);
+            RubyName jsonWriter = rubyNames.getJsonWriterName(elementType);
+            buffer.addLine("if @connection.json?");
+            buffer.addLine(  "request.body = String.new");
+            buffer.addLine(  "%1$s.write_many(%2$s, request.body)", jsonWriter.getClassName(), variable);
+            buffer.addLine("else");
+            buffer.addLine(  "request.body = RequestStream.new do |writer|");
+            buffer.addLine(    "%1$s.write_many(%2$s, writer)", writer.getClassName(), variable);
+            buffer.addLine(  "end");
+            buffer.addLine("end");
+            return;
         }
-        buffer.addLine(  "request.body = writer.string");
-        buffer.addLine("ensure");
-        buffer.addLine(  "writer.close");
-        buffer.addLine("end");
+        if (type instanceof StructType) {
+            // Other bodies are generated with a writer borrowed from the connection, so that its buffer is reused:
+            RubyName writer = rubyNames.getWriterName(type);
+            RubyName jsonWriter = rubyNames.getJsonWriterName(type);
+            buffer.addLine(
+                "request.body = write_body(%1$s, %2$s, %3$s%4$s)",
+                variable,
+                writer.getClassName(),
+                jsonWriter.getClassName(),
+                changes ? ", :write_changes" : ""
+            );
+        }
+    }
+
+    private String getSuffix(boolean async) {
+        return async ? "_async" : "";
+    }
+
+    private boolean isStruct(Parameter parameter) {
+        return parameter != null && parameter.getType() instanceof StructType;
+    }
+
+    private boolean isStructList(Parameter parameter) {
+        if (parameter == null) {
+            return false;
+        }
+        Type type = parameter.getType();
+        return type instanceof ListType && ((ListType) type).getElementType() instanceof StructType;
     }
 
     private void generateReturnResponseBody(Parameter parameter) {
+        generateReturnResponseBody(parameter, null, false, false);
+    }
+
+    private void generateReturnResponseBody(Parameter parameter, String target, boolean columns, boolean raw) {
         Type type = parameter.getType();
-        buffer.addLine("begin");
-        buffer.addLine(  "reader = XmlReader.new(response.body)");
+        String method = null;
+        RubyName jsonReader = null;
+        RubyName xmlReader = null;
         if (type instanceof StructType) {
-            RubyName reader = rubyNames.getReaderName(type);
-            buffer.addLine("return %1$s.read_one(reader)", reader.getClassName());
+            method = "read_one";
+            jsonReader = rubyNames.getJsonReaderName(type);
+            xmlReader = rubyNames.getReaderName(type);
         }
         else if (type instanceof ListType) {
             ListType listType = (ListType) type;
             Type elementType = listType.getElementType();
-            RubyName reader = rubyNames.getReaderName(elementType);
-            buffer.addLine("return %1$s.read_many(reader)", reader.getClassName());
+            method = "read_many";
+            jsonReader = rubyNames.getJsonReaderName(elementType);
+            xmlReader = rubyNames.getReaderName(elementType);
+        }
+        if (method == null) {
+            return;
+        }
+
+        // JSON documents are always read into objects, and then converted if other representation was requested:
+        if (columns || raw) {
+            buffer.addLine("if response.json?");
+            buffer.addLine(  "result = %1$s.%2$s(JsonReader.parse(response.body))", jsonReader.getClassName(), method);
+            if (raw) {
+                buffer.addLine("return Reader.raw(result) if raw");
+            }
+            if (columns) {
+                buffer.addLine(
+                    "return Reader.columns(result, columns, %1$s::COLUMNS) unless columns.nil?",
+                    xmlReader.getClassName()
+                );
+            }
+            buffer.addLine(  "return result");
+            buffer.addLine("end");
+        }
+        else {
+            buffer.addLine(
+                "return %1$s.%2$s(JsonReader.parse(response.body)) if response.json?",
+                jsonReader.getClassName(),
+                method
+            );
+        }
+
+        // XML documents are read directly into the requested representation:
+        buffer.addLine("begin");
+        buffer.addLine(  "reader = XmlReader.new(response.body, @connection.concurrent_parsing?)");
+        if (target == null) {
+            // The identity map isn't used when reading into existing objects, as that would overwrite the objects
+            // that it shares, and that are referenced by other objects:
+            buffer.addLine("reader.identities = {} if @connection.identity_map?");
+        }
+        if (target != null) {
+            if (type instanceof StructType) {
+                buffer.addLine("return %1$s.read_into(reader, %2$s)", xmlReader.getClassName(), target);
+            }
+            else {
+                buffer.addLine("return %1$s.read_many(reader, %2$s)", xmlReader.getClassName(), target);
+            }
+        }
+        else {
+            if (raw) {
+                String rawMethod = method.replace("read_", "read_raw_");
+                buffer.addLine("return %1$s.%2$s(reader) if raw", xmlReader.getClassName(), rawMethod);
+            }
+            if (columns) {
+                buffer.addLine(
+                    "return %1$s.read_columns(reader, columns) unless columns.nil?",
+                    xmlReader.getClassName()
+                );
+            }
+            buffer.addLine("return %1$s.%2$s(reader)", xmlReader.getClassName(), method);
         }
         buffer.addLine("ensure");
         buffer.addLine(  "reader.close");
         buffer.addLine("end");
     }
 
-    private void generateHttpDelete(Method method) {
+    private void generateHttpDelete(Method method, boolean async) {
         // Get input parameters:
         List<Parameter> inParameters = method.parameters()
             .filter(Parameter::isIn)
@@ -486,31 +924,37 @@ public class ServicesGenerator implements RubyGenerator {
             .collect(toList());
 
         // Document the method:
-        String methodDoc = method.getDoc();
-        if (methodDoc == null) {
-            methodDoc = "Deletes the object managed by this service.";
+        if (async) {
+            generateAsyncDoc(method, null);
         }
-        buffer.addComment();
-        buffer.addComment(methodDoc);
-        buffer.addComment();
+        else {
+            String methodDoc = method.getDoc();
+            if (methodDoc == null) {
+                methodDoc = "Deletes the object managed by this service.";
+            }
+            buffer.addComment();
+            buffer.addComment(methodDoc);
+            buffer.addComment();
 
-        // Document the parameters:
-        buffer.addYardTag("param", "opts [Hash] Additional options.");
-        buffer.addComment();
-        inParameters.forEach(buffer::addYardOption);
+            // Document the parameters:
+            buffer.addYardTag("param", "opts [Hash] Additional options.");
+            buffer.addComment();
+            inParameters.forEach(buffer::addYardOption);
+        }
 
         // Generate the method declaration:
         Name methodName = method.getName();
-        buffer.addLine("def %1$s(opts = {})", rubyNames.getMemberStyleName(methodName));
+        buffer.addLine("def %1$s%2$s(opts = {})", rubyNames.getMemberStyleName(methodName), getSuffix(async));
 
         // Generate method body:
         buffer.addLine("query = {}");
         inParameters.forEach(this::generateUrlParameter);
         buffer.addLine(  "request = Request.new(:method => :DELETE, :path => @path, :query => query)");
-        buffer.addLine(  "response = @connection.send(request)");
-        buffer.addLine(  "unless response.code == 200");
-        buffer.addLine(    "check_fault(response)");
-        buffer.addLine(  "end");
+        generateSend(async, () -> {
+            buffer.addLine("unless response.code == 200");
+            buffer.addLine(  "check_fault(response)");
+            buffer.addLine("end");
+        });
         buffer.addLine("end");
         buffer.addLine();
     }
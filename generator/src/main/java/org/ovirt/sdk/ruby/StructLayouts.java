@@ -0,0 +1,68 @@
+/*
+Copyright (c) 2016 Red Hat, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ovirt.sdk.ruby;
+
+import javax.enterprise.context.ApplicationScoped;
+
+import org.ovirt.api.metamodel.concepts.StructType;
+
+/**
+ * This class decides how the generated struct classes store the values of their members. Narrow types use one
+ * instance variable per member. Wide types, where most members are usually empty, use a hash stored in the
+ * {@code @_values} instance variable that contains only the members that aren't {@code nil}. The types generator, and
+ * the native writers that read the members directly, need to take the same decision.
+ */
+@ApplicationScoped
+public class StructLayouts {
+    // The number of members above which a type uses sparse storage:
+    private static final int SPARSE_THRESHOLD = 32;
+
+    // The name of the instance variable that contains the hash used by the sparse storage:
+    public static final String VALUES_VARIABLE = "@_values";
+
+    /**
+     * Checks if the given type stores its members in a hash that contains only the ones that aren't {@code nil}.
+     */
+    public boolean isSparse(StructType type) {
+        return type.attributes().count() + type.links().count() > SPARSE_THRESHOLD;
+    }
+
+    /**
+     * Checks if instances of the given type need the hash used by sparse storage, either because the type itself
+     * uses it or because one of its base types does.
+     */
+    public boolean hasValues(StructType type) {
+        while (type != null) {
+            if (isSparse(type)) {
+                return true;
+            }
+            type = (StructType) type.getBase();
+        }
+        return false;
+    }
+
+    /**
+     * Returns the Ruby expression that accesses the storage of the given member, for example {@code @name} or
+     * {@code @_values[:name]}.
+     */
+    public String getStorage(StructType type, String property) {
+        if (isSparse(type)) {
+            return String.format("%1$s[:%2$s]", VALUES_VARIABLE, property);
+        }
+        return "@" + property;
+    }
+}
@@ -0,0 +1,268 @@
+/*
+Copyright (c) 2016 Red Hat, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ovirt.sdk.ruby;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import javax.inject.Inject;
+
+import org.apache.commons.io.FileUtils;
+import org.ovirt.api.metamodel.concepts.Model;
+
+/**
+ * This class is responsible for generating the C source of the perfect hash table that the extension uses to convert
+ * XML tag names into the integer identifiers calculated by {@link XmlTags}. The table uses the <i>hash and
+ * displace</i> technique: the first hash of the tag name selects a bucket, and the seed stored for that bucket is used
+ * to calculate a second hash that selects the slot of the tag, without collisions. Looking up a tag requires two
+ * hashes and one comparison.
+ *
+ * The source is generated in the {@code ext/ovirtsdk4c} directory that is next to the directory where the Ruby
+ * sources are generated.
+ */
+public class TagsGenerator implements RubyGenerator {
+    // The name of the generated file:
+    private static final String FILE_NAME = "ov_xml_tags.c";
+
+    // The maximum seed that will be tried for a bucket before giving up:
+    private static final int MAX_SEED = 1 << 24;
+
+    // The directory were the output will be generated:
+    protected File out;
+
+    // Reference to the object that calculates the identifiers of the tags:
+    @Inject private XmlTags xmlTags;
+
+    public void setOut(File newOut) {
+        out = newOut;
+    }
+
+    public void generate(Model model) throws IOException {
+        // Get the tags and calculate the table:
+        List<String> tags = xmlTags.getTags(model);
+        int slotsCount = nextPowerOfTwo(tags.size() * 2);
+        int bucketsCount = nextPowerOfTwo(Math.max(1, tags.size() / 2));
+        int[] seeds = new int[bucketsCount];
+        int[] slots = new int[slotsCount];
+        calculateTable(tags, seeds, slots);
+
+        // Generate the source:
+        StringBuilder source = new StringBuilder();
+        generateSource(source, tags, seeds, slots);
+
+        // Write the file:
+        File extDir = new File(out.getAbsoluteFile().getParentFile(), "ext/ovirtsdk4c");
+        File file = new File(extDir, FILE_NAME);
+        try {
+            FileUtils.writeStringToFile(file, source.toString(), StandardCharsets.UTF_8);
+        }
+        catch (IOException exception) {
+            throw new IllegalStateException("Error writing tags file \"" + file + "\"", exception);
+        }
+    }
+
+    /**
+     * Calculates the seed of each bucket and the tag stored in each slot. The slots contain the index of the tag plus
+     * one, or zero if they are empty.
+     */
+    private void calculateTable(List<String> tags, int[] seeds, int[] slots) {
+        // Distribute the tags in buckets, using the hash with seed zero:
+        List<List<byte[]>> buckets = new ArrayList<>();
+        for (int i = 0; i < seeds.length; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        List<byte[]> keys = new ArrayList<>();
+        for (String tag : tags) {
+            byte[] key = tag.getBytes(StandardCharsets.UTF_8);
+            keys.add(key);
+            buckets.get(hash(key, 0) & (seeds.length - 1)).add(key);
+        }
+
+        // Place the buckets with more tags first, as they are the most difficult to place:
+        Integer[] order = new Integer[seeds.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt((Integer i) -> buckets.get(i).size()).reversed());
+
+        // For each bucket find a seed that places all its tags in empty slots:
+        int[] candidates = new int[0];
+        for (int index : order) {
+            List<byte[]> bucket = buckets.get(index);
+            if (bucket.isEmpty()) {
+                break;
+            }
+            if (candidates.length < bucket.size()) {
+                candidates = new int[bucket.size()];
+            }
+            int seed = 1;
+            while (!tryPlace(bucket, seed, slots, candidates)) {
+                seed++;
+                if (seed > MAX_SEED) {
+                    throw new IllegalStateException("Can't calculate perfect hash table for the tags of the model");
+                }
+            }
+            for (int i = 0; i < bucket.size(); i++) {
+                slots[candidates[i]] = keys.indexOf(bucket.get(i)) + 1;
+            }
+            seeds[index] = seed;
+        }
+    }
+
+    private boolean tryPlace(List<byte[]> bucket, int seed, int[] slots, int[] candidates) {
+        for (int i = 0; i < bucket.size(); i++) {
+            int slot = hash(bucket.get(i), seed) & (slots.length - 1);
+            if (slots[slot] != 0) {
+                return false;
+            }
+            for (int j = 0; j < i; j++) {
+                if (candidates[j] == slot) {
+                    return false;
+                }
+            }
+            candidates[i] = slot;
+        }
+        return true;
+    }
+
+    /**
+     * Calculates the hash of the given key. This needs to be exactly the same than the {@code ov_xml_tags_hash}
+     * function of the generated C code. It is the 32 bits FNV-1a hash, with the seed mixed into the initial value,
+     * followed by the final mix of MurmurHash3, so that different seeds produce unrelated distributions.
+     */
+    private static int hash(byte[] key, int seed) {
+        int hash = 0x811c9dc5 ^ seed;
+        for (byte b : key) {
+            hash ^= b & 0xff;
+            hash *= 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    private static int nextPowerOfTwo(int value) {
+        int result = 1;
+        while (result < value) {
+            result <<= 1;
+        }
+        return result;
+    }
+
+    private void generateSource(StringBuilder source, List<String> tags, int[] seeds, int[] slots) {
+        // License and warning:
+        source.append("/*\n");
+        source.append("Copyright (c) 2016 Red Hat, Inc.\n");
+        source.append("\n");
+        source.append("Licensed under the Apache License, Version 2.0 (the \"License\");\n");
+        source.append("you may not use this file except in compliance with the License.\n");
+        source.append("You may obtain a copy of the License at\n");
+        source.append("\n");
+        source.append("  http://www.apache.org/licenses/LICENSE-2.0\n");
+        source.append("\n");
+        source.append("Unless required by applicable law or agreed to in writing, software\n");
+        source.append("distributed under the License is distributed on an \"AS IS\" BASIS,\n");
+        source.append("WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.\n");
+        source.append("See the License for the specific language governing permissions and\n");
+        source.append("limitations under the License.\n");
+        source.append("*/\n");
+        source.append("\n");
+        source.append("/* This file is generated from the model, don't modify it manually. */\n");
+        source.append("\n");
+
+        // Includes:
+        source.append("#include <stdint.h>\n");
+        source.append("#include <string.h>\n");
+        source.append("\n");
+        source.append("#include \"ov_xml_tags.h\"\n");
+        source.append("\n");
+
+        // Types and sizes:
+        source.append("typedef struct {\n");
+        source.append("    const char* name;\n");
+        source.append("    size_t length;\n");
+        source.append("    int id;\n");
+        source.append("} ov_xml_tag;\n");
+        source.append("\n");
+        source.append(String.format("#define OV_XML_TAGS_BUCKETS %d\n", seeds.length));
+        source.append(String.format("#define OV_XML_TAGS_SLOTS %d\n", slots.length));
+        source.append("\n");
+
+        // Seeds:
+        source.append("static const uint32_t ov_xml_tags_seeds[OV_XML_TAGS_BUCKETS] = {\n");
+        for (int seed : seeds) {
+            source.append(String.format("    %du,\n", seed));
+        }
+        source.append("};\n");
+        source.append("\n");
+
+        // Slots:
+        source.append("static const ov_xml_tag ov_xml_tags_table[OV_XML_TAGS_SLOTS] = {\n");
+        for (int slot : slots) {
+            if (slot == 0) {
+                source.append("    { NULL, 0, 0 },\n");
+            }
+            else {
+                String tag = tags.get(slot - 1);
+                source.append(String.format("    { \"%s\", %d, %d },\n", tag, tag.length(), slot));
+            }
+        }
+        source.append("};\n");
+        source.append("\n");
+
+        // Hash function:
+        source.append("static uint32_t ov_xml_tags_hash(const char* name, size_t length, uint32_t seed) {\n");
+        source.append("    uint32_t hash = 0x811c9dc5u ^ seed;\n");
+        source.append("    size_t i;\n");
+        source.append("\n");
+        source.append("    for (i = 0; i < length; i++) {\n");
+        source.append("        hash ^= (unsigned char) name[i];\n");
+        source.append("        hash *= 0x01000193u;\n");
+        source.append("    }\n");
+        source.append("    hash ^= hash >> 16;\n");
+        source.append("    hash *= 0x85ebca6bu;\n");
+        source.append("    hash ^= hash >> 13;\n");
+        source.append("    hash *= 0xc2b2ae35u;\n");
+        source.append("    hash ^= hash >> 16;\n");
+        source.append("    return hash;\n");
+        source.append("}\n");
+        source.append("\n");
+
+        // Lookup function:
+        source.append("int ov_xml_tags_lookup(const char* name, size_t length) {\n");
+        source.append("    uint32_t seed;\n");
+        source.append("    const ov_xml_tag* tag;\n");
+        source.append("\n");
+        source.append("    seed = ov_xml_tags_seeds[ov_xml_tags_hash(name, length, 0) & (OV_XML_TAGS_BUCKETS - 1)];\n");
+        source.append("    tag = &ov_xml_tags_table[\n");
+        source.append("        ov_xml_tags_hash(name, length, seed) & (OV_XML_TAGS_SLOTS - 1)\n");
+        source.append("    ];\n");
+        source.append("    if (tag->name != NULL && tag->length == length &&\n");
+        source.append("        memcmp(tag->name, name, length) == 0) {\n");
+        source.append("        return tag->id;\n");
+        source.append("    }\n");
+        source.append("    return 0;\n");
+        source.append("}\n");
+    }
+}
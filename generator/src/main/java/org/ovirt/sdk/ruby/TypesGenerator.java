@@ -46,6 +46,7 @@ public class TypesGenerator implements RubyGenerator {
 
     // Reference to the objects used to generate the code:
     @Inject private RubyNames rubyNames;
+    @Inject private StructLayouts structLayouts;
     @Inject private YardDoc yardDoc;
 
     // The buffer used to generate the Ruby code:
@@ -128,7 +129,7 @@ public class TypesGenerator implements RubyGenerator {
         List<StructMember> members = new ArrayList<>();
         members.addAll(type.getAttributes());
         members.addAll(type.getLinks());
-        members.stream().sorted().forEach(this::generateMember);
+        members.stream().sorted().forEach(member -> generateMember(type, member));
 
         // Constructor with a named parameter for each attribute:
         RubyName typeName = rubyNames.getTypeName(type);
@@ -162,25 +163,52 @@ public class TypesGenerator implements RubyGenerator {
         });
         buffer.addComment();
         buffer.addLine("def initialize(opts = {})");
+        if (structLayouts.isSparse(type)) {
+            // The hash needs to exist before calling the constructor of the base class, as it calls the setters:
+            buffer.addLine("%1$s ||= {}", StructLayouts.VALUES_VARIABLE);
+        }
         buffer.addLine(  "super(opts)");
-        members.stream().sorted().forEach(member -> {
-            String memberName = rubyNames.getMemberStyleName(member.getName());
-            buffer.addLine("self.%1$s = opts[:%1$s]", memberName);
-        });
         buffer.addLine("end");
         buffer.addLine();
 
+        // Method used by the constructor to assign only the members that are present in the options:
+        if (!members.isEmpty()) {
+            generateAssign(members);
+        }
+
         // End class:
         buffer.addLine("end");
         buffer.addLine();
     }
 
-    private void generateMember(StructMember member) {
-        generateGetter(member);
-        generateSetter(member);
+    private void generateAssign(List<StructMember> members) {
+        buffer.addLine("protected");
+        buffer.addLine();
+        buffer.addComment();
+        buffer.addComment("Assigns the member with the given name, used by the constructor.");
+        buffer.addComment();
+        buffer.addYardTag("api", "private");
+        buffer.addComment();
+        buffer.addLine("def assign(name, value)");
+        buffer.addLine(  "case name");
+        members.stream().sorted().forEach(member -> {
+            String memberName = rubyNames.getMemberStyleName(member.getName());
+            buffer.addLine("when :%1$s", memberName);
+            buffer.addLine(  "self.%1$s = value", memberName);
+        });
+        buffer.addLine(  "else");
+        buffer.addLine(    "super(name, value)");
+        buffer.addLine(  "end");
+        buffer.addLine("end");
+        buffer.addLine();
+    }
+
+    private void generateMember(StructType declaringType, StructMember member) {
+        generateGetter(declaringType, member);
+        generateSetter(declaringType, member);
     }
 
-    private void generateGetter(StructMember member) {
+    private void generateGetter(StructType declaringType, StructMember member) {
         Name name = member.getName();
         Type type = member.getType();
         String property = rubyNames.getMemberStyleName(name);
@@ -190,12 +218,12 @@ public class TypesGenerator implements RubyGenerator {
         buffer.addYardTag("return", "[%1$s]", yardDoc.getType(type));
         buffer.addComment();
         buffer.addLine("def %1$s", property);
-        buffer.addLine(  "return @%1$s", property);
+        buffer.addLine(  "return %1$s", structLayouts.getStorage(declaringType, property));
         buffer.addLine("end");
         buffer.addLine();
     }
 
-    private void generateSetter(StructMember member) {
+    private void generateSetter(StructType declaringType, StructMember member) {
         Name name = member.getName();
         Type type = member.getType();
         String property = rubyNames.getMemberStyleName(name);
@@ -206,7 +234,7 @@ public class TypesGenerator implements RubyGenerator {
             buffer.addYardTag("param", "value [%1$s]", yardDoc.getType(type));
             buffer.addComment();
             buffer.addLine("def %1$s=(value)", property);
-            buffer.addLine(  "@%1$s = value", property);
+            generateStore(declaringType, property, "value");
             buffer.addLine("end");
         }
         else if (type instanceof StructType) {
@@ -221,7 +249,7 @@ public class TypesGenerator implements RubyGenerator {
             buffer.addLine(  "if value.is_a?(Hash)");
             buffer.addLine(    "value = %1$s.new(value)", typeName.getClassName());
             buffer.addLine(  "end");
-            buffer.addLine(  "@%1$s = value", property);
+            generateStore(declaringType, property, "value");
             buffer.addLine("end");
         }
         else if (type instanceof ListType) {
@@ -230,7 +258,7 @@ public class TypesGenerator implements RubyGenerator {
             Type elementType = listType.getElementType();
             if (elementType instanceof PrimitiveType || elementType instanceof EnumType) {
                 buffer.addLine("def %1$s=(list)", property);
-                buffer.addLine(  "@%1$s = list", property);
+                generateStore(declaringType, property, "list");
                 buffer.addLine("end");
             }
             else if (elementType instanceof StructType) {
@@ -244,13 +272,33 @@ public class TypesGenerator implements RubyGenerator {
                 buffer.addLine(      "end");
                 buffer.addLine(    "end");
                 buffer.addLine(  "end");
-                buffer.addLine(  "@%1$s = list", property);
+                generateStore(declaringType, property, "list");
                 buffer.addLine("end");
             }
         }
         buffer.addLine();
     }
 
+    private void generateStore(StructType declaringType, String property, String variable) {
+        // Only values that aren't the current ones are recorded as changes, so that the constructor, which assigns
+        // all the members, doesn't mark as modified the ones that weren't given. The readers call 'ignore_changes'
+        // before using the setters, so that the hash of changes isn't created for the objects that they return:
+        String storage = structLayouts.getStorage(declaringType, property);
+        buffer.addLine("changed!(:%1$s) unless %2$s.equal?(%3$s)", property, variable, storage);
+
+        // Sparse storage keeps only the values that aren't nil:
+        if (structLayouts.isSparse(declaringType)) {
+            buffer.addLine("if %1$s.nil?", variable);
+            buffer.addLine(  "%1$s.delete(:%2$s)", StructLayouts.VALUES_VARIABLE, property);
+            buffer.addLine("else");
+            buffer.addLine(  "%1$s = %2$s", storage, variable);
+            buffer.addLine("end");
+        }
+        else {
+            buffer.addLine("%1$s = %2$s", storage, variable);
+        }
+    }
+
     private void generateEnums(Model model) {
         model.types()
             .filter(EnumType.class::isInstance)
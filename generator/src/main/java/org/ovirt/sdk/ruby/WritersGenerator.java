@@ -16,8 +16,11 @@ limitations under the License.
 
 package org.ovirt.sdk.ruby;
 
+import static java.util.stream.Collectors.toList;
+
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import javax.enterprise.inject.spi.CDI;
 import javax.inject.Inject;
 
@@ -48,6 +51,12 @@ public class WritersGenerator implements RubyGenerator {
     // The buffer used to generate the Ruby code:
     private RubyBuffer buffer;
 
+    // Indicates if the code being generated should write only the members that have been modified:
+    private boolean changes;
+
+    // The sorted struct types, the index of each type in this list is used to call the native writers:
+    private List<StructType> types;
+
     public void setOut(File newOut) {
         out = newOut;
     }
@@ -70,6 +79,10 @@ public class WritersGenerator implements RubyGenerator {
         }
     }
 
+    private boolean isStructList(Type type) {
+        return type instanceof ListType && ((ListType) type).getElementType() instanceof StructType;
+    }
+
     private void generateSource(Model model) {
         // Begin module:
         String moduleName = rubyNames.getModuleName();
@@ -77,13 +90,16 @@ public class WritersGenerator implements RubyGenerator {
         buffer.addLine();
 
         // Generate a writer for each struct type:
-        model.types()
+        types = model.types()
             .filter(StructType.class::isInstance)
             .map(StructType.class::cast)
             .sorted()
-            .forEach(this::generateWriter);
+            .collect(toList());
+        types.forEach(this::generateWriter);
 
-        // Generate code to register the writers:
+        // Generate the table that contains for each type the writer class. It contains only classes, and it is frozen
+        // itself, so that it can be shared by multiple ractors:
+        buffer.addLine("Writer::WRITERS = {");
         model.types()
             .filter(StructType.class::isInstance)
             .map(StructType.class::cast)
@@ -91,8 +107,9 @@ public class WritersGenerator implements RubyGenerator {
             .forEach(type -> {
                 String typeName = rubyNames.getTypeName(type).getClassName();
                 String writerName = rubyNames.getWriterName(type).getClassName();
-                buffer.addLine("Writer.register(%1$s, %2$s.method(:write_one))", typeName, writerName);
+                buffer.addLine("%1$s => %2$s,", typeName, writerName);
             });
+        buffer.addLine("}.freeze");
 
         // End module:
         buffer.endModule(moduleName);
@@ -114,10 +131,24 @@ public class WritersGenerator implements RubyGenerator {
         // Generate the method that writes one object:
         buffer.addLine("def self.write_one(object, writer, singular = nil)");
         buffer.addLine(  "singular ||= '%1$s'", singularTag);
+        buffer.addLine(  "return writer.write_struct(%1$d, object, singular) if NATIVE", types.indexOf(type));
+        buffer.addLine(  "writer.write_start(singular)");
+        buffer.addLine(  "href = object.href");
+        buffer.addLine(  "writer.write_attribute('href', href) unless href.nil?");
+        generateMembersWrite(type);
+        buffer.addLine(  "writer.write_end");
+        buffer.addLine("end");
+        buffer.addLine();
+
+        // Generate the method that writes only the members that have been modified, used by the update methods:
+        buffer.addLine("def self.write_changes(object, writer, singular = nil)");
+        buffer.addLine(  "singular ||= '%1$s'", singularTag);
         buffer.addLine(  "writer.write_start(singular)");
         buffer.addLine(  "href = object.href");
         buffer.addLine(  "writer.write_attribute('href', href) unless href.nil?");
+        changes = true;
         generateMembersWrite(type);
+        changes = false;
         buffer.addLine(  "writer.write_end");
         buffer.addLine("end");
         buffer.addLine();
@@ -170,6 +201,14 @@ public class WritersGenerator implements RubyGenerator {
         Type type = member.getType();
         String property = rubyNames.getMemberStyleName(name);
         String attribute = schemaNames.getSchemaTagName(name);
+        if (changes) {
+            buffer.addLine("if object.changed?(:%1$s)", property);
+            changes = false;
+            generateMemberWriteAsAttribute(member);
+            changes = true;
+            buffer.addLine("end");
+            return;
+        }
         if (type instanceof PrimitiveType) {
             generateWritePrimitivePropertyAsAttribute((PrimitiveType) type, attribute, "object." + property);
         }
@@ -200,6 +239,14 @@ public class WritersGenerator implements RubyGenerator {
         Type type = member.getType();
         String property = rubyNames.getMemberStyleName(name);
         String tag = schemaNames.getSchemaTagName(name);
+        if (changes && !(type instanceof StructType) && !isStructList(type)) {
+            buffer.addLine("if object.changed?(:%1$s)", property);
+            changes = false;
+            generateMemberWriteAsElement(member);
+            changes = true;
+            buffer.addLine("end");
+            return;
+        }
         if (type instanceof PrimitiveType) {
             generateWritePrimitivePropertyAsElement((PrimitiveType) type, tag, "object." + property);
         }
@@ -214,27 +261,30 @@ public class WritersGenerator implements RubyGenerator {
         }
     }
 
+    // The start and end tags of the elements are precomputed fragments that are written as is, only the values are
+    // converted and escaped:
     private void generateWritePrimitivePropertyAsElement(PrimitiveType type, String tag, String value) {
         Model model = type.getModel();
         if (type == model.getStringType()) {
-            buffer.addLine("Writer.write_string(writer, '%1$s', %2$s) unless %2$s.nil?", tag, value);
+            buffer.addLine("writer.write_escaped('<%1$s>', %2$s, '</%1$s>') unless %2$s.nil?", tag, value);
         }
         else if (type == model.getBooleanType()) {
-            buffer.addLine("Writer.write_boolean(writer, '%1$s', %2$s) unless %2$s.nil?", tag, value);
-        }
-        else if (type == model.getIntegerType()) {
-            buffer.addLine("Writer.write_integer(writer, '%1$s', %2$s) unless %2$s.nil?", tag, value);
+            buffer.addLine(
+                "writer.write_raw(%2$s ? '<%1$s>true</%1$s>' : '<%1$s>false</%1$s>') unless %2$s.nil?",
+                tag,
+                value
+            );
         }
-        else if (type == model.getDecimalType()) {
-            buffer.addLine("Writer.write_decimal(writer, '%1$s', %2$s) unless %2$s.nil?", tag, value);
+        else if (type == model.getIntegerType() || type == model.getDecimalType()) {
+            buffer.addLine("writer.write_escaped('<%1$s>', %2$s.to_s, '</%1$s>') unless %2$s.nil?", tag, value);
         }
         else if (type == model.getDateType()) {
-            buffer.addLine("Writer.write_date(writer, '%1$s', %2$s) unless %2$s.nil?", tag, value);
+            buffer.addLine("writer.write_escaped('<%1$s>', %2$s.xmlschema, '</%1$s>') unless %2$s.nil?", tag, value);
         }
     }
 
     private void generateWriteEnumPropertyAsElement(EnumType type, String tag, String value) {
-        buffer.addLine("Writer.write_string(writer, '%1$s', %2$s) unless %2$s.nil?", tag, value);
+        buffer.addLine("writer.write_escaped('<%1$s>', %2$s, '</%1$s>') unless %2$s.nil?", tag, value);
     }
 
     private void generateWriteStructPropertyAsElement(StructMember member) {
@@ -243,6 +293,23 @@ public class WritersGenerator implements RubyGenerator {
         String property = rubyNames.getMemberStyleName(name);
         String tag = schemaNames.getSchemaTagName(name);
         RubyName writerName = rubyNames.getWriterName(type);
+        if (changes) {
+            // An object that replaced the previous one is written completely, but one that has only been modified
+            // is written with its own changes:
+            buffer.addLine("unless object.%1$s.nil?", property);
+            buffer.addLine(  "if object.changed?(:%1$s)", property);
+            buffer.addLine(    "%1$s.write_one(object.%2$s, writer, '%3$s')", writerName.getClassName(), property, tag);
+            buffer.addLine(  "else");
+            buffer.addLine(
+                "%1$s.write_changes(object.%2$s, writer, '%3$s') if object.%2$s.changed?",
+                writerName.getClassName(),
+                property,
+                tag
+            );
+            buffer.addLine(  "end");
+            buffer.addLine("end");
+            return;
+        }
         buffer.addLine(
             "%1$s.write_one(object.%2$s, writer, '%3$s') unless object.%2$s.nil?",
             writerName.getClassName(),
@@ -261,7 +328,7 @@ public class WritersGenerator implements RubyGenerator {
         String singularTag = schemaNames.getSchemaTagName(names.getSingular(name));
         if (elementType instanceof PrimitiveType || elementType instanceof EnumType) {
             buffer.addLine("if not object.%1$s.nil? and not object.%1$s.empty? then", property);
-            buffer.addLine(  "writer.write_start('%1$s')", pluralTag);
+            buffer.addLine(  "writer.write_raw('<%1$s>')", pluralTag);
             buffer.addLine(  "object.%1$s.each do |item|", property);
             if (elementType instanceof PrimitiveType) {
                 generateWritePrimitivePropertyAsElement((PrimitiveType) elementType, singularTag, "item");
@@ -270,11 +337,25 @@ public class WritersGenerator implements RubyGenerator {
                 generateWriteEnumPropertyAsElement((EnumType) elementType, singularTag, "item");
             }
             buffer.addLine(  "end");
-            buffer.addLine(  "writer.end_element");
+            buffer.addLine(  "writer.write_raw('</%1$s>')", pluralTag);
             buffer.addLine("end");
         }
         else if (elementType instanceof StructType) {
             RubyName elementWriterName = rubyNames.getWriterName(elementType);
+            if (changes) {
+                // Lists are always written completely, as the server replaces them, either when they have been
+                // replaced or when any of their elements has been modified:
+                buffer.addLine("list = object.%1$s", property);
+                buffer.addLine("if !list.nil? && (object.changed?(:%1$s) || list.any?(&:changed?))", property);
+                buffer.addLine(
+                    "%1$s.write_many(list, writer, '%2$s', '%3$s')",
+                    elementWriterName.getClassName(),
+                    singularTag,
+                    pluralTag
+                );
+                buffer.addLine("end");
+                return;
+            }
             buffer.addLine(
                 "%1$s.write_many(object.%2$s, writer, '%3$s', '%4$s') unless object.%2$s.nil?",
                 elementWriterName.getClassName(),
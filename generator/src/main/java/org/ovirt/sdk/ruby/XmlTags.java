@@ -0,0 +1,107 @@
+/*
+Copyright (c) 2016 Red Hat, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ovirt.sdk.ruby;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.ovirt.api.metamodel.concepts.Model;
+import org.ovirt.api.metamodel.concepts.Name;
+import org.ovirt.api.metamodel.concepts.StructMember;
+import org.ovirt.api.metamodel.concepts.StructType;
+import org.ovirt.api.metamodel.tool.Names;
+import org.ovirt.api.metamodel.tool.SchemaNames;
+
+/**
+ * This class assigns integer identifiers to the XML tag names used by the model. The identifiers are used by the
+ * generated readers and by the perfect hash table compiled into the extension, so both need to be calculated from the
+ * same model, in the same way. The identifiers start with one, as zero is reserved for unknown tags.
+ */
+@ApplicationScoped
+public class XmlTags {
+    // Reference to the objects used to calculate the tag names:
+    @Inject private Names names;
+    @Inject private SchemaNames schemaNames;
+
+    // The model that was used to calculate the identifiers, the sorted list of tags, and the map from tag to
+    // identifier:
+    private Model model;
+    private List<String> tags;
+    private Map<String, Integer> ids;
+
+    /**
+     * Returns the sorted list of tag names of the model. The identifier of each tag is its position in this list plus
+     * one.
+     */
+    public synchronized List<String> getTags(Model model) {
+        if (this.model != model) {
+            calculate(model);
+        }
+        return tags;
+    }
+
+    /**
+     * Returns the identifier of the given tag name.
+     *
+     * @throws IllegalArgumentException if the tag isn't used by the model
+     */
+    public synchronized int getId(Model model, String tag) {
+        if (this.model != model) {
+            calculate(model);
+        }
+        Integer id = ids.get(tag);
+        if (id == null) {
+            throw new IllegalArgumentException("The tag \"" + tag + "\" isn't used by the model");
+        }
+        return id;
+    }
+
+    private void calculate(Model newModel) {
+        // Collect the names of the elements that represent types and members, and the name of the element used for
+        // links:
+        TreeSet<String> set = new TreeSet<>();
+        set.add("link");
+        newModel.types()
+            .filter(StructType.class::isInstance)
+            .map(StructType.class::cast)
+            .forEach(type -> {
+                Name typeName = type.getName();
+                set.add(schemaNames.getSchemaTagName(typeName));
+                set.add(schemaNames.getSchemaTagName(names.getPlural(typeName)));
+                type.attributes().map(StructMember::getName).map(schemaNames::getSchemaTagName).forEach(set::add);
+                type.links().map(StructMember::getName).map(schemaNames::getSchemaTagName).forEach(set::add);
+            });
+
+        // Assign the identifiers:
+        List<String> newTags = new ArrayList<>(set);
+        Map<String, Integer> newIds = new HashMap<>();
+        for (int i = 0; i < newTags.size(); i++) {
+            newIds.put(newTags.get(i), i + 1);
+        }
+
+        // Save the results:
+        model = newModel;
+        tags = Collections.unmodifiableList(newTags);
+        ids = newIds;
+    }
+}
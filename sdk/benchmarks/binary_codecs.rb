@@ -0,0 +1,71 @@
+#!/usr/bin/ruby
+
+#
+# Copyright (c) 2016 Red Hat, Inc.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#   http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+require 'benchmark'
+require 'ovirtsdk4'
+
+# This benchmark compares the time needed to load a cached list of virtual machines by parsing the XML document
+# returned by the server again, and by loading the binary representation generated by the binary codecs. Run it from
+# the `sdk` directory, after compiling the extension:
+#
+#   ruby -Ilib benchmarks/binary_codecs.rb [COUNT] [ROUNDS]
+
+count = (ARGV[0] || 1000).to_i
+rounds = (ARGV[1] || 10).to_i
+
+# Build the XML document, and the binary representation of the same objects:
+xml = '<vms>'
+count.times do |i|
+  xml << "<vm href=\"/ovirt-engine/api/vms/#{i}\" id=\"#{i}\">"
+  xml << "<name>vm#{i}</name>"
+  xml << '<description>My VM</description>'
+  xml << '<memory>1073741824</memory>'
+  xml << '<stateless>false</stateless>'
+  xml << '<creation_time>2016-01-01T00:00:00.000+00:00</creation_time>'
+  xml << '<cpu><topology><cores>1</cores><sockets>2</sockets><threads>1</threads></topology></cpu>'
+  xml << '<status>up</status>'
+  xml << "<cluster href=\"/ovirt-engine/api/clusters/0\" id=\"0\"/>"
+  xml << "<link href=\"/ovirt-engine/api/vms/#{i}/nics\" rel=\"nics\"/>"
+  xml << '</vm>'
+end
+xml << '</vms>'
+reader = OvirtSDK4::XmlReader.new(xml)
+begin
+  binary = OvirtSDK4::BinaryCodec.dump(OvirtSDK4::VmReader.read_many(reader))
+ensure
+  reader.close
+end
+
+puts "Loading #{count} virtual machines #{rounds} times (XML #{xml.bytesize} bytes, binary #{binary.bytesize} bytes)"
+
+Benchmark.bmbm do |bm|
+  bm.report('xml') do
+    rounds.times do
+      reader = OvirtSDK4::XmlReader.new(xml)
+      begin
+        OvirtSDK4::VmReader.read_many(reader)
+      ensure
+        reader.close
+      end
+    end
+  end
+  bm.report('binary') do
+    rounds.times do
+      OvirtSDK4::BinaryCodec.load(binary)
+    end
+  end
+end
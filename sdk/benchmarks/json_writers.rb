@@ -0,0 +1,69 @@
+#!/usr/bin/ruby
+
+#
+# Copyright (c) 2016 Red Hat, Inc.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#   http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+require 'benchmark'
+require 'ovirtsdk4'
+
+# This benchmark compares the time needed to write typical request bodies, the ones used to add virtual machines
+# and the ones used to execute actions like start and migrate, using the XML writers and the JSON writers. Run it
+# from the `sdk` directory, after compiling the extension:
+#
+#   ruby -Ilib benchmarks/json_writers.rb [COUNT]
+
+count = (ARGV[0] || 100000).to_i
+
+# Build the objects:
+vm = OvirtSDK4::Vm.new(
+  :name => 'myvm',
+  :description => 'My VM',
+  :memory => 1073741824,
+  :stateless => false,
+  :cluster => { :name => 'mycluster' },
+  :template => { :name => 'mytemplate' },
+  :cpu => { :topology => { :cores => 1, :sockets => 2, :threads => 1 } },
+)
+start = OvirtSDK4::Action.new(:pause => true, :use_cloud_init => false)
+migrate = OvirtSDK4::Action.new(:host => { :id => '123' }, :force => true)
+objects = [
+  [vm, OvirtSDK4::VmWriter, OvirtSDK4::VmJsonWriter],
+  [start, OvirtSDK4::ActionWriter, OvirtSDK4::ActionJsonWriter],
+  [migrate, OvirtSDK4::ActionWriter, OvirtSDK4::ActionJsonWriter],
+]
+
+puts "Writing #{count} times each of #{objects.size} request bodies"
+
+Benchmark.bmbm do |bm|
+  bm.report('xml') do
+    writer = OvirtSDK4::XmlWriter.new
+    count.times do
+      objects.each do |object, xml, _|
+        xml.write_one(object, writer)
+        writer.string
+        writer.reset
+      end
+    end
+    writer.close
+  end
+  bm.report('json') do
+    count.times do
+      objects.each do |object, _, json|
+        json.write_one(object, String.new)
+      end
+    end
+  end
+end
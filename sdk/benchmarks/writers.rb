@@ -0,0 +1,124 @@
+#!/usr/bin/ruby
+
+#
+# Copyright (c) 2016 Red Hat, Inc.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#   http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+require 'benchmark'
+require 'ovirtsdk4'
+
+# This benchmark compares the time needed to write the request bodies used to create virtual machines and disks in
+# bulk, using the generated writers, that write precomputed tag fragments, and using one call to the XML writer for
+# each element. Run it from the `sdk` directory, after compiling the extension:
+#
+#   ruby -Ilib benchmarks/writers.rb [COUNT] [ROUNDS]
+
+count = (ARGV[0] || 1000).to_i
+rounds = (ARGV[1] || 10).to_i
+
+# Build the objects:
+vms = Array.new(count) do |i|
+  OvirtSDK4::Vm.new(
+    :name => "vm#{i}",
+    :description => 'My VM',
+    :memory => 1073741824,
+    :stateless => false,
+    :cluster => { :name => 'mycluster' },
+    :template => { :name => 'mytemplate' },
+    :cpu => { :topology => { :cores => 1, :sockets => 2, :threads => 1 } },
+  )
+end
+disks = Array.new(count) do |i|
+  OvirtSDK4::Disk.new(
+    :alias => "disk#{i}",
+    :provisioned_size => 10737418240,
+    :bootable => false,
+    :format => OvirtSDK4::DiskFormat::COW,
+    :storage_domains => [{ :name => 'mydata' }],
+  )
+end
+
+# Writes the objects calling the XML writer once per element, the same that the generated writers did before they
+# started to use precomputed fragments:
+def write_vm_with_elements(vm, writer)
+  writer.write_start('vm')
+  writer.write_element('description', vm.description)
+  writer.write_element('memory', vm.memory.to_s)
+  writer.write_element('name', vm.name)
+  writer.write_element('stateless', vm.stateless.to_s)
+  writer.write_start('cluster')
+  writer.write_element('name', vm.cluster.name)
+  writer.write_end
+  writer.write_start('cpu')
+  writer.write_start('topology')
+  writer.write_element('cores', vm.cpu.topology.cores.to_s)
+  writer.write_element('sockets', vm.cpu.topology.sockets.to_s)
+  writer.write_element('threads', vm.cpu.topology.threads.to_s)
+  writer.write_end
+  writer.write_end
+  writer.write_start('template')
+  writer.write_element('name', vm.template.name)
+  writer.write_end
+  writer.write_end
+end
+
+def write_disk_with_elements(disk, writer)
+  writer.write_start('disk')
+  writer.write_element('alias', disk.alias)
+  writer.write_element('bootable', disk.bootable.to_s)
+  writer.write_element('format', disk.format)
+  writer.write_element('provisioned_size', disk.provisioned_size.to_s)
+  writer.write_start('storage_domains')
+  disk.storage_domains.each do |storage_domain|
+    writer.write_start('storage_domain')
+    writer.write_element('name', storage_domain.name)
+    writer.write_end
+  end
+  writer.write_end
+  writer.write_end
+end
+
+puts "Writing #{count} virtual machines and #{count} disks #{rounds} times"
+
+Benchmark.bmbm do |bm|
+  bm.report('elements') do
+    rounds.times do
+      writer = OvirtSDK4::XmlWriter.new
+      writer.write_start('vms')
+      vms.each { |vm| write_vm_with_elements(vm, writer) }
+      writer.write_end
+      writer.string
+      writer.close
+      writer = OvirtSDK4::XmlWriter.new
+      writer.write_start('disks')
+      disks.each { |disk| write_disk_with_elements(disk, writer) }
+      writer.write_end
+      writer.string
+      writer.close
+    end
+  end
+  bm.report('fragments') do
+    rounds.times do
+      writer = OvirtSDK4::XmlWriter.new
+      OvirtSDK4::VmWriter.write_many(vms, writer)
+      writer.string
+      writer.close
+      writer = OvirtSDK4::XmlWriter.new
+      OvirtSDK4::DiskWriter.write_many(disks, writer)
+      writer.string
+      writer.close
+    end
+  end
+end
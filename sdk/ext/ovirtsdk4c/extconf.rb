@@ -25,4 +25,17 @@ end
 $CPPFLAGS = "#{`xml2-config --cflags`.strip} #{$CPPFLAGS}"
 $LDFLAGS = "#{`xml2-config --libs`.strip} #{$LDFLAGS}"
 
+# Check if the functions used to release the global VM lock while parsing are available:
+have_header('ruby/thread.h')
+have_func('rb_thread_call_without_gvl', 'ruby/thread.h')
+have_func('rb_thread_call_with_gvl', 'ruby/thread.h')
+
+# Check if files can be mapped in memory, so that large documents stored in files can be parsed without reading them
+# into Ruby strings:
+have_header('sys/mman.h')
+have_func('mmap', 'sys/mman.h')
+
+# Check if the extension can declare that it is safe to use from multiple ractors:
+have_func('rb_ext_ractor_safe', 'ruby.h')
+
 create_makefile 'ovirtsdk4c'
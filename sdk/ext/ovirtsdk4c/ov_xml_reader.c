@@ -17,49 +17,123 @@ limitations under the License.
 #include <ruby.h>
 
 #include <ctype.h>
+#include <limits.h>
 #include <stdbool.h>
 #include <string.h>
 #include <strings.h>
 
 #include <libxml/xmlreader.h>
 
+#ifdef HAVE_RUBY_THREAD_H
+#include <ruby/thread.h>
+#endif
+
+#if defined(HAVE_SYS_MMAN_H) && defined(HAVE_MMAP)
+#define OV_XML_READER_MMAP
+#include <sys/mman.h>
+#include <sys/stat.h>
+#endif
+
 #include "ov_module.h"
 #include "ov_error.h"
 #include "ov_xml_reader.h"
+#include "ov_xml_tags.h"
+#include "ov_xml_tokens.h"
 
 /* Class: */
 VALUE ov_xml_reader_class;
 
 // Method identifiers:
 static ID READ_ID;
+static ID FILENO_ID;
+static ID POS_ID;
 static ID STRING_IO_ID;
+static ID DATE_TIME_ID;
+static ID NEW_ID;
+static ID XMLSCHEMA_ID;
+
+/* Shared empty hash returned for elements without attributes: */
+static VALUE EMPTY_HASH;
 
 typedef struct {
     VALUE io;
     xmlTextReaderPtr reader;
     bool closed;
+
+    /* When the reader works in tokenized mode the complete document is converted into a list of tokens in the
+       constructor, and then the rest of the methods work with that list instead of with the libxml reader: */
+    ov_xml_tokens* tokens;
+    size_t position;
+
+    /* This is set while the document is being tokenized with the global VM lock released, and the state is used to
+       save the exceptions raised while reading from the IO object during that time: */
+    bool tokenizing;
+    int state;
+
+    /* The hash used by the generated readers to share the objects that are referenced multiple times in the same
+       document, or nil if they shouldn't be shared: */
+    VALUE identities;
+
+    /* When the source is a file it is mapped in memory, and the parser reads directly from the mapped region instead
+       of calling the IO object: */
+    char* map;
+    size_t map_length;
+    size_t map_position;
 } ov_xml_reader_object;
 
+/* The arguments and result of a read from the IO object: */
+typedef struct {
+    ov_xml_reader_object* object;
+    char* buffer;
+    int length;
+    int result;
+} ov_xml_reader_io_args;
+
+/* The arguments and result of the tokenization of a document: */
+typedef struct {
+    ov_xml_reader_object* object;
+    int result;
+} ov_xml_reader_tokenize_args;
+
 static void ov_xml_reader_check_closed(ov_xml_reader_object* object) {
     if (object->closed) {
         rb_raise(ov_error_class, "The reader is already closed");
     }
 }
 
+static void ov_xml_reader_unmap(ov_xml_reader_object* object) {
+#ifdef OV_XML_READER_MMAP
+    if (object->map != NULL) {
+        munmap(object->map, object->map_length);
+    }
+#endif
+    object->map = NULL;
+    object->map_length = 0;
+    object->map_position = 0;
+}
+
 static void ov_xml_reader_mark(ov_xml_reader_object *object) {
     /* Mark the IO object as reachable: */
     if (!NIL_P(object->io)) {
         rb_gc_mark(object->io);
     }
+
+    /* Mark the identity map as reachable: */
+    if (!NIL_P(object->identities)) {
+        rb_gc_mark(object->identities);
+    }
 }
 
 static void ov_xml_reader_free(ov_xml_reader_object *object) {
-    /* Free the libxml reader: */
+    /* Free the libxml reader and the tokens: */
     if (!object->closed) {
        if (object->reader != NULL) {
            xmlFreeTextReader(object->reader);
        }
        object->reader = NULL;
+       ov_xml_tokens_free(object->tokens);
+       object->tokens = NULL;
+       ov_xml_reader_unmap(object);
        object->closed = true;
     }
 
@@ -72,11 +146,48 @@ static VALUE ov_xml_reader_alloc(VALUE klass) {
 
     object = ALLOC(ov_xml_reader_object);
     memset(object, 0, sizeof(ov_xml_reader_object));
+    object->identities = Qnil;
     return Data_Wrap_Struct(klass, ov_xml_reader_mark, ov_xml_reader_free, object);
 }
 
-static int ov_xml_reader_callback(void *context, char *buffer, int length) {
+static VALUE ov_xml_reader_io_read(VALUE ptr) {
     VALUE data;
+    ov_xml_reader_io_args* args = NULL;
+
+    /* Read from the Ruby IO object, and copy the result to the buffer: */
+    args = (ov_xml_reader_io_args*) ptr;
+    data = rb_funcall(args->object->io, READ_ID, 1, INT2NUM(args->length));
+    if (NIL_P(data)) {
+        args->result = 0;
+        return Qnil;
+    }
+    StringValue(data);
+    if (RSTRING_LEN(data) > args->length) {
+        rb_raise(ov_error_class, "The source returned more data than requested");
+    }
+    args->result = RSTRING_LEN(data);
+    memcpy(args->buffer, RSTRING_PTR(data), args->result);
+
+    return Qnil;
+}
+
+#ifdef HAVE_RB_THREAD_CALL_WITH_GVL
+static void* ov_xml_reader_io_read_protected(void* ptr) {
+    ov_xml_reader_io_args* args = NULL;
+
+    /* Exceptions can't be propagated through the libxml code that is running without the global VM lock, so they are
+       saved, and raised again once the lock has been acquired again: */
+    args = (ov_xml_reader_io_args*) ptr;
+    rb_protect(ov_xml_reader_io_read, (VALUE) args, &args->object->state);
+    if (args->object->state != 0) {
+        args->result = -1;
+    }
+    return NULL;
+}
+#endif
+
+static int ov_xml_reader_callback(void *context, char *buffer, int length) {
+    ov_xml_reader_io_args args;
     ov_xml_reader_object* object = NULL;
 
     /* Do nothing if the reader is already closed: */
@@ -85,17 +196,132 @@ static int ov_xml_reader_callback(void *context, char *buffer, int length) {
         return -1;
     }
 
-    /* Read from the Ruby IO object, and copy the result to the buffer: */
-    data = rb_funcall(object->io, READ_ID, 1, INT2NUM(length));
-    if (NIL_P(data)) {
-        return 0;
+    /* Prepare the arguments: */
+    args.object = object;
+    args.buffer = buffer;
+    args.length = length;
+    args.result = 0;
+
+    /* If the document is being tokenized then the global VM lock has been released, and it needs to be acquired
+       again in order to call the IO object: */
+#ifdef HAVE_RB_THREAD_CALL_WITH_GVL
+    if (object->tokenizing) {
+        if (object->state != 0) {
+            return -1;
+        }
+        rb_thread_call_with_gvl(ov_xml_reader_io_read_protected, &args);
+        return args.result;
+    }
+#endif
+
+    ov_xml_reader_io_read((VALUE) &args);
+    return args.result;
+}
+
+static void* ov_xml_reader_tokenize_without_gvl(void* ptr) {
+    ov_xml_reader_tokenize_args* args = NULL;
+
+    args = (ov_xml_reader_tokenize_args*) ptr;
+    args->result = ov_xml_tokens_parse(args->object->tokens, args->object->reader);
+    return NULL;
+}
+
+static void ov_xml_reader_tokenize(ov_xml_reader_object* object) {
+    ov_xml_reader_tokenize_args args;
+    int state = 0;
+
+    /* Create the list of tokens: */
+    object->tokens = ov_xml_tokens_new();
+    if (object->tokens == NULL) {
+        rb_raise(ov_error_class, "Can't allocate tokens");
     }
-    length = RSTRING_LEN(data);
-    memcpy(buffer, StringValuePtr(data), length);
 
+    /* Parse the complete document, releasing the global VM lock if possible, so that other threads can run while the
+       document is parsed: */
+    args.object = object;
+    args.result = 0;
+#if defined(HAVE_RB_THREAD_CALL_WITHOUT_GVL) && defined(HAVE_RB_THREAD_CALL_WITH_GVL)
+    object->tokenizing = true;
+    object->state = 0;
+    rb_thread_call_without_gvl(ov_xml_reader_tokenize_without_gvl, &args, NULL, NULL);
+    object->tokenizing = false;
+    state = object->state;
+    object->state = 0;
+#else
+    ov_xml_reader_tokenize_without_gvl(&args);
+#endif
+
+    /* The libxml reader and the mapped file aren't needed any more, as the tokens contain copies of the text: */
+    xmlFreeTextReader(object->reader);
+    object->reader = NULL;
+    ov_xml_reader_unmap(object);
+
+    /* Raise the exception that may have happened while reading from the IO object, or the parsing error: */
+    if (state != 0) {
+        rb_jump_tag(state);
+    }
+    if (args.result != 0) {
+        rb_raise(ov_error_class, "Can't parse XML document");
+    }
+}
+
+static int ov_xml_reader_map_callback(void *context, char *buffer, int length) {
+    ov_xml_reader_object* object = NULL;
+    size_t available = 0;
+
+    /* Copy the next chunk of the mapped region to the buffer of the parser, without calling Ruby code, so this is
+       safe also when the document is being tokenized with the global VM lock released: */
+    object = (ov_xml_reader_object*) context;
+    if (object->closed || object->map == NULL) {
+        return -1;
+    }
+    available = object->map_length - object->map_position;
+    if ((size_t) length > available) {
+        length = (int) available;
+    }
+    memcpy(buffer, object->map + object->map_position, length);
+    object->map_position += length;
     return length;
 }
 
+static bool ov_xml_reader_map_file(ov_xml_reader_object* object, VALUE file) {
+#ifdef OV_XML_READER_MMAP
+    int fd = 0;
+    off_t position = 0;
+    struct stat info;
+    void* map = NULL;
+
+    /* Only regular files that aren't empty can be mapped, the rest are read with the IO object: */
+    fd = NUM2INT(rb_funcall(file, FILENO_ID, 0));
+    if (fstat(fd, &info) == -1 || !S_ISREG(info.st_mode) || info.st_size == 0) {
+        return false;
+    }
+
+    /* The Ruby IO object may have already consumed part of the file, so parsing starts at its current position,
+       which isn't necessarily the position of the file descriptor, as Ruby buffers data: */
+    position = NUM2OFFT(rb_funcall(file, POS_ID, 0));
+    if (position < 0 || position >= info.st_size) {
+        return false;
+    }
+
+    /* Map the complete file, and tell the kernel that it will be read sequentially, so that pages can be read ahead
+       and discarded early: */
+    map = mmap(NULL, (size_t) info.st_size, PROT_READ, MAP_PRIVATE, fd, 0);
+    if (map == MAP_FAILED) {
+        return false;
+    }
+#ifdef MADV_SEQUENTIAL
+    madvise(map, (size_t) info.st_size, MADV_SEQUENTIAL);
+#endif
+    object->map = (char*) map;
+    object->map_length = (size_t) info.st_size;
+    object->map_position = (size_t) position;
+    return true;
+#else
+    return false;
+#endif
+}
+
 static VALUE ov_xml_reader_create_string_io(VALUE text) {
     VALUE sio_class;
     VALUE sio_obj;
@@ -105,21 +331,30 @@ static VALUE ov_xml_reader_create_string_io(VALUE text) {
     return sio_obj;
 }
 
-static VALUE ov_xml_reader_initialize(VALUE self, VALUE io) {
+static VALUE ov_xml_reader_initialize(int argc, VALUE* argv, VALUE self) {
+    VALUE io;
     VALUE io_class;
+    VALUE tokenize;
     int rc = 0;
     ov_xml_reader_object* object = NULL;
 
     /* Get the pointer to the object: */
     Data_Get_Struct(self, ov_xml_reader_object, object);
 
-    /* The parameter of the constructor can be a string or an IO object. If it is a string then we need to create aa
-       IO object to read from it. */
+    /* Get the parameters: */
+    rb_scan_args(argc, argv, "11", &io, &tokenize);
+
+    /* The parameter of the constructor can be a string or any object that responds to the 'read' method, like an IO
+       object or a stream of the body of an HTTP response that is still being downloaded. If it is a string then we
+       need to create an IO object to read from it. If it is a file then it is mapped in memory, if possible. */
     io_class = rb_class_of(io);
-    if (io_class == rb_cString) {
+    if (rb_obj_is_kind_of(io, rb_cFile) && ov_xml_reader_map_file(object, io)) {
+        object->io = io;
+    }
+    else if (io_class == rb_cString) {
         object->io = ov_xml_reader_create_string_io(io);
     }
-    else if (io_class == rb_cIO) {
+    else if (rb_respond_to(io, READ_ID)) {
         object->io = io;
     }
     else {
@@ -133,12 +368,34 @@ static VALUE ov_xml_reader_initialize(VALUE self, VALUE io) {
     /* Clear the closed flag: */
     object->closed = false;
 
-    /* Create the libxml reader: */
-    object->reader = xmlReaderForIO(ov_xml_reader_callback, NULL, object, NULL, NULL, 0);
+    /* Create the libxml reader. Mapped files are parsed directly from memory when their size fits in the integer that
+       libxml uses for the size of memory buffers, and in chunks copied from the mapped region otherwise: */
+    if (object->map != NULL && object->map_length - object->map_position <= INT_MAX) {
+        object->reader = xmlReaderForMemory(
+            object->map + object->map_position,
+            (int) (object->map_length - object->map_position),
+            NULL,
+            NULL,
+            0
+        );
+    }
+    else if (object->map != NULL) {
+        object->reader = xmlReaderForIO(ov_xml_reader_map_callback, NULL, object, NULL, NULL, 0);
+    }
+    else {
+        object->reader = xmlReaderForIO(ov_xml_reader_callback, NULL, object, NULL, NULL, 0);
+    }
     if (object->reader == NULL) {
         rb_raise(ov_error_class, "Can't create reader");
     }
 
+    /* In tokenized mode parse the complete document now, and leave the cursor at the first token: */
+    if (RTEST(tokenize)) {
+        ov_xml_reader_tokenize(object);
+        object->position = 0;
+        return self;
+    }
+
     /* Move the cursor to the first node: */
     rc = xmlTextReaderRead(object->reader);
     if (rc == -1) {
@@ -148,12 +405,188 @@ static VALUE ov_xml_reader_initialize(VALUE self, VALUE io) {
     return self;
 }
 
+static ov_xml_token* ov_xml_reader_token(ov_xml_reader_object* object) {
+    if (object->position < object->tokens->count) {
+        return &object->tokens->tokens[object->position];
+    }
+    return NULL;
+}
+
+static VALUE ov_xml_reader_token_string(ov_xml_reader_object* object, size_t offset, size_t length) {
+    return rb_str_new(object->tokens->chars + offset, length);
+}
+
+static VALUE ov_xml_reader_tokens_read(ov_xml_reader_object* object) {
+    if (object->position < object->tokens->count) {
+        object->position++;
+    }
+    return object->position < object->tokens->count? Qtrue: Qfalse;
+}
+
+static VALUE ov_xml_reader_tokens_forward(ov_xml_reader_object* object) {
+    ov_xml_token* token;
+
+    while ((token = ov_xml_reader_token(object)) != NULL) {
+        if (token->type == OV_XML_TOKEN_START) {
+            return Qtrue;
+        }
+        if (token->type == OV_XML_TOKEN_END) {
+            return Qfalse;
+        }
+        object->position++;
+    }
+    return Qfalse;
+}
+
+static VALUE ov_xml_reader_tokens_node_name(ov_xml_reader_object* object) {
+    ov_xml_token* token;
+
+    token = ov_xml_reader_token(object);
+    if (token == NULL) {
+        return Qnil;
+    }
+    if (token->type == OV_XML_TOKEN_TEXT) {
+        return rb_str_new_cstr("#text");
+    }
+    return ov_xml_reader_token_string(object, token->text, token->length);
+}
+
+static VALUE ov_xml_reader_tokens_node_id(ov_xml_reader_object* object) {
+    ov_xml_token* token;
+
+    token = ov_xml_reader_token(object);
+    return INT2FIX(token != NULL? token->id: 0);
+}
+
+static VALUE ov_xml_reader_tokens_empty_element(ov_xml_reader_object* object) {
+    ov_xml_token* token;
+
+    token = ov_xml_reader_token(object);
+    return token != NULL && token->type == OV_XML_TOKEN_START && token->empty? Qtrue: Qfalse;
+}
+
+static VALUE ov_xml_reader_tokens_get_attribute(ov_xml_reader_object* object, VALUE name) {
+    ov_xml_token* token;
+    ov_xml_token_attr* attr;
+    const char* c_name;
+    size_t c_length;
+    size_t i;
+
+    token = ov_xml_reader_token(object);
+    if (token == NULL || token->type != OV_XML_TOKEN_START) {
+        return Qnil;
+    }
+    c_name = StringValueCStr(name);
+    c_length = strlen(c_name);
+    for (i = 0; i < token->attrs_count; i++) {
+        attr = &object->tokens->attrs[token->attrs + i];
+        if (attr->name_length == c_length && memcmp(object->tokens->chars + attr->name, c_name, c_length) == 0) {
+            return ov_xml_reader_token_string(object, attr->value, attr->value_length);
+        }
+    }
+    return Qnil;
+}
+
+static VALUE ov_xml_reader_tokens_attributes(ov_xml_reader_object* object) {
+    VALUE attributes;
+    ov_xml_token* token;
+    ov_xml_token_attr* attr;
+    size_t i;
+
+    token = ov_xml_reader_token(object);
+    if (token == NULL || token->type != OV_XML_TOKEN_START || token->attrs_count == 0) {
+        return EMPTY_HASH;
+    }
+    attributes = rb_hash_new();
+    for (i = 0; i < token->attrs_count; i++) {
+        attr = &object->tokens->attrs[token->attrs + i];
+        rb_hash_aset(
+            attributes,
+            ov_xml_reader_token_string(object, attr->name, attr->name_length),
+            ov_xml_reader_token_string(object, attr->value, attr->value_length)
+        );
+    }
+    return attributes;
+}
+
+static VALUE ov_xml_reader_tokens_read_element(ov_xml_reader_object* object) {
+    VALUE value;
+    ov_xml_token* token;
+    ov_xml_token* inner;
+    size_t i;
+
+    token = ov_xml_reader_token(object);
+    if (token == NULL || token->type != OV_XML_TOKEN_START) {
+        rb_raise(ov_error_class, "Current node isn't the start of an element");
+    }
+
+    /* Empty elements have no value, otherwise the value is the concatenation of all the nested text: */
+    value = Qnil;
+    if (!token->empty) {
+        value = rb_str_new(NULL, 0);
+        for (i = object->position + 1; i < token->next; i++) {
+            inner = &object->tokens->tokens[i];
+            if (inner->type == OV_XML_TOKEN_TEXT) {
+                rb_str_cat(value, object->tokens->chars + inner->text, inner->length);
+            }
+        }
+    }
+
+    /* Move to the next element: */
+    object->position = token->next;
+    return value;
+}
+
+static VALUE ov_xml_reader_tokens_read_elements(ov_xml_reader_object* object) {
+    VALUE list;
+    ov_xml_token* token;
+    bool empty;
+
+    token = ov_xml_reader_token(object);
+    if (token == NULL || token->type != OV_XML_TOKEN_START) {
+        rb_raise(ov_error_class, "Current node isn't the start of an element");
+    }
+    empty = token->empty;
+    object->position++;
+    list = rb_ary_new();
+    if (empty) {
+        return list;
+    }
+    while ((token = ov_xml_reader_token(object)) != NULL) {
+        if (token->type == OV_XML_TOKEN_START) {
+            rb_ary_push(list, ov_xml_reader_tokens_read_element(object));
+        }
+        else if (token->type == OV_XML_TOKEN_END) {
+            object->position++;
+            break;
+        }
+        else {
+            object->position++;
+        }
+    }
+    return list;
+}
+
+static VALUE ov_xml_reader_tokens_next_element(ov_xml_reader_object* object) {
+    ov_xml_token* token;
+
+    token = ov_xml_reader_token(object);
+    if (token == NULL) {
+        return Qfalse;
+    }
+    object->position = token->next;
+    return object->position < object->tokens->count? Qtrue: Qfalse;
+}
+
 static VALUE ov_xml_reader_read(VALUE self) {
     int rc = 0;
     ov_xml_reader_object* object = NULL;
 
     Data_Get_Struct(self, ov_xml_reader_object, object);
     ov_xml_reader_check_closed(object);
+    if (object->tokens != NULL) {
+        return ov_xml_reader_tokens_read(object);
+    }
     rc = xmlTextReaderRead(object->reader);
     if (rc == 0) {
         return Qfalse;
@@ -172,6 +605,9 @@ static VALUE ov_xml_reader_forward(VALUE self) {
 
     Data_Get_Struct(self, ov_xml_reader_object, object);
     ov_xml_reader_check_closed(object);
+    if (object->tokens != NULL) {
+        return ov_xml_reader_tokens_forward(object);
+    }
 
     for (;;) {
         c_type = xmlTextReaderNodeType(object->reader);
@@ -200,6 +636,9 @@ static VALUE ov_xml_reader_node_name(VALUE self) {
 
     Data_Get_Struct(self, ov_xml_reader_object, object);
     ov_xml_reader_check_closed(object);
+    if (object->tokens != NULL) {
+        return ov_xml_reader_tokens_node_name(object);
+    }
     c_name = xmlTextReaderConstName(object->reader);
     if (c_name == NULL) {
         return Qnil;
@@ -208,12 +647,58 @@ static VALUE ov_xml_reader_node_name(VALUE self) {
     return name;
 }
 
+static VALUE ov_xml_reader_node_id(VALUE self) {
+    const xmlChar* c_name = NULL;
+    ov_xml_reader_object* object = NULL;
+
+    Data_Get_Struct(self, ov_xml_reader_object, object);
+    ov_xml_reader_check_closed(object);
+    if (object->tokens != NULL) {
+        return ov_xml_reader_tokens_node_id(object);
+    }
+    c_name = xmlTextReaderConstName(object->reader);
+    if (c_name == NULL) {
+        return INT2FIX(0);
+    }
+    return INT2FIX(ov_xml_tags_lookup((const char*) c_name, strlen((const char*) c_name)));
+}
+
+static VALUE ov_xml_reader_next_id(VALUE self) {
+    /* Moves to the next element and returns its identifier, or nil if there are no more elements, with one call
+       instead of the two calls that would be needed using "forward" and "node_id": */
+    if (!RTEST(ov_xml_reader_forward(self))) {
+        return Qnil;
+    }
+    return ov_xml_reader_node_id(self);
+}
+
+static VALUE ov_xml_reader_get_identities(VALUE self) {
+    ov_xml_reader_object* object = NULL;
+
+    Data_Get_Struct(self, ov_xml_reader_object, object);
+    return object->identities;
+}
+
+static VALUE ov_xml_reader_set_identities(VALUE self, VALUE identities) {
+    ov_xml_reader_object* object = NULL;
+
+    Data_Get_Struct(self, ov_xml_reader_object, object);
+    if (!NIL_P(identities)) {
+        Check_Type(identities, T_HASH);
+    }
+    object->identities = identities;
+    return identities;
+}
+
 static VALUE ov_xml_reader_empty_element(VALUE self) {
     int c_empty = 0;
     ov_xml_reader_object* object = NULL;
 
     Data_Get_Struct(self, ov_xml_reader_object, object);
     ov_xml_reader_check_closed(object);
+    if (object->tokens != NULL) {
+        return ov_xml_reader_tokens_empty_element(object);
+    }
     c_empty = xmlTextReaderIsEmptyElement(object->reader);
     if (c_empty == -1) {
         rb_raise(ov_error_class, "Can't check if current element is empty");
@@ -229,6 +714,9 @@ static VALUE ov_xml_reader_get_attribute(VALUE self, VALUE name) {
 
     Data_Get_Struct(self, ov_xml_reader_object, object);
     ov_xml_reader_check_closed(object);
+    if (object->tokens != NULL) {
+        return ov_xml_reader_tokens_get_attribute(object, name);
+    }
     c_name = (xmlChar*) StringValueCStr(name);
     c_value = xmlTextReaderGetAttribute(object->reader, c_name);
     if (c_value == NULL) {
@@ -239,6 +727,54 @@ static VALUE ov_xml_reader_get_attribute(VALUE self, VALUE name) {
     return value;
 }
 
+static VALUE ov_xml_reader_attributes(VALUE self) {
+    VALUE attributes;
+    VALUE name;
+    VALUE value;
+    int rc = 0;
+    ov_xml_reader_object* object = NULL;
+    const xmlChar* c_name = NULL;
+    const xmlChar* c_value = NULL;
+
+    Data_Get_Struct(self, ov_xml_reader_object, object);
+    ov_xml_reader_check_closed(object);
+    if (object->tokens != NULL) {
+        return ov_xml_reader_tokens_attributes(object);
+    }
+
+    /* Most elements don't have attributes, so in that case return the shared empty hash, to avoid allocating a new
+       one: */
+    rc = xmlTextReaderHasAttributes(object->reader);
+    if (rc == -1) {
+        rb_raise(ov_error_class, "Can't check if current element has attributes");
+    }
+    if (rc == 0) {
+        return EMPTY_HASH;
+    }
+
+    /* Iterate the attributes, using the names and values stored inside the reader, so that the only strings created
+       are the Ruby ones: */
+    attributes = rb_hash_new();
+    rc = xmlTextReaderMoveToFirstAttribute(object->reader);
+    while (rc == 1) {
+        c_name = xmlTextReaderConstName(object->reader);
+        c_value = xmlTextReaderConstValue(object->reader);
+        if (c_name != NULL && c_value != NULL) {
+            name = rb_str_new_cstr((char*) c_name);
+            value = rb_str_new_cstr((char*) c_value);
+            rb_hash_aset(attributes, name, value);
+        }
+        rc = xmlTextReaderMoveToNextAttribute(object->reader);
+    }
+
+    /* Move the cursor back to the element that contains the attributes: */
+    if (xmlTextReaderMoveToElement(object->reader) == -1 || rc == -1) {
+        rb_raise(ov_error_class, "Can't read attributes of current element");
+    }
+
+    return attributes;
+}
+
 static VALUE ov_xml_reader_read_element(VALUE self) {
     VALUE value;
     int c_empty = 0;
@@ -249,6 +785,9 @@ static VALUE ov_xml_reader_read_element(VALUE self) {
 
     Data_Get_Struct(self, ov_xml_reader_object, object);
     ov_xml_reader_check_closed(object);
+    if (object->tokens != NULL) {
+        return ov_xml_reader_tokens_read_element(object);
+    }
 
     /* Check the type of the current node: */
     c_type = xmlTextReaderNodeType(object->reader);
@@ -309,6 +848,9 @@ static VALUE ov_xml_reader_read_elements(VALUE self) {
     /* Get the pointer to the object and check that it isn't closed: */
     Data_Get_Struct(self, ov_xml_reader_object, object);
     ov_xml_reader_check_closed(object);
+    if (object->tokens != NULL) {
+        return ov_xml_reader_tokens_read_elements(object);
+    }
 
     /* This method assumes that the reader is positioned at the element that contains the values to read. For example
        if the XML document is the following:
@@ -382,12 +924,315 @@ static VALUE ov_xml_reader_read_elements(VALUE self) {
     return list;
 }
 
+static void ov_xml_reader_trim(VALUE text, const char** start, const char** end) {
+    const char* c_start;
+    const char* c_end;
+
+    c_start = RSTRING_PTR(text);
+    c_end = c_start + RSTRING_LEN(text);
+    while (c_start < c_end && isspace((unsigned char) *c_start)) {
+        c_start++;
+    }
+    while (c_end > c_start && isspace((unsigned char) *(c_end - 1))) {
+        c_end--;
+    }
+    *start = c_start;
+    *end = c_end;
+}
+
+static const char* ov_xml_reader_skip_digits(const char* c_ptr, const char* c_end) {
+    while (c_ptr < c_end && isdigit((unsigned char) *c_ptr)) {
+        c_ptr++;
+    }
+    return c_ptr;
+}
+
+static VALUE ov_xml_reader_parse_integer_slow(VALUE text) {
+    return rb_str_to_inum(text, 10, 1);
+}
+
+static VALUE ov_xml_reader_parse_integer_error(VALUE text, VALUE error) {
+    rb_raise(ov_error_class, "The text '%"PRIsVALUE"' isn't a valid integer value.", text);
+    return Qnil;
+}
+
+static VALUE ov_xml_reader_parse_integer(VALUE text) {
+    const char* c_start;
+    const char* c_end;
+    const char* c_ptr;
+    long long c_value;
+    bool c_negative;
+
+    if (NIL_P(text)) {
+        return Qnil;
+    }
+
+    /* The common case, a short sequence of digits with an optional sign, is converted directly. Anything else is
+       converted using the same function that the Ruby 'Integer' method uses, so that the results are the same: */
+    ov_xml_reader_trim(text, &c_start, &c_end);
+    c_negative = false;
+    if (c_start < c_end && (*c_start == '+' || *c_start == '-')) {
+        c_negative = *c_start == '-';
+        c_start++;
+    }
+    if (c_start < c_end && c_end - c_start <= 18) {
+        c_value = 0;
+        for (c_ptr = c_start; c_ptr < c_end && isdigit((unsigned char) *c_ptr); c_ptr++) {
+            c_value = c_value * 10 + (*c_ptr - '0');
+        }
+        if (c_ptr == c_end) {
+            return LL2NUM(c_negative? -c_value: c_value);
+        }
+    }
+    return rb_rescue(ov_xml_reader_parse_integer_slow, text, ov_xml_reader_parse_integer_error, text);
+}
+
+static VALUE ov_xml_reader_parse_decimal_slow(VALUE text) {
+    return DBL2NUM(rb_str_to_dbl(text, 1));
+}
+
+static VALUE ov_xml_reader_parse_decimal_error(VALUE text, VALUE error) {
+    rb_raise(ov_error_class, "The text '%"PRIsVALUE"' isn't a valid decimal value.", text);
+    return Qnil;
+}
+
+static VALUE ov_xml_reader_parse_decimal(VALUE text) {
+    const char* c_start;
+    const char* c_end;
+    const char* c_ptr;
+    char* c_parsed;
+    double c_value;
+
+    if (NIL_P(text)) {
+        return Qnil;
+    }
+
+    /* Texts that match the simple format '[sign]digits[.digits][e[sign]digits]' are converted directly, and
+       anything else using the same function that the Ruby 'Float' method uses: */
+    ov_xml_reader_trim(text, &c_start, &c_end);
+    c_ptr = c_start;
+    if (c_ptr < c_end && (*c_ptr == '+' || *c_ptr == '-')) {
+        c_ptr++;
+    }
+    if (c_ptr < c_end && isdigit((unsigned char) *c_ptr)) {
+        c_ptr = ov_xml_reader_skip_digits(c_ptr, c_end);
+        if (c_ptr < c_end && *c_ptr == '.' && c_ptr + 1 < c_end && isdigit((unsigned char) *(c_ptr + 1))) {
+            c_ptr = ov_xml_reader_skip_digits(c_ptr + 1, c_end);
+        }
+        if (c_ptr < c_end && (*c_ptr == 'e' || *c_ptr == 'E')) {
+            c_ptr++;
+            if (c_ptr < c_end && (*c_ptr == '+' || *c_ptr == '-')) {
+                c_ptr++;
+            }
+            if (c_ptr < c_end && isdigit((unsigned char) *c_ptr)) {
+                c_ptr = ov_xml_reader_skip_digits(c_ptr, c_end);
+            }
+            else {
+                c_ptr = NULL;
+            }
+        }
+        if (c_ptr == c_end) {
+            c_value = strtod(c_start, &c_parsed);
+            if (c_parsed == c_end) {
+                return DBL2NUM(c_value);
+            }
+        }
+    }
+    return rb_rescue(ov_xml_reader_parse_decimal_slow, text, ov_xml_reader_parse_decimal_error, text);
+}
+
+static VALUE ov_xml_reader_parse_boolean(VALUE text) {
+    const char* c_text;
+    long c_length;
+
+    if (NIL_P(text)) {
+        return Qnil;
+    }
+    c_text = RSTRING_PTR(text);
+    c_length = RSTRING_LEN(text);
+    if ((c_length == 5 && strncasecmp(c_text, "false", 5) == 0) || (c_length == 1 && *c_text == '0')) {
+        return Qfalse;
+    }
+    if ((c_length == 4 && strncasecmp(c_text, "true", 4) == 0) || (c_length == 1 && *c_text == '1')) {
+        return Qtrue;
+    }
+    rb_raise(ov_error_class, "The text '%"PRIsVALUE"' isn't a valid boolean value.", text);
+    return Qnil;
+}
+
+static bool ov_xml_reader_parse_number(const char** c_ptr, const char* c_end, int digits, int* c_value) {
+    int i;
+
+    *c_value = 0;
+    for (i = 0; i < digits; i++) {
+        if (*c_ptr >= c_end || !isdigit((unsigned char) **c_ptr)) {
+            return false;
+        }
+        *c_value = *c_value * 10 + (**c_ptr - '0');
+        (*c_ptr)++;
+    }
+    return true;
+}
+
+static bool ov_xml_reader_parse_char(const char** c_ptr, const char* c_end, char c) {
+    if (*c_ptr >= c_end || **c_ptr != c) {
+        return false;
+    }
+    (*c_ptr)++;
+    return true;
+}
+
+static VALUE ov_xml_reader_parse_date_text(VALUE text) {
+    const char* c_ptr;
+    const char* c_end;
+    int year, month, day, hour, minute, second, offset_hours, offset_minutes, offset;
+    long long fraction, scale;
+    VALUE seconds;
+    VALUE date_time_class;
+
+    /* The engine always sends dates using the format 'YYYY-MM-DDTHH:MM:SS.fff+HH:MM', so that format is decoded
+       directly, and the date is created from its components. For any other format the text is parsed with the same
+       'DateTime.xmlschema' method used by the Ruby readers: */
+    date_time_class = rb_const_get(rb_cObject, DATE_TIME_ID);
+    c_ptr = RSTRING_PTR(text);
+    c_end = c_ptr + RSTRING_LEN(text);
+    if (
+        !ov_xml_reader_parse_number(&c_ptr, c_end, 4, &year) ||
+        !ov_xml_reader_parse_char(&c_ptr, c_end, '-') ||
+        !ov_xml_reader_parse_number(&c_ptr, c_end, 2, &month) ||
+        !ov_xml_reader_parse_char(&c_ptr, c_end, '-') ||
+        !ov_xml_reader_parse_number(&c_ptr, c_end, 2, &day) ||
+        !ov_xml_reader_parse_char(&c_ptr, c_end, 'T') ||
+        !ov_xml_reader_parse_number(&c_ptr, c_end, 2, &hour) ||
+        !ov_xml_reader_parse_char(&c_ptr, c_end, ':') ||
+        !ov_xml_reader_parse_number(&c_ptr, c_end, 2, &minute) ||
+        !ov_xml_reader_parse_char(&c_ptr, c_end, ':') ||
+        !ov_xml_reader_parse_number(&c_ptr, c_end, 2, &second)
+    ) {
+        return rb_funcall(date_time_class, XMLSCHEMA_ID, 1, text);
+    }
+
+    /* Optional fraction of second, limited to nanoseconds: */
+    fraction = 0;
+    scale = 1;
+    if (ov_xml_reader_parse_char(&c_ptr, c_end, '.')) {
+        while (c_ptr < c_end && isdigit((unsigned char) *c_ptr) && scale < 1000000000LL) {
+            fraction = fraction * 10 + (*c_ptr - '0');
+            scale *= 10;
+            c_ptr++;
+        }
+        if (scale == 1 || (c_ptr < c_end && isdigit((unsigned char) *c_ptr))) {
+            return rb_funcall(date_time_class, XMLSCHEMA_ID, 1, text);
+        }
+    }
+
+    /* Optional time zone: */
+    offset = 0;
+    if (c_ptr < c_end && (*c_ptr == '+' || *c_ptr == '-')) {
+        bool negative = *c_ptr == '-';
+        c_ptr++;
+        if (
+            !ov_xml_reader_parse_number(&c_ptr, c_end, 2, &offset_hours) ||
+            !ov_xml_reader_parse_char(&c_ptr, c_end, ':') ||
+            !ov_xml_reader_parse_number(&c_ptr, c_end, 2, &offset_minutes)
+        ) {
+            return rb_funcall(date_time_class, XMLSCHEMA_ID, 1, text);
+        }
+        offset = offset_hours * 60 + offset_minutes;
+        if (negative) {
+            offset = -offset;
+        }
+    }
+    else {
+        ov_xml_reader_parse_char(&c_ptr, c_end, 'Z');
+    }
+    if (c_ptr != c_end) {
+        return rb_funcall(date_time_class, XMLSCHEMA_ID, 1, text);
+    }
+
+    /* Create the date: */
+    if (fraction == 0) {
+        seconds = INT2FIX(second);
+    }
+    else {
+        seconds = rb_rational_new(LL2NUM(second * scale + fraction), LL2NUM(scale));
+    }
+    return rb_funcall(
+        date_time_class,
+        NEW_ID,
+        7,
+        INT2FIX(year),
+        INT2FIX(month),
+        INT2FIX(day),
+        INT2FIX(hour),
+        INT2FIX(minute),
+        seconds,
+        rb_rational_new(INT2FIX(offset), INT2FIX(1440))
+    );
+}
+
+static VALUE ov_xml_reader_parse_date_error(VALUE text, VALUE error) {
+    rb_raise(ov_error_class, "The text '%"PRIsVALUE"' isn't a valid date.", text);
+    return Qnil;
+}
+
+static VALUE ov_xml_reader_parse_date(VALUE text) {
+    if (NIL_P(text)) {
+        return Qnil;
+    }
+    return rb_rescue(ov_xml_reader_parse_date_text, text, ov_xml_reader_parse_date_error, text);
+}
+
+static VALUE ov_xml_reader_map(VALUE list, VALUE (*parse)(VALUE)) {
+    long i;
+
+    for (i = 0; i < RARRAY_LEN(list); i++) {
+        rb_ary_store(list, i, parse(rb_ary_entry(list, i)));
+    }
+    return list;
+}
+
+static VALUE ov_xml_reader_read_integer(VALUE self) {
+    return ov_xml_reader_parse_integer(ov_xml_reader_read_element(self));
+}
+
+static VALUE ov_xml_reader_read_integers(VALUE self) {
+    return ov_xml_reader_map(ov_xml_reader_read_elements(self), ov_xml_reader_parse_integer);
+}
+
+static VALUE ov_xml_reader_read_decimal(VALUE self) {
+    return ov_xml_reader_parse_decimal(ov_xml_reader_read_element(self));
+}
+
+static VALUE ov_xml_reader_read_decimals(VALUE self) {
+    return ov_xml_reader_map(ov_xml_reader_read_elements(self), ov_xml_reader_parse_decimal);
+}
+
+static VALUE ov_xml_reader_read_boolean(VALUE self) {
+    return ov_xml_reader_parse_boolean(ov_xml_reader_read_element(self));
+}
+
+static VALUE ov_xml_reader_read_booleans(VALUE self) {
+    return ov_xml_reader_map(ov_xml_reader_read_elements(self), ov_xml_reader_parse_boolean);
+}
+
+static VALUE ov_xml_reader_read_date(VALUE self) {
+    return ov_xml_reader_parse_date(ov_xml_reader_read_element(self));
+}
+
+static VALUE ov_xml_reader_read_dates(VALUE self) {
+    return ov_xml_reader_map(ov_xml_reader_read_elements(self), ov_xml_reader_parse_date);
+}
+
 static VALUE ov_xml_reader_next_element(VALUE self) {
     int rc = 0;
     ov_xml_reader_object* object = NULL;
 
     Data_Get_Struct(self, ov_xml_reader_object, object);
     ov_xml_reader_check_closed(object);
+    if (object->tokens != NULL) {
+        return ov_xml_reader_tokens_next_element(object);
+    }
     rc = xmlTextReaderNext(object->reader);
     if (rc == 0) {
         return Qfalse;
@@ -403,8 +1248,13 @@ static VALUE ov_xml_reader_close(VALUE self) {
 
     Data_Get_Struct(self, ov_xml_reader_object, object);
     ov_xml_reader_check_closed(object);
-    xmlFreeTextReader(object->reader);
+    if (object->reader != NULL) {
+        xmlFreeTextReader(object->reader);
+    }
     object->reader = NULL;
+    ov_xml_tokens_free(object->tokens);
+    object->tokens = NULL;
+    ov_xml_reader_unmap(object);
     object->closed = true;
     return Qnil;
 }
@@ -418,20 +1268,42 @@ void ov_xml_reader_define(void) {
 
     /* Define the constructor: */
     rb_define_alloc_func(ov_xml_reader_class, ov_xml_reader_alloc);
-    rb_define_method(ov_xml_reader_class, "initialize", ov_xml_reader_initialize, 1);
+    rb_define_method(ov_xml_reader_class, "initialize", ov_xml_reader_initialize, -1);
 
     /* Define the methods: */
     rb_define_method(ov_xml_reader_class, "forward", ov_xml_reader_forward, 0);
     rb_define_method(ov_xml_reader_class, "read", ov_xml_reader_read, 0);
     rb_define_method(ov_xml_reader_class, "node_name", ov_xml_reader_node_name, 0);
+    rb_define_method(ov_xml_reader_class, "node_id", ov_xml_reader_node_id, 0);
+    rb_define_method(ov_xml_reader_class, "next_id", ov_xml_reader_next_id, 0);
+    rb_define_method(ov_xml_reader_class, "identities", ov_xml_reader_get_identities, 0);
+    rb_define_method(ov_xml_reader_class, "identities=", ov_xml_reader_set_identities, 1);
     rb_define_method(ov_xml_reader_class, "empty_element?", ov_xml_reader_empty_element, 0);
     rb_define_method(ov_xml_reader_class, "get_attribute", ov_xml_reader_get_attribute, 1);
+    rb_define_method(ov_xml_reader_class, "attributes", ov_xml_reader_attributes, 0);
     rb_define_method(ov_xml_reader_class, "read_element", ov_xml_reader_read_element, 0);
     rb_define_method(ov_xml_reader_class, "read_elements", ov_xml_reader_read_elements, 0);
+    rb_define_method(ov_xml_reader_class, "read_integer", ov_xml_reader_read_integer, 0);
+    rb_define_method(ov_xml_reader_class, "read_integers", ov_xml_reader_read_integers, 0);
+    rb_define_method(ov_xml_reader_class, "read_decimal", ov_xml_reader_read_decimal, 0);
+    rb_define_method(ov_xml_reader_class, "read_decimals", ov_xml_reader_read_decimals, 0);
+    rb_define_method(ov_xml_reader_class, "read_boolean", ov_xml_reader_read_boolean, 0);
+    rb_define_method(ov_xml_reader_class, "read_booleans", ov_xml_reader_read_booleans, 0);
+    rb_define_method(ov_xml_reader_class, "read_date", ov_xml_reader_read_date, 0);
+    rb_define_method(ov_xml_reader_class, "read_dates", ov_xml_reader_read_dates, 0);
     rb_define_method(ov_xml_reader_class, "next_element", ov_xml_reader_next_element, 0);
     rb_define_method(ov_xml_reader_class, "close", ov_xml_reader_close, 0);
 
     /* Create method identifiers: */
     READ_ID = rb_intern("read");
+    FILENO_ID = rb_intern("fileno");
+    POS_ID = rb_intern("pos");
     STRING_IO_ID = rb_intern("StringIO");
+    DATE_TIME_ID = rb_intern("DateTime");
+    NEW_ID = rb_intern("new");
+    XMLSCHEMA_ID = rb_intern("xmlschema");
+
+    /* Create the shared empty hash: */
+    EMPTY_HASH = rb_obj_freeze(rb_hash_new());
+    rb_gc_register_address(&EMPTY_HASH);
 }
@@ -0,0 +1,208 @@
+/*
+Copyright (c) 2016 Red Hat, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+#include <stdlib.h>
+#include <string.h>
+
+#include <libxml/xmlreader.h>
+
+#include "ov_xml_tags.h"
+#include "ov_xml_tokens.h"
+
+/* Note that all the memory used here is allocated with the standard C allocator, and not with the Ruby one, because
+   the Ruby allocator may need to start the garbage collector, and that isn't allowed when the global VM lock has been
+   released. */
+
+ov_xml_tokens* ov_xml_tokens_new(void) {
+    ov_xml_tokens* tokens = NULL;
+
+    tokens = calloc(1, sizeof(ov_xml_tokens));
+    return tokens;
+}
+
+void ov_xml_tokens_free(ov_xml_tokens* tokens) {
+    if (tokens != NULL) {
+        free(tokens->tokens);
+        free(tokens->attrs);
+        free(tokens->chars);
+        free(tokens);
+    }
+}
+
+static int ov_xml_tokens_grow(void** data, size_t* capacity, size_t needed, size_t size) {
+    size_t new_capacity;
+    void* new_data;
+
+    if (needed <= *capacity) {
+        return 0;
+    }
+    new_capacity = *capacity == 0? 256: *capacity;
+    while (new_capacity < needed) {
+        new_capacity *= 2;
+    }
+    new_data = realloc(*data, new_capacity * size);
+    if (new_data == NULL) {
+        return -1;
+    }
+    *data = new_data;
+    *capacity = new_capacity;
+    return 0;
+}
+
+static int ov_xml_tokens_add_chars(ov_xml_tokens* tokens, const xmlChar* chars, size_t* offset, size_t* length) {
+    size_t c_length;
+
+    c_length = chars != NULL? strlen((const char*) chars): 0;
+    if (ov_xml_tokens_grow((void**) &tokens->chars, &tokens->chars_capacity, tokens->chars_length + c_length, 1)) {
+        return -1;
+    }
+    if (c_length > 0) {
+        memcpy(tokens->chars + tokens->chars_length, chars, c_length);
+    }
+    *offset = tokens->chars_length;
+    *length = c_length;
+    tokens->chars_length += c_length;
+    return 0;
+}
+
+static ov_xml_token* ov_xml_tokens_add(ov_xml_tokens* tokens, int type) {
+    ov_xml_token* token;
+
+    if (ov_xml_tokens_grow((void**) &tokens->tokens, &tokens->capacity, tokens->count + 1, sizeof(ov_xml_token))) {
+        return NULL;
+    }
+    token = &tokens->tokens[tokens->count];
+    memset(token, 0, sizeof(ov_xml_token));
+    token->type = type;
+    token->next = tokens->count + 1;
+    tokens->count++;
+    return token;
+}
+
+static int ov_xml_tokens_add_attrs(ov_xml_tokens* tokens, xmlTextReaderPtr reader, ov_xml_token* token) {
+    ov_xml_token_attr* attr;
+    int rc;
+
+    token->attrs = tokens->attrs_count;
+    rc = xmlTextReaderMoveToFirstAttribute(reader);
+    while (rc == 1) {
+        if (ov_xml_tokens_grow((void**) &tokens->attrs, &tokens->attrs_capacity, tokens->attrs_count + 1,
+                sizeof(ov_xml_token_attr))) {
+            return -1;
+        }
+        attr = &tokens->attrs[tokens->attrs_count];
+        if (ov_xml_tokens_add_chars(tokens, xmlTextReaderConstName(reader), &attr->name, &attr->name_length)) {
+            return -1;
+        }
+        if (ov_xml_tokens_add_chars(tokens, xmlTextReaderConstValue(reader), &attr->value, &attr->value_length)) {
+            return -1;
+        }
+        tokens->attrs_count++;
+        token->attrs_count++;
+        rc = xmlTextReaderMoveToNextAttribute(reader);
+    }
+    if (rc == -1 || xmlTextReaderMoveToElement(reader) == -1) {
+        return -1;
+    }
+    return 0;
+}
+
+int ov_xml_tokens_parse(ov_xml_tokens* tokens, xmlTextReaderPtr reader) {
+    ov_xml_token* token;
+    size_t* stack = NULL;
+    size_t stack_capacity = 0;
+    size_t depth = 0;
+    size_t start;
+    int empty;
+    int rc;
+    int result = -1;
+
+    while ((rc = xmlTextReaderRead(reader)) == 1) {
+        switch (xmlTextReaderNodeType(reader)) {
+        case XML_READER_TYPE_ELEMENT:
+            empty = xmlTextReaderIsEmptyElement(reader);
+            if (empty == -1) {
+                goto done;
+            }
+            token = ov_xml_tokens_add(tokens, OV_XML_TOKEN_START);
+            if (token == NULL) {
+                goto done;
+            }
+            token->empty = empty;
+            if (ov_xml_tokens_add_chars(tokens, xmlTextReaderConstName(reader), &token->text, &token->length)) {
+                goto done;
+            }
+            token->id = ov_xml_tags_lookup(tokens->chars + token->text, token->length);
+            if (ov_xml_tokens_add_attrs(tokens, reader, token)) {
+                goto done;
+            }
+
+            /* Non empty elements remain open till the corresponding end element is found: */
+            if (!empty) {
+                if (ov_xml_tokens_grow((void**) &stack, &stack_capacity, depth + 1, sizeof(size_t))) {
+                    goto done;
+                }
+                stack[depth++] = tokens->count - 1;
+            }
+            break;
+
+        case XML_READER_TYPE_END_ELEMENT:
+            if (depth == 0) {
+                goto done;
+            }
+            start = stack[--depth];
+            token = ov_xml_tokens_add(tokens, OV_XML_TOKEN_END);
+            if (token == NULL) {
+                goto done;
+            }
+            token->text = tokens->tokens[start].text;
+            token->length = tokens->tokens[start].length;
+            token->id = tokens->tokens[start].id;
+
+            /* The next token of the start element is the one after the end element, so that the complete element can
+               be skipped in one step: */
+            tokens->tokens[start].next = tokens->count;
+            break;
+
+        case XML_READER_TYPE_TEXT:
+        case XML_READER_TYPE_CDATA:
+        case XML_READER_TYPE_WHITESPACE:
+        case XML_READER_TYPE_SIGNIFICANT_WHITESPACE:
+            token = ov_xml_tokens_add(tokens, OV_XML_TOKEN_TEXT);
+            if (token == NULL) {
+                goto done;
+            }
+            if (ov_xml_tokens_add_chars(tokens, xmlTextReaderConstValue(reader), &token->text, &token->length)) {
+                goto done;
+            }
+            break;
+
+        case -1:
+            goto done;
+
+        default:
+            /* Comments, processing instructions, etc, are ignored: */
+            break;
+        }
+    }
+    if (rc == 0) {
+        result = 0;
+    }
+
+done:
+    free(stack);
+    return result;
+}
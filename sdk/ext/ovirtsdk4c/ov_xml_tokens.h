@@ -0,0 +1,76 @@
+/*
+Copyright (c) 2016 Red Hat, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+#ifndef __OV_XML_TOKENS_H__
+#define __OV_XML_TOKENS_H__
+
+#include <stddef.h>
+
+#include <libxml/xmlreader.h>
+
+/* Types of tokens: */
+enum {
+    OV_XML_TOKEN_START = 1,
+    OV_XML_TOKEN_END = 2,
+    OV_XML_TOKEN_TEXT = 3
+};
+
+/* A token, corresponding to the start of an element, to the end of an element or to a text node. The names, values
+   and texts are stored as offsets into the characters buffer, as that buffer may be moved when it grows. */
+typedef struct {
+    int type;
+    int empty;
+    int id;
+    size_t text;
+    size_t length;
+    size_t attrs;
+    size_t attrs_count;
+    size_t next;
+} ov_xml_token;
+
+/* An attribute of a start token: */
+typedef struct {
+    size_t name;
+    size_t name_length;
+    size_t value;
+    size_t value_length;
+} ov_xml_token_attr;
+
+/* The complete list of tokens of a document: */
+typedef struct {
+    ov_xml_token* tokens;
+    size_t count;
+    size_t capacity;
+    ov_xml_token_attr* attrs;
+    size_t attrs_count;
+    size_t attrs_capacity;
+    char* chars;
+    size_t chars_length;
+    size_t chars_capacity;
+} ov_xml_tokens;
+
+/* Creates an empty list of tokens, returns NULL if there isn't enough memory: */
+extern ov_xml_tokens* ov_xml_tokens_new(void);
+
+/* Releases the list of tokens and all the memory that it uses: */
+extern void ov_xml_tokens_free(ov_xml_tokens* tokens);
+
+/* Reads all the nodes from the given libxml reader and stores them in the list of tokens. Returns zero if it succeeds
+   or -1 if it fails. This function doesn't use the Ruby API or the Ruby memory allocator, so it can be called without
+   holding the global VM lock. */
+extern int ov_xml_tokens_parse(ov_xml_tokens* tokens, xmlTextReaderPtr reader);
+
+#endif
@@ -27,13 +27,17 @@ limitations under the License.
 VALUE ov_xml_writer_class;
 
 /* Identifiers: */
-static ID STRING_ID;
-static ID STRING_IO_ID;
 static ID WRITE_ID;
 
+/* Writers that are reset keep their memory buffer, unless it grew larger than this: */
+#define OV_XML_WRITER_MAX_BUFFER (1024 * 1024)
+
 typedef struct {
     VALUE io;
+    xmlBufferPtr buffer;
     xmlTextWriterPtr writer;
+    bool indent;
+    int depth;
 } ov_xml_writer_object;
 
 static void ov_xml_writer_check_closed(ov_xml_writer_object* object) {
@@ -57,6 +61,12 @@ static void ov_xml_writer_free(ov_xml_writer_object *object) {
         xmlFreeTextWriter(tmp);
     }
 
+    /* Free the memory buffer, as it isn't owned by the libxml writer: */
+    if (object->buffer != NULL) {
+        xmlBufferFree(object->buffer);
+        object->buffer = NULL;
+    }
+
     /* Free this object: */
     xfree(object);
 }
@@ -86,13 +96,29 @@ static int ov_xml_writer_callback(void *context, const char *buffer, int length)
     return NUM2INT(count);
 }
 
-static VALUE ov_xml_writer_create_string_io() {
-    VALUE sio_class;
-    VALUE sio_obj;
+static void ov_xml_writer_configure(ov_xml_writer_object* object) {
+    /* Enable indentation: */
+    if (object->indent) {
+        xmlTextWriterSetIndent(object->writer, 1);
+        xmlTextWriterSetIndentString(object->writer, BAD_CAST "  ");
+    }
+}
 
-    sio_class = rb_const_get(rb_cObject, STRING_IO_ID);
-    sio_obj = rb_class_new_instance(0, NULL, sio_class);
-    return sio_obj;
+static void ov_xml_writer_create_memory_writer(ov_xml_writer_object* object) {
+    /* Create the buffer, unless there is already one that can be reused: */
+    if (object->buffer == NULL) {
+        object->buffer = xmlBufferCreate();
+        if (object->buffer == NULL) {
+            rb_raise(ov_error_class, "Can't create XML buffer");
+        }
+    }
+
+    /* Create the libxml writer that writes to the buffer: */
+    object->writer = xmlNewTextWriterMemory(object->buffer, 0);
+    if (object->writer == NULL) {
+        rb_raise(ov_error_class, "Can't create XML writer");
+    }
+    ov_xml_writer_configure(object);
 }
 
 static VALUE ov_xml_writer_initialize(int argc, VALUE* argv, VALUE self) {
@@ -112,23 +138,26 @@ static VALUE ov_xml_writer_initialize(int argc, VALUE* argv, VALUE self) {
     io = argc > 0? argv[0]: Qnil;
     indent = argc > 1? argv[1]: Qnil;
 
-    /* The first parameter can be an IO object or nil. If it is nil then we need to create a IO object where we can
-       write the generated XML. */
+    object->io = Qnil;
+    object->indent = RTEST(indent);
+    object->depth = 0;
+
+    /* The first parameter can be an IO object or nil. If it is nil then the generated XML is written to a libxml
+       memory buffer, that can be reused calling the 'reset' method. */
     if (NIL_P(io)) {
-        object->io = ov_xml_writer_create_string_io();
+        ov_xml_writer_create_memory_writer(object);
+        return self;
+    }
+    io_class = rb_class_of(io);
+    if (io_class == rb_cIO) {
+        object->io = io;
     }
     else {
-        io_class = rb_class_of(io);
-        if (io_class == rb_cIO) {
-            object->io = io;
-        }
-        else {
-            rb_raise(
-                ov_error_class,
-                "The type of the 'io' parameter must be 'IO', but it is '%"PRIsVALUE"'",
-                io_class
-            );
-        }
+        rb_raise(
+            ov_error_class,
+            "The type of the 'io' parameter must be 'IO', but it is '%"PRIsVALUE"'",
+            io_class
+        );
     }
 
     /* Create the libxml buffer that writes to the IO object: */
@@ -143,12 +172,7 @@ static VALUE ov_xml_writer_initialize(int argc, VALUE* argv, VALUE self) {
         xmlOutputBufferClose(buffer);
         rb_raise(ov_error_class, "Can't create XML writer");
     }
-
-    /* Enable indentation: */
-    if (RTEST(indent)) {
-        xmlTextWriterSetIndent(object->writer, 1);
-        xmlTextWriterSetIndentString(object->writer, BAD_CAST "  ");
-    }
+    ov_xml_writer_configure(object);
 
     return self;
 }
@@ -159,11 +183,60 @@ static VALUE ov_xml_writer_string(VALUE self) {
 
     Data_Get_Struct(self, ov_xml_writer_object, object);
     ov_xml_writer_check_closed(object);
+    if (object->buffer == NULL) {
+        rb_raise(ov_error_class, "The writer doesn't write to memory, so its content can't be retrieved");
+    }
     rc = xmlTextWriterFlush(object->writer);
     if (rc < 0) {
         rb_raise(ov_error_class, "Can't flush XML writer");
     }
-    return rb_funcall(object->io, STRING_ID, 0, NULL);
+    return rb_str_new((char*) xmlBufferContent(object->buffer), xmlBufferLength(object->buffer));
+}
+
+static VALUE ov_xml_writer_reset(VALUE self) {
+    int rc = 0;
+    ov_xml_writer_object* object = NULL;
+
+    Data_Get_Struct(self, ov_xml_writer_object, object);
+    ov_xml_writer_check_closed(object);
+    if (object->buffer == NULL) {
+        rb_raise(ov_error_class, "The writer doesn't write to memory, so it can't be reset");
+    }
+
+    /* If all the elements have been closed then the libxml writer can be kept, it is enough to discard what it
+       already wrote to the buffer. Otherwise, for example if a previous use failed half way, it is replaced with a
+       new one, as there is no way to clear its stack of open elements. */
+    if (object->depth == 0) {
+        rc = xmlTextWriterFlush(object->writer);
+        if (rc < 0) {
+            rb_raise(ov_error_class, "Can't flush XML writer");
+        }
+    }
+    else {
+        xmlFreeTextWriter(object->writer);
+        object->writer = NULL;
+        object->depth = 0;
+    }
+
+    /* Don't keep buffers that grew too large, as that memory would be retained as long as the writer: */
+    if (xmlBufferLength(object->buffer) > OV_XML_WRITER_MAX_BUFFER) {
+        xmlBufferFree(object->buffer);
+        object->buffer = NULL;
+        if (object->writer != NULL) {
+            xmlFreeTextWriter(object->writer);
+            object->writer = NULL;
+        }
+    }
+    else {
+        xmlBufferEmpty(object->buffer);
+    }
+
+    /* Create a new libxml writer if the previous one was discarded: */
+    if (object->writer == NULL) {
+        ov_xml_writer_create_memory_writer(object);
+    }
+
+    return Qnil;
 }
 
 static VALUE ov_xml_writer_write_start(VALUE self, VALUE name) {
@@ -179,6 +252,7 @@ static VALUE ov_xml_writer_write_start(VALUE self, VALUE name) {
     if (rc < 0) {
         rb_raise(ov_error_class, "Can't start XML element");
     }
+    object->depth++;
     return Qnil;
 }
 
@@ -192,6 +266,7 @@ static VALUE ov_xml_writer_write_end(VALUE self) {
     if (rc < 0) {
         rb_raise(ov_error_class, "Can't end XML element");
     }
+    object->depth--;
     return Qnil;
 }
 
@@ -233,6 +308,46 @@ static VALUE ov_xml_writer_write_element(VALUE self, VALUE name, VALUE value) {
     return Qnil;
 }
 
+static void ov_xml_writer_write_raw_text(ov_xml_writer_object* object, VALUE text) {
+    int rc = 0;
+
+    /* Write the text as is, libxml will first close the start tag of the current element if needed: */
+    Check_Type(text, T_STRING);
+    rc = xmlTextWriterWriteRawLen(object->writer, BAD_CAST RSTRING_PTR(text), (int) RSTRING_LEN(text));
+    if (rc < 0) {
+        rb_raise(ov_error_class, "Can't write raw text \"%s\"", StringValueCStr(text));
+    }
+}
+
+VALUE ov_xml_writer_write_raw(VALUE self, VALUE text) {
+    ov_xml_writer_object* object = NULL;
+
+    Data_Get_Struct(self, ov_xml_writer_object, object);
+    ov_xml_writer_check_closed(object);
+    ov_xml_writer_write_raw_text(object, text);
+    return Qnil;
+}
+
+static VALUE ov_xml_writer_write_escaped(VALUE self, VALUE prefix, VALUE value, VALUE suffix) {
+    char* c_value = NULL;
+    int rc = 0;
+    ov_xml_writer_object* object = NULL;
+
+    /* Write the prefix and the suffix as is, as they are fragments precomputed by the generated writers, and escape
+       only the value: */
+    Data_Get_Struct(self, ov_xml_writer_object, object);
+    ov_xml_writer_check_closed(object);
+    Check_Type(value, T_STRING);
+    ov_xml_writer_write_raw_text(object, prefix);
+    c_value = StringValueCStr(value);
+    rc = xmlTextWriterWriteString(object->writer, BAD_CAST c_value);
+    if (rc < 0) {
+        rb_raise(ov_error_class, "Can't write text \"%s\"", c_value);
+    }
+    ov_xml_writer_write_raw_text(object, suffix);
+    return Qnil;
+}
+
 static VALUE ov_xml_writer_flush(VALUE self) {
     ov_xml_writer_object* object = NULL;
     int rc = 0;
@@ -257,9 +372,6 @@ static VALUE ov_xml_writer_close(VALUE self) {
 }
 
 void ov_xml_writer_define(void) {
-    /* Load required modules: */
-    rb_require("stringio");
-
     /* Define the class: */
     ov_xml_writer_class = rb_define_class_under(ov_module, "XmlWriter", rb_cObject);
 
@@ -270,14 +382,15 @@ void ov_xml_writer_define(void) {
     /* Define the methods: */
     rb_define_method(ov_xml_writer_class, "close", ov_xml_writer_close, 0);
     rb_define_method(ov_xml_writer_class, "flush", ov_xml_writer_flush, 0);
+    rb_define_method(ov_xml_writer_class, "reset", ov_xml_writer_reset, 0);
     rb_define_method(ov_xml_writer_class, "string", ov_xml_writer_string, 0);
     rb_define_method(ov_xml_writer_class, "write_attribute", ov_xml_writer_write_attribute, 2);
     rb_define_method(ov_xml_writer_class, "write_element", ov_xml_writer_write_element, 2);
     rb_define_method(ov_xml_writer_class, "write_end", ov_xml_writer_write_end, 0);
+    rb_define_method(ov_xml_writer_class, "write_escaped", ov_xml_writer_write_escaped, 3);
+    rb_define_method(ov_xml_writer_class, "write_raw", ov_xml_writer_write_raw, 1);
     rb_define_method(ov_xml_writer_class, "write_start", ov_xml_writer_write_start, 1);
 
     /* Create method identifiers: */
-    STRING_ID = rb_intern("string");
-    STRING_IO_ID = rb_intern("StringIO");
     WRITE_ID = rb_intern("write");
 }
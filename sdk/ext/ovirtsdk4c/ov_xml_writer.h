@@ -23,4 +23,7 @@ extern VALUE ov_xml_writer_class;
 // Initialization function:
 extern void ov_xml_writer_define(void);
 
+// Writes the given text as is, used by the native writers generated from the model:
+extern VALUE ov_xml_writer_write_raw(VALUE self, VALUE text);
+
 #endif
@@ -0,0 +1,24 @@
+/*
+Copyright (c) 2016 Red Hat, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+#ifndef __OV_XML_WRITERS_H__
+#define __OV_XML_WRITERS_H__
+
+/* Defines the 'write_struct' method of the XML writer, that writes objects using the native writers generated from
+   the model, in the ov_xml_writers.c file. */
+extern void ov_xml_writers_define(void);
+
+#endif
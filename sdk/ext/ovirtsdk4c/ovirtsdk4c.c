@@ -16,12 +16,22 @@ limitations under the License.
 
 #include <ruby.h>
 
+#include <stdbool.h>
+
 #include "ov_module.h"
 #include "ov_error.h"
 #include "ov_xml_reader.h"
 #include "ov_xml_writer.h"
+#include "ov_xml_writers.h"
 
 void Init_ovirtsdk4c(void) {
+#ifdef HAVE_RB_EXT_RACTOR_SAFE
+    // The only global state of the extension is initialized when it is loaded and never modified later: the
+    // references to the classes, the method identifiers and the frozen empty hash. Everything else belongs to the
+    // reader and writer objects, so it can be used from multiple ractors:
+    rb_ext_ractor_safe(true);
+#endif
+
     // Define the module:
     ov_module_define();
 
@@ -29,4 +39,5 @@ void Init_ovirtsdk4c(void) {
     ov_error_define();
     ov_xml_reader_define();
     ov_xml_writer_define();
+    ov_xml_writers_define();
 }
@@ -18,6 +18,7 @@
 # Library requirements.
 #
 require 'date'
+require 'json'
 
 #
 # Load the extension:
@@ -33,8 +34,14 @@ require 'ovirtsdk4/type.rb'
 require 'ovirtsdk4/types.rb'
 require 'ovirtsdk4/reader.rb'
 require 'ovirtsdk4/readers.rb'
+require 'ovirtsdk4/json_reader.rb'
+require 'ovirtsdk4/json_readers.rb'
 require 'ovirtsdk4/writer.rb'
 require 'ovirtsdk4/writers.rb'
+require 'ovirtsdk4/json_writer.rb'
+require 'ovirtsdk4/json_writers.rb'
+require 'ovirtsdk4/binary_codec.rb'
+require 'ovirtsdk4/binary_codecs.rb'
 require 'ovirtsdk4/service.rb'
 require 'ovirtsdk4/services.rb'
 require 'ovirtsdk4/probe.rb'
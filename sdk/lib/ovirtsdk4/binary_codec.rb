@@ -0,0 +1,377 @@
+#
+# Copyright (c) 2016 Red Hat, Inc.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#   http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+module OvirtSDK4
+
+  #
+  # This class converts objects and lists of objects into a compact binary representation, and back. It is intended
+  # to store snapshots of the objects returned by the server in local caches, so that they can be loaded again much
+  # faster than parsing the original XML or JSON documents.
+  #
+  # For example, to save the list of virtual machines to a file and load it later:
+  #
+  # [source,ruby]
+  # ----
+  # vms = connection.system_service.vms_service.list
+  # File.binwrite('vms.cache', OvirtSDK4::BinaryCodec.dump(vms))
+  # ...
+  # vms = OvirtSDK4::BinaryCodec.load(File.binread('vms.cache'))
+  # ----
+  #
+  # The data contains the version of the schema of the model used by the SDK that wrote it, and loading data written
+  # by a version of the SDK generated from a different model raises an {Error}, so the cache should then be discarded
+  # and populated again from the server. Strings are stored only once per snapshot, and the loaded strings are frozen
+  # and shared by all the objects that contain the same text.
+  #
+  class BinaryCodec
+
+    #
+    # The bytes that the binary representation starts with.
+    #
+    MAGIC = 'OVC4'.b.freeze
+
+    #
+    # Converts the given object, or list of objects, into its binary representation.
+    #
+    # @param object [Struct, List, Array<Struct>] The object or list to convert.
+    # @return [String] The binary representation, with the `ASCII-8BIT` encoding.
+    #
+    def self.dump(object)
+      output = Output.new
+      output.raw(MAGIC)
+      output.varint(SCHEMA)
+      if object.is_a?(Array)
+        codec = object.empty? ? BinaryCodec : codec_for(object.first)
+        output.string(codec == BinaryCodec ? '' : codec.type_name)
+        output.boolean(true)
+        codec.write_many(object, output)
+      else
+        codec = codec_for(object)
+        output.string(codec.type_name)
+        output.boolean(false)
+        codec.write_one(object, output)
+      end
+      output.data
+    end
+
+    #
+    # Converts the given binary representation, as returned by the {dump} method, into an object or list of objects.
+    #
+    # @param data [String] The binary representation.
+    # @return [Struct, List]
+    # @raise [Error] If the data isn't a valid binary representation, or if it was written using a different version
+    #   of the model.
+    #
+    def self.load(data)
+      input = Input.new(data)
+      magic = input.raw(MAGIC.bytesize)
+      raise Error.new('The data isn\'t a binary representation of SDK objects.') unless magic == MAGIC
+      schema = input.varint
+      unless schema == SCHEMA
+        raise Error.new(
+          "The data was written using version #{schema} of the schema, but the current version is #{SCHEMA}."
+        )
+      end
+      name = input.string
+      codec = name.empty? ? BinaryCodec : codec_named(name)
+      input.boolean ? codec.read_many(input) : codec.read_one(input)
+    rescue ArgumentError, NoMethodError, TypeError => error
+      raise Error.new("The data isn't a valid binary representation of SDK objects: #{error.message}")
+    end
+
+    #
+    # Returns the name of the type handled by this codec, for example `Vm` for the `VmBinaryCodec` class.
+    #
+    # @return [String]
+    #
+    # @api private
+    #
+    def self.type_name
+      name.split('::').last.chomp('BinaryCodec')
+    end
+
+    #
+    # Writes a list of objects, using the `write_one` method of the concrete codec to write each item.
+    #
+    # @param list [Array<Struct>] The list to write.
+    # @param output [Output] The output where the data will be written.
+    #
+    # @api private
+    #
+    def self.write_many(list, output)
+      output.string(list.is_a?(List) ? list.href : nil)
+      output.varint(list.size)
+      list.each { |item| write_one(item, output) }
+    end
+
+    #
+    # Reads a list of objects, using the `read_one` method of the concrete codec to read each item.
+    #
+    # @param input [Input] The input where the data will be read from.
+    # @return [List]
+    #
+    # @api private
+    #
+    def self.read_many(input)
+      list = List.new
+      list.href = input.string
+      input.varint.times { list << read_one(input) }
+      list
+    end
+
+    #
+    # Returns the codec for the given object.
+    #
+    # @param object [Struct]
+    # @return [Class]
+    #
+    def self.codec_for(object)
+      raise TypeError.new("The object '#{object.inspect}' isn't a struct.") unless object.is_a?(Struct)
+      codec_named(object.class.name.split('::').last)
+    end
+
+    #
+    # Returns the codec for the type with the given name, checking that it is one of the generated codecs, as the
+    # name may come from a file.
+    #
+    # @param name [String]
+    # @return [Class]
+    #
+    def self.codec_named(name)
+      raise Error.new("The type name '#{name}' isn't valid.") unless name =~ /\A[A-Z][A-Za-z0-9]*\z/
+      codec_name = "#{name}BinaryCodec"
+      raise Error.new("There is no codec for type '#{name}'.") unless OvirtSDK4.const_defined?(codec_name, false)
+      codec = OvirtSDK4.const_get(codec_name, false)
+      raise Error.new("There is no codec for type '#{name}'.") unless codec.is_a?(Class) && codec < BinaryCodec
+      codec
+    end
+
+    private_class_method :codec_for, :codec_named
+
+    #
+    # This class accumulates the binary representation. Numbers are written as variable length integers, using the
+    # BER compressed format of the `pack` method, and signed integers are first converted using the zig-zag encoding,
+    # so that small negative numbers are also short. Strings are written only the first time they appear, and then
+    # referenced by their position in the table of strings already written.
+    #
+    # @api private
+    #
+    class Output
+
+      #
+      # Returns the binary representation written so far.
+      #
+      # @return [String]
+      #
+      attr_reader :data
+
+      #
+      # Creates a new empty output.
+      #
+      def initialize
+        @data = String.new
+        @strings = {}
+      end
+
+      #
+      # Writes the given bytes without any conversion.
+      #
+      # @param value [String]
+      #
+      def raw(value)
+        @data << value
+      end
+
+      #
+      # Writes a non negative integer.
+      #
+      # @param value [Integer]
+      #
+      def varint(value)
+        @data << [value].pack('w')
+      end
+
+      #
+      # Writes a string, or a reference to an identical string already written. The reference is the position of the
+      # string in the table plus one, zero means `nil`, and the next position means that the string follows.
+      #
+      # @param value [String]
+      #
+      def string(value)
+        if value.nil?
+          @data << "\x00".b
+          return
+        end
+        index = @strings[value]
+        if index.nil?
+          index = @strings.size
+          @strings[value] = index
+          bytes = value.b
+          @data << [index + 1, bytes.bytesize].pack('ww') << bytes
+        else
+          @data << [index + 1].pack('w')
+        end
+      end
+
+      #
+      # Writes a boolean.
+      #
+      # @param value [Boolean]
+      #
+      def boolean(value)
+        @data << (value ? "\x01".b : "\x00".b)
+      end
+
+      #
+      # Writes a signed integer.
+      #
+      # @param value [Integer]
+      #
+      def integer(value)
+        @data << [value < 0 ? ((-value) << 1) - 1 : value << 1].pack('w')
+      end
+
+      #
+      # Writes a decimal, as a double precision floating point number.
+      #
+      # @param value [Float]
+      #
+      def decimal(value)
+        @data << [value.to_f].pack('G')
+      end
+
+      #
+      # Writes a date, as the number of milliseconds since the epoch followed by the offset in minutes.
+      #
+      # @param value [DateTime, Time]
+      #
+      def date(value)
+        value = value.to_datetime
+        integer((value.to_time.to_r * 1000).to_i)
+        integer((value.offset * 1440).to_i)
+      end
+
+    end
+
+    #
+    # This class reads the binary representation written by the {Output} class.
+    #
+    # @api private
+    #
+    class Input
+
+      #
+      # Creates a new input that will read from the given data.
+      #
+      # @param data [String]
+      #
+      def initialize(data)
+        @data = data.b
+        @position = 0
+        @strings = []
+      end
+
+      #
+      # Reads the given number of bytes without any conversion.
+      #
+      # @param length [Integer]
+      # @return [String]
+      #
+      def raw(length)
+        value = @data.byteslice(@position, length)
+        raise Error.new('The binary data is truncated.') if value.nil? || value.bytesize < length
+        @position += length
+        value
+      end
+
+      #
+      # Reads a non negative integer.
+      #
+      # @return [Integer]
+      #
+      def varint
+        value = 0
+        loop do
+          byte = @data.getbyte(@position)
+          raise Error.new('The binary data is truncated.') if byte.nil?
+          @position += 1
+          value = (value << 7) | (byte & 0x7f)
+          return value if byte < 0x80
+        end
+      end
+
+      #
+      # Reads a string, or a reference to a string that has already been read.
+      #
+      # @return [String]
+      #
+      def string
+        index = varint
+        return nil if index == 0
+        return @strings[index - 1] if index <= @strings.size
+        raise Error.new("The string reference #{index} isn't valid.") unless index == @strings.size + 1
+        value = raw(varint).force_encoding(Encoding::UTF_8).freeze
+        @strings << value
+        value
+      end
+
+      #
+      # Reads a boolean.
+      #
+      # @return [Boolean]
+      #
+      def boolean
+        byte = @data.getbyte(@position)
+        raise Error.new('The binary data is truncated.') if byte.nil?
+        @position += 1
+        byte == 1
+      end
+
+      #
+      # Reads a signed integer.
+      #
+      # @return [Integer]
+      #
+      def integer
+        value = varint
+        value.odd? ? -((value + 1) >> 1) : value >> 1
+      end
+
+      #
+      # Reads a decimal.
+      #
+      # @return [Float]
+      #
+      def decimal
+        raw(8).unpack('G').first
+      end
+
+      #
+      # Reads a date.
+      #
+      # @return [DateTime]
+      #
+      def date
+        milliseconds = integer
+        offset = integer
+        Time.at(Rational(milliseconds, 1000)).to_datetime.new_offset(Rational(offset, 1440))
+      end
+
+    end
+
+  end
+
+end
@@ -65,6 +65,306 @@ module OvirtSDK4
       self.headers = opts[:headers]
       self.message = opts[:message]
     end
+
+    #
+    # Indicates if the body of the response is a JSON document, according to the `Content-Type` header.
+    #
+    # @return [Boolean]
+    #
+    def json?
+      return false if headers.nil?
+      type = headers['content-type']
+      return !type.nil? && type.start_with?('application/json')
+    end
+  end
+
+  #
+  # This class is an IO like object that gives access to the body of a response while it is being received. The
+  # chunks of data received from the server are added with the `push` method, and the consumer takes them using the
+  # `read` method, which blocks till data is available. The number of chunks that can be pending is limited, so when
+  # the consumer is slower than the network the transfer is paused, instead of accumulating the complete body in
+  # memory.
+  #
+  # @api private
+  #
+  class ResponseStream
+
+    #
+    # Creates a new response stream.
+    #
+    # @param limit [Integer] The maximum number of chunks that can be pending.
+    #
+    def initialize(limit = 16)
+      @queue = SizedQueue.new(limit)
+      @chunk = nil
+      @offset = 0
+      @eof = false
+      @closed = false
+      @error = nil
+    end
+
+    #
+    # Returns the error that interrupted the transfer, if any.
+    #
+    # @return [Exception]
+    #
+    def error
+      return @error
+    end
+
+    #
+    # Indicates if the consumer already closed the stream, and therefore isn't interested in more data.
+    #
+    # @return [Boolean]
+    #
+    def closed?
+      return @closed
+    end
+
+    #
+    # Adds a chunk of data to the stream, waiting if the number of pending chunks has reached the limit.
+    #
+    # @param chunk [String]
+    #
+    def push(chunk)
+      @queue.push(chunk) unless @closed
+    end
+
+    #
+    # Indicates that the transfer has finished, and that there will be no more data.
+    #
+    # @param error [Exception] The error that interrupted the transfer, if any.
+    #
+    def finish(error = nil)
+      @error = error
+      @queue.push(nil)
+    end
+
+    #
+    # Reads data from the stream, waiting till it is available.
+    #
+    # @param length [Integer] The maximum number of bytes to return. If `nil` then all the remaining data will be
+    #   returned.
+    # @return [String] The data, or `nil` if the end of the stream has been reached.
+    #
+    def read(length = nil)
+      if length.nil?
+        data = String.new
+        while chunk = read(16384)
+          data << chunk
+        end
+        return data
+      end
+      loop do
+        if @chunk.nil?
+          return nil if @eof
+          @chunk = @queue.pop
+          @offset = 0
+          if @chunk.nil?
+            @eof = true
+            raise @error unless @error.nil?
+            return nil
+          end
+        end
+        available = @chunk.bytesize - @offset
+        if available > 0
+          count = available < length ? available : length
+          data = @chunk.byteslice(@offset, count)
+          @offset += count
+          return data
+        end
+        @chunk = nil
+      end
+    end
+
+    #
+    # Closes the stream, discarding the data that hasn't been read yet.
+    #
+    def close
+      @closed = true
+      until @eof
+        @eof = true if @queue.pop.nil?
+      end
+      @chunk = nil
+    end
+
+  end
+
+  #
+  # This class is an IO like object that generates the body of a request while it is being sent. The block given to
+  # the constructor writes the XML document to an {XmlWriter} in a separate thread, and the output goes through a pipe
+  # to the `read` method, which is called by the HTTP client when it needs more data. The pipe has a limited capacity,
+  # so the document is generated only as fast as it is sent, instead of accumulating it completely in memory.
+  #
+  # @api private
+  #
+  class RequestStream
+
+    #
+    # Creates a new request stream, and starts generating the document.
+    #
+    # @yieldparam writer [XmlWriter] The XML writer where the document should be written.
+    #
+    def initialize(&block)
+      @reader, writer = IO.pipe
+      @error = nil
+      @thread = Thread.new do
+        begin
+          xml = XmlWriter.new(writer)
+          begin
+            block.call(xml)
+            xml.flush
+          ensure
+            xml.close
+          end
+        rescue Exception => error
+          # The error is recorded before closing the pipe, so that the reader finds it when it gets to the end of the
+          # data:
+          @error = error
+        ensure
+          writer.close
+        end
+      end
+
+      # The error is raised by the `read` method, in the thread that sends the request, so there is no need to report
+      # it again when the thread finishes:
+      @thread.report_on_exception = false if @thread.respond_to?(:report_on_exception=)
+    end
+
+    #
+    # Returns the error that interrupted the generation of the document, if any. This is only available after reaching
+    # the end of the stream or closing it.
+    #
+    # @return [Exception]
+    #
+    def error
+      return @error
+    end
+
+    #
+    # Reads data from the stream, waiting till it is generated. When the end of the data is reached, and the generation
+    # of the document was interrupted by an error, that error is raised instead of reporting the end of the stream, so
+    # that a truncated document isn't sent as if it was complete.
+    #
+    # @param length [Integer] The maximum number of bytes to return. If `nil` then all the remaining data will be
+    #   returned.
+    # @return [String] The data, or `nil` if the end of the stream has been reached.
+    #
+    def read(length = nil)
+      if length.nil?
+        data = @reader.read
+        finish
+        return data
+      end
+      @reader.readpartial(length)
+    rescue EOFError
+      finish
+      nil
+    end
+
+    #
+    # Closes the stream, discarding the data that hasn't been read yet, and waits till the thread that generates the
+    # document finishes.
+    #
+    def close
+      @reader.close unless @reader.closed?
+      @thread.join
+    end
+
+    private
+
+    #
+    # Waits till the thread that generates the document finishes, and raises the error that interrupted it, if any.
+    #
+    def finish
+      @thread.join
+      raise @error unless @error.nil?
+    end
+
+  end
+
+  #
+  # This class represents the result of a request sent with one of the asynchronous methods of the services, the ones
+  # whose names end with `_async`. The requests are sent and the responses received when the `wait` method of any of
+  # the futures of the same connection is called, so that all the requests in progress advance at the same time.
+  #
+  # [source,ruby]
+  # ----
+  # hosts_service = connection.system_service.hosts_service
+  # futures = ids.map { |id| hosts_service.host_service(id).get_async }
+  # hosts = futures.map(&:wait)
+  # ----
+  #
+  class Future
+
+    #
+    # Creates a new future.
+    #
+    # @param connection [Connection] The connection that sends the request.
+    # @param handler [Proc] The block that converts the response into the result.
+    #
+    # @api private
+    #
+    def initialize(connection, handler)
+      @connection = connection
+      @handler = handler
+      @response = nil
+      @failure = nil
+      @done = false
+      @processed = false
+      @result = nil
+      @error = nil
+    end
+
+    #
+    # Checks if the response has already been received. This doesn't send or receive any data, that only happens
+    # when the `wait` method is called.
+    #
+    # @return [Boolean]
+    #
+    def done?
+      @done
+    end
+
+    #
+    # Waits till the response is received, and returns the result. While waiting the rest of the requests of the
+    # same connection also advance.
+    #
+    # @return [Object] The same result that the synchronous variant of the method returns.
+    # @raise [Error] The same errors that the synchronous variant of the method raises.
+    #
+    def wait
+      unless @processed
+        @connection.wait(self) unless @done
+        @processed = true
+        begin
+          raise Error.new("Failed to send request: #{@failure}") unless @failure.nil?
+          @result = @handler.call(@response)
+        rescue StandardError => error
+          @error = error
+        end
+        @handler = nil
+        @response = nil
+      end
+      raise @error unless @error.nil?
+      @result
+    end
+
+    #
+    # Records the response, or the reason of the failure if no response was received. This is called by the
+    # connection when the request is completed.
+    #
+    # @param response [Response] The response, or `nil` if there is no response.
+    # @param failure [String] The description of the error, if no response was received.
+    #
+    # @api private
+    #
+    def complete(response, failure = nil)
+      @response = response
+      @failure = failure
+      @done = true
+    end
+
   end
 
   #
@@ -127,6 +427,30 @@ module OvirtSDK4
     # @option opts [Symbol] :auth (:oauth) Switch between basic authentication and OAuth,
     #   valid values are :basic and :oauth. deafult value is :oauth.
     #
+    # @option opts [Symbol] :format (:xml) The format used for the bodies of the requests, and that the server will be
+    #   asked to use for the bodies of the responses. Valid values are `:xml` and `:json`. The objects returned by the
+    #   services are the same in both cases, but parsing and generating JSON is usually cheaper.
+    #
+    # @option opts [Boolean] :concurrent_parsing (false) A boolean flag indicating if the XML documents returned by the
+    #   server should be parsed with the global interpreter lock released. This is useful when multiple threads use
+    #   different connections, as then the responses can be parsed in parallel using multiple cores.
+    #
+    # @option opts [Boolean] :identity_map (false) A boolean flag indicating if objects that are referenced multiple
+    #   times in the same XML response, like the cluster of each virtual machine in a list, should be represented by
+    #   the same Ruby object. This reduces the memory used by large lists, but then modifying one of those shared
+    #   objects affects all the objects that reference it. The methods that read into existing objects, like
+    #   `get_into`, don't use the identity map, and create new objects instead of overwriting the shared ones.
+    #
+    # @option opts [Integer] :connections (1) The maximum number of HTTP connections that will be opened to the server.
+    #   The connection can be used by multiple threads at the same time, and each request takes a connection from a
+    #   pool, waiting if all of them are in use. The connections are kept open between requests, and all of them share
+    #   the same authentication token. Use the {#pool_stats} method to check if threads are waiting for connections.
+    #
+    # @option opts [Integer] :async_connections (16) The maximum number of HTTP connections used by the requests of the
+    #   asynchronous methods. At most this number of those requests are in progress at the same time, and the rest are
+    #   queued till others finish. These connections are separate from the ones limited by the `connections`
+    #   parameter, so the asynchronous requests advance in parallel even when the synchronous ones use one connection.
+    #
     def initialize(opts = {})
       # Get the values of the parameters and assign default values:
       @url = opts[:url]
@@ -141,47 +465,189 @@ module OvirtSDK4
       @timeout = opts[:timeout] || 0
       @compress = opts[:compress] || false
       @auth = opts[:auth] || :oauth
+      @format = opts[:format] || :xml
+      @concurrent_parsing = opts[:concurrent_parsing] || false
+      @identity_map = opts[:identity_map] || false
+      @connections = opts[:connections] || 1
+      @async_connections = opts[:async_connections] || 16
 
       # Check mandatory parameters:
       if url.nil?
          raise ArgumentError.new("The 'url' parameter is mandatory.")
       end
 
+      # Check the number of connections:
+      unless @connections.is_a?(Integer) && @connections > 0
+        raise ArgumentError.new(
+          "The 'connections' parameter must be a positive integer, but it is '#{@connections.inspect}'."
+        )
+      end
+      unless @async_connections.is_a?(Integer) && @async_connections > 0
+        raise ArgumentError.new(
+          "The 'async_connections' parameter must be a positive integer, but it is '#{@async_connections.inspect}'."
+        )
+      end
+
+      # Check the format:
+      unless [:xml, :json].include?(@format)
+        raise ArgumentError.new("The 'format' parameter must be ':xml' or ':json', but it is '#{@format.inspect}'.")
+      end
+
       # Save the URL:
       @url = URI(@url)
 
-      # Create the cURL handle:
-      @curl = Curl::Easy.new
+      # Create the pool of XML writers used to generate request bodies:
+      @writers = []
+      @writers_mutex = Mutex.new
 
-      # Configure TLS parameters:
-      if @url.scheme == 'https'
-        if @insecure
-          @curl.ssl_verify_peer = false
-          @curl.ssl_verify_host = false
-        elsif !@ca_file.nil?
-          raise ArgumentError.new("The CA file '#{@ca_file}' doesn't exist.") unless ::File.file?(@ca_file)
-          @curl.cacert = @ca_file
-        end
+      # Check the CA file:
+      if @url.scheme == 'https' && !@insecure && !@ca_file.nil?
+        raise ArgumentError.new("The CA file '#{@ca_file}' doesn't exist.") unless ::File.file?(@ca_file)
       end
 
-      # Configure the timeout:
-      @curl.timeout = @timeout
+      # Create the pool of cURL handles used to send the requests. The handles are created when they are needed, up to
+      # the maximum number of connections:
+      @pool = []
+      @pool_created = 0
+      @pool_closed = false
+      @pool_waiting = 0
+      @pool_waits = 0
+      @pool_wait_time = 0.0
+      @pool_mutex = Mutex.new
+      @pool_available = ConditionVariable.new
 
-      # Configure compression of responses (setting the value to a zero length string means accepting all the
-      # compression types that libcurl supports):
-      if @compress
-        @curl.encoding = ''
+      # The authentication token is shared by all the threads, and it should be requested only once:
+      @token_mutex = Mutex.new
+
+      # The handle used to send the requests of the asynchronous methods is created when the first of those requests
+      # is sent. Only one thread at a time advances those requests, the one that has the performing flag, the rest
+      # wait for the condition variable, that is signaled whenever a request finishes. The cURL handles of those
+      # requests are created when they are needed, up to the maximum number of asynchronous connections, and kept
+      # for the following requests:
+      @multi = nil
+      @multi_mutex = Mutex.new
+      @multi_progress = ConditionVariable.new
+      @multi_performing = false
+      @multi_closed = false
+      @multi_queue = []
+      @multi_active = {}
+      @multi_finished = []
+      @multi_idle = []
+      @multi_created = 0
+    end
+
+    #
+    # Indicates if the XML documents returned by the server should be parsed with the global interpreter lock
+    # released.
+    #
+    # @return [Boolean]
+    #
+    # @api private
+    #
+    def concurrent_parsing?
+      @concurrent_parsing
+    end
+
+    #
+    # Indicates if objects referenced multiple times in the same XML response should be shared.
+    #
+    # @return [Boolean]
+    #
+    # @api private
+    #
+    def identity_map?
+      @identity_map
+    end
+
+    #
+    # Indicates if the bodies of the requests should be sent, and the bodies of the responses requested, using JSON.
+    #
+    # @return [Boolean]
+    #
+    # @api private
+    #
+    def json?
+      @format == :json
+    end
+
+    #
+    # Borrows an XML writer from the pool of this connection, creating a new one if the pool is empty, and passes it
+    # to the given block. When the block finishes the writer is reset and returned to the pool, so that its buffer
+    # is reused by the next request instead of being allocated again.
+    #
+    # @yieldparam writer [XmlWriter] The writer.
+    # @return [Object] The value returned by the block.
+    #
+    # @api private
+    #
+    def with_writer
+      writer = @writers_mutex.synchronize { @writers.pop } || XmlWriter.new
+      begin
+        yield writer
+      ensure
+        writer.reset
+        @writers_mutex.synchronize { @writers.push(writer) }
       end
+    end
 
-      # Configure debug mode:
-      if @debug && @log
-        @curl.verbose = true
-        @curl.on_debug do |_, data|
-          lines = data.gsub("\r\n", "\n").strip.split("\n")
-          lines.each do |line|
-            @log.debug(line)
-          end
-        end
+    #
+    # Returns statistics about the use of the pool of HTTP connections, useful to decide if the value of the
+    # `connections` parameter is adequate. The returned hash contains the following keys:
+    #
+    # `:size`:: The maximum number of connections.
+    # `:created`:: The number of connections created so far.
+    # `:idle`:: The number of connections that are currently not in use.
+    # `:busy`:: The number of connections that are currently sending requests or receiving responses.
+    # `:waiting`:: The number of threads that are currently waiting for a connection.
+    # `:waits`:: The total number of times that a thread had to wait for a connection.
+    # `:wait_time`:: The total time, in seconds, that threads have waited for connections.
+    #
+    # The connections used by the requests of the asynchronous methods are limited by the `async_connections`
+    # parameter, and are described by the following keys:
+    #
+    # `:async_size`:: The maximum number of connections for asynchronous requests.
+    # `:async_created`:: The number of connections for asynchronous requests created so far.
+    # `:async_idle`:: The number of those connections that are currently not in use.
+    # `:async_busy`:: The number of those connections that are currently used by requests in progress.
+    #
+    # @return [Hash{Symbol => Numeric}]
+    #
+    def pool_stats
+      stats = @pool_mutex.synchronize do
+        {
+          :size => @connections,
+          :created => @pool_created,
+          :idle => @pool.size,
+          :busy => @pool_created - @pool.size,
+          :waiting => @pool_waiting,
+          :waits => @pool_waits,
+          :wait_time => @pool_wait_time,
+        }
+      end
+      @multi_mutex.synchronize do
+        stats[:async_size] = @async_connections
+        stats[:async_created] = @multi_created
+        stats[:async_idle] = @multi_idle.size
+        stats[:async_busy] = @multi_created - @multi_idle.size
+      end
+      stats
+    end
+
+    #
+    # Takes a cURL handle from the pool, creating a new one or waiting till one is returned if all of them are in use,
+    # passes it to the given block, and returns it to the pool when the block finishes.
+    #
+    # @yieldparam curl [Curl::Easy] The handle.
+    # @return [Object] The value returned by the block.
+    #
+    # @api private
+    #
+    def with_curl
+      curl = acquire_curl
+      begin
+        yield curl
+      ensure
+        release_curl(curl)
       end
     end
 
@@ -220,69 +686,272 @@ module OvirtSDK4
       return system_service.service(path)
     end
 
-    def set_authentication!
+    def set_authentication!(curl)
       case @auth
       when :oauth
         # Check if we already have an SSO access token:
-        @token ||= get_access_token
-        @curl.headers['Authorization'] = "Bearer #{@token}"
+        curl.headers['Authorization'] = "Bearer #{authenticate}"
       when :basic
-        @curl.http_auth_types = :basic
-        @curl.username = @username
-        @curl.password = @password
+        curl.http_auth_types = :basic
+        curl.username = @username
+        curl.password = @password
       end
     end
 
-    def set_headers!(request)
+    def set_headers!(request, curl)
       # Add headers, avoiding those that have no value:
-      @curl.headers.clear
-      @curl.headers['user-agent'] = "RubySDK/#{VERSION}"
-      @curl.headers['content-type'] = 'application/xml'
-      @curl.headers['accept'] = 'application/xml'
-      @curl.headers['version'] = 4
+      curl.headers.clear
+      curl.headers['user-agent'] = "RubySDK/#{VERSION}"
+      curl.headers['content-type'] = json? ? 'application/json' : 'application/xml'
+      curl.headers['accept'] = json? ? 'application/json' : 'application/xml'
+      curl.headers['version'] = 4
       request.headers.each do |k,v|
-        @curl.headers[k.to_s.downcase] = v
+        curl.headers[k.to_s.downcase] = v
       end
     end
 
     #
     # Sends an HTTP request and waits for the response.
     #
+    # If a block is given then it will be called as soon as the status and the headers of the response are received,
+    # and the body of the response will be an IO like object that returns the data while it is being received, so
+    # that it can be parsed without waiting for the complete response, and without accumulating it in memory. In that
+    # case the method returns the value returned by the block.
+    #
     # @param request [Request] The Request object containing the details of the HTTP request to send.
+    # @yieldparam response [Response] The response, with a body that can be read while it is being received.
     # @return [Response] A request object containing the details of the HTTP response received.
     #
     # @api private
     #
-    def send(request)
-      # Build the URL:
-      @curl.url = build_url({
-        :path => request.path,
-        :query => request.query,
-      })
+    def send(request, &block)
+      with_curl do |curl|
+        # Build the URL:
+        curl.url = build_url({
+          :path => request.path,
+          :query => request.query,
+        })
+
+        set_headers!(request, curl)
+        set_authentication!(curl)
+        # Clear any data that may be in the buffers:
+        curl.post_body = nil
+
+        # If a block has been given then stream the body of the response to it:
+        return stream(request, curl, &block) unless block.nil?
+
+        # Send the request and wait for the response:
+        perform(request, curl)
+
+        # Return the response:
+        response = Response.new
+        response.body = curl.body_str
+        response.code = curl.response_code
+        response.headers = { 'content-type' => curl.content_type }
+        return response
+      end
+    end
+
+    #
+    # Adds an HTTP request to the queue of asynchronous requests, and returns without waiting for the response. The
+    # requests are started, and advanced, by the thread that calls the `wait` method, each with one of the cURL handles
+    # limited by the `async_connections` parameter, and all of them managed by the same `Curl::Multi` handle. Bodies
+    # generated while they are sent, like {RequestStream}, are completely generated before adding the request.
+    #
+    # @param request [Request] The Request object containing the details of the HTTP request to send.
+    # @param handler [Proc] The block that will be called with the response, when the future is waited for, to
+    #   calculate the result.
+    # @return [Future] The future that will contain the result.
+    #
+    # @api private
+    #
+    def send_async(request, &handler)
+      # Generate the complete body now, so that errors are reported to the caller:
+      body = request.body
+      if body.respond_to?(:read)
+        begin
+          body = body.read
+        ensure
+          request.body.close if request.body.respond_to?(:close)
+        end
+        raise request.body.error if request.body.respond_to?(:error) && !request.body.error.nil?
+      end
+
+      # Add the request to the queue, it will be started by the next call to the `wait` method:
+      future = Future.new(self, handler)
+      @multi_mutex.synchronize do
+        raise Error.new('The connection has been closed.') if @multi_closed
+        @multi_queue << [request, body, future]
+      end
+      future
+    end
+
+    #
+    # Sends and receives data for the requests in progress, till the given future is completed. Only one thread at a
+    # time calls the `perform` method of the multi handle, without holding the lock, so that other threads can add
+    # requests meanwhile. The rest of the threads wait till their future is completed, or till the thread that
+    # advances the requests finishes.
+    #
+    # @param future [Future] The future to wait for.
+    #
+    # @api private
+    #
+    def wait(future)
+      until future.done?
+        multi = nil
+        @multi_mutex.synchronize do
+          @multi_progress.wait(@multi_mutex) while @multi_performing && !future.done?
+          next if future.done?
+          if @multi_queue.empty? && @multi_active.empty?
+            raise Error.new('There are no requests in progress for the future.')
+          end
+          @multi_performing = true
+          multi = @multi ||= Curl::Multi.new
+        end
+        next if multi.nil?
+        begin
+          start_async(multi)
+          multi.perform do
+            # If the connection has been closed remove the handles, so that the `perform` method returns. Otherwise
+            # reuse the handles of the requests that have finished for the queued ones, so that they don't wait till
+            # all the requests in progress finish:
+            closed = @multi_mutex.synchronize do
+              discard_async(multi) if @multi_closed
+              release_async
+              @multi_closed
+            end
+            start_async(multi) unless closed
+          end
+        ensure
+          @multi_mutex.synchronize do
+            @multi_performing = false
+            if @multi_closed
+              close_async
+            else
+              release_async
+            end
+            @multi_progress.broadcast
+          end
+        end
+      end
+    end
+
+    #
+    # Sends the request in a separate thread, and calls the given block as soon as the status and headers of the
+    # response have been received, passing a response whose body is a {ResponseStream}.
+    #
+    # @param request [Request] The request to send.
+    # @param curl [Curl::Easy] The cURL handle used to send the request.
+    # @return [Object] The value returned by the block.
+    #
+    # @api private
+    #
+    def stream(request, curl)
+      # Prepare the response, and the stream that will receive the body:
+      body = ResponseStream.new
+      response = Response.new(:body => body, :headers => {})
+      ready = Queue.new
+
+      # Extract the status and headers of the response, starting again when there are intermediate responses, like
+      # `100 Continue`:
+      curl.on_header do |data|
+        line = data.chomp
+        if line =~ %r{\AHTTP/\S+\s+(\d+)\s*(.*)\z}
+          response.code = $1.to_i
+          response.message = $2
+          response.headers.clear
+        elsif line =~ /\A([^:]+):\s*(.*)\z/
+          response.headers[$1.downcase] = $2
+        end
+        data.bytesize
+      end
+
+      # Pass the chunks of the body to the stream, returning a count different to the size of the chunk, so that the
+      # transfer is aborted, if the consumer is no longer interested in the data:
+      signaled = false
+      curl.on_body do |data|
+        unless signaled
+          signaled = true
+          ready.push(true)
+        end
+        body.push(data)
+        body.closed? ? 0 : data.bytesize
+      end
+
+      # Run the transfer in a separate thread, so that the body can be consumed while it is received:
+      thread = Thread.new do
+        begin
+          perform(request, curl)
+          body.finish
+        rescue Exception => error
+          body.finish(error)
+        ensure
+          ready.push(true)
+        end
+      end
+
+      # Wait till the body starts to arrive, or the transfer finishes, and then pass the response to the block,
+      # making sure that the transfer is always completed or aborted:
+      begin
+        ready.pop
+        raise body.error if response.code.nil? && !body.error.nil?
+        response.code ||= curl.response_code
+        return yield(response)
+      ensure
+        body.close
+        thread.join
+        curl.on_header
+        curl.on_body
+      end
+    end
+
+    #
+    # Performs the request using the given cURL handle, and waits till it is completed.
+    #
+    # @param request [Request] The request to perform.
+    # @param curl [Curl::Easy] The cURL handle.
+    #
+    # @api private
+    #
+    def perform(request, curl)
+      # Bodies that are generated while they are sent are passed to cURL as IO objects, so that it reads them with a
+      # callback:
+      return upload(request, curl) if request.body.respond_to?(:read)
 
-      set_headers!(request)
-      set_authentication!
-      # Clear any data that may be in the buffers:
-      @curl.post_body = nil
-      # Send the request and wait for the response:
       case request.method
       when :DELETE
-        @curl.http_delete
+        curl.http_delete
       when :GET
-        @curl.http_get
+        curl.http_get
       when :PUT
-        @curl.http_put(request.body)
+        curl.http_put(request.body)
       when :HEAD
-        @curl.http_head
+        curl.http_head
       when :POST
-        @curl.http_post(request.body)
+        curl.http_post(request.body)
       end
+    end
 
-      # Return the response:
-      response = Response.new
-      response.body = @curl.body_str
-      response.code = @curl.response_code
-      return response
+    #
+    # Performs a request whose body is an IO like object, like a {RequestStream}, reading it while it is sent, and
+    # waits till it is completed. The size of the body isn't known in advance, so it is sent using chunked transfer
+    # encoding.
+    #
+    # @param request [Request] The request to perform.
+    # @param curl [Curl::Easy] The cURL handle.
+    #
+    # @api private
+    #
+    def upload(request, curl)
+      body = request.body
+      begin
+        curl.headers['transfer-encoding'] = 'chunked'
+        curl.put_data = body
+        curl.http(request.method.to_s)
+      ensure
+        body.close if body.respond_to?(:close)
+      end
+      raise body.error if body.respond_to?(:error) && !body.error.nil?
     end
 
     #
@@ -479,7 +1148,9 @@ module OvirtSDK4
     # @return [String]
     #
     def authenticate
-      @token ||= get_access_token
+      @token_mutex.synchronize do
+        @token ||= get_access_token
+      end
     end
 
     #
@@ -531,8 +1202,323 @@ module OvirtSDK4
       # Revoke the SSO access token:
       revoke_access_token unless @token.nil?
 
-      # Release resources used by the cURL handle:
-      @curl.close
+      # Release the cURL handles that aren't in use, the rest will be released when they are returned to the pool, and
+      # abort the asynchronous requests in progress, if any. If a thread is advancing them it will release their
+      # handles, otherwise they are released here:
+      @pool_mutex.synchronize do
+        @pool_closed = true
+        @pool.each(&:close)
+        @pool_created -= @pool.size
+        @pool.clear
+        @pool_available.broadcast
+      end
+      @multi_mutex.synchronize do
+        @multi_closed = true
+        failure = 'The connection has been closed.'
+        @multi_queue.each { |_, _, future| future.complete(nil, failure) }
+        @multi_queue.clear
+        @multi_active.each_value { |future| future.complete(nil, failure) }
+        close_async unless @multi_performing
+        @multi_progress.broadcast
+      end
+
+      # Release the XML writers:
+      @writers_mutex.synchronize do
+        @writers.each(&:close)
+        @writers.clear
+      end
+    end
+
+    #
+    # Assigns cURL handles to the queued asynchronous requests, and adds them to the multi handle. This is only called
+    # by the thread that has the performing flag. Idle handles are reused, and new ones are created till the maximum
+    # number of asynchronous connections is reached. The rest of the requests stay in the queue till other requests
+    # finish, which always happens, as when no request is in progress all the handles are idle.
+    #
+    # @param multi [Curl::Multi] The multi handle.
+    #
+    # @api private
+    #
+    def start_async(multi)
+      loop do
+        job = nil
+        curl = nil
+        @multi_mutex.synchronize do
+          unless @multi_queue.empty?
+            curl = @multi_idle.pop
+            if !curl.nil? || @multi_created < @async_connections
+              @multi_created += 1 if curl.nil?
+              job = @multi_queue.shift
+            end
+          end
+        end
+        break if job.nil?
+        request, body, future = job
+        begin
+          if curl.nil?
+            curl = Curl::Easy.new
+            configure_curl(curl)
+          end
+          prepare_async(curl, request, body, future)
+        rescue StandardError => error
+          @multi_mutex.synchronize do
+            future.complete(nil, error.message)
+            if curl.nil?
+              @multi_created -= 1
+            else
+              recycle_async(curl)
+            end
+          end
+          next
+        end
+        @multi_mutex.synchronize do
+          if @multi_closed
+            future.complete(nil, 'The connection has been closed.')
+            recycle_async(curl)
+          else
+            @multi_active[curl] = future
+            multi.add(curl)
+          end
+        end
+      end
+    end
+
+    #
+    # Configures the cURL handle for an asynchronous request.
+    #
+    # @param curl [Curl::Easy] The handle, new or reused.
+    # @param request [Request] The request.
+    # @param body [String] The complete body of the request.
+    # @param future [Future] The future that will be completed when the transfer finishes.
+    #
+    # @api private
+    #
+    def prepare_async(curl, request, body, future)
+      curl.url = build_url({
+        :path => request.path,
+        :query => request.query,
+      })
+      set_headers!(request, curl)
+      set_authentication!(curl)
+      case request.method
+      when :DELETE
+        curl.delete = true
+      when :PUT
+        curl.put_data = body
+      when :HEAD
+        curl.head = true
+      when :POST
+        curl.post_body = body
+      end
+
+      # Complete the future when the transfer finishes. When no response could be received the failure handler, which
+      # is also called for responses with error codes, provides a better description of the error than the completion
+      # handler, so it takes precedence:
+      curl.on_complete do |easy|
+        unless future.done?
+          if easy.response_code == 0
+            complete_async(easy, future, nil, 'No response was received.')
+          else
+            response = Response.new
+            response.body = easy.body_str
+            response.code = easy.response_code
+            response.headers = { 'content-type' => easy.content_type }
+            complete_async(easy, future, response)
+          end
+        end
+      end
+      curl.on_failure do |easy, error|
+        complete_async(easy, future, nil, error.is_a?(Array) ? error.last : error.to_s) if easy.response_code == 0
+      end
+    end
+
+    #
+    # Completes the future of an asynchronous request, and wakes up the threads waiting for it. The handle is released
+    # later, after the `perform` method of the multi handle returns, as cURL still uses it while calling this.
+    #
+    # @param curl [Curl::Easy] The handle of the request.
+    # @param future [Future] The future.
+    # @param response [Response] The response, or `nil` if there is no response.
+    # @param failure [String] The description of the error, if no response was received.
+    #
+    # @api private
+    #
+    def complete_async(curl, future, response, failure = nil)
+      @multi_mutex.synchronize do
+        return if @multi_closed
+        future.complete(response, failure)
+        @multi_finished << curl unless @multi_active.delete(curl).nil?
+        @multi_progress.broadcast
+      end
+    end
+
+    #
+    # Removes from the multi handle the handles of the asynchronous requests in progress. Must be called with the lock
+    # held, and only when no other thread is advancing the requests.
+    #
+    # @param multi [Curl::Multi] The multi handle.
+    #
+    # @api private
+    #
+    def discard_async(multi)
+      @multi_active.each_key do |curl|
+        multi.remove(curl)
+        @multi_finished << curl
+      end
+      @multi_active.clear
+    end
+
+    #
+    # Keeps for the following requests the handles of the asynchronous requests that have finished. Must be called
+    # with the lock held.
+    #
+    # @api private
+    #
+    def release_async
+      @multi_finished.each { |curl| recycle_async(curl) }
+      @multi_finished.clear
+    end
+
+    #
+    # Keeps for the following asynchronous requests a handle that has been used for an asynchronous request, or closes
+    # it if the connection has been closed. The method, body and callbacks configured for that request would affect
+    # the next request sent with the handle, so all the options are reset and then configured again. Resetting a
+    # handle doesn't close its connection, so it can still be reused. Must be called with the lock held.
+    #
+    # @param curl [Curl::Easy] The handle.
+    #
+    # @api private
+    #
+    def recycle_async(curl)
+      if @multi_closed
+        curl.close
+        @multi_created -= 1
+      else
+        curl.reset
+        configure_curl(curl)
+        @multi_idle.push(curl)
+      end
+    end
+
+    #
+    # Releases all the handles used by the asynchronous requests, including the idle ones and the multi handle. Must
+    # be called with the lock held, and only when no other thread is advancing the requests.
+    #
+    # @api private
+    #
+    def close_async
+      unless @multi.nil?
+        discard_async(@multi)
+        release_async
+
+        # The `close` method of the multi handle isn't available in old versions of curb, the garbage collector will
+        # release it in that case:
+        @multi.close if @multi.respond_to?(:close)
+        @multi = nil
+      end
+      @multi_idle.each(&:close)
+      @multi_created -= @multi_idle.size
+      @multi_idle.clear
+    end
+
+    #
+    # Takes a cURL handle from the pool. If there are no idle handles, and the maximum hasn't been reached yet, a new
+    # handle is created, otherwise the calling thread waits till other thread returns one.
+    #
+    # @return [Curl::Easy]
+    #
+    # @api private
+    #
+    def acquire_curl
+      @pool_mutex.synchronize do
+        loop do
+          raise Error.new('The connection has been closed.') if @pool_closed
+          return @pool.pop unless @pool.empty?
+          break if @pool_created < @connections
+          @pool_waiting += 1
+          @pool_waits += 1
+          start = Process.clock_gettime(Process::CLOCK_MONOTONIC)
+          begin
+            @pool_available.wait(@pool_mutex)
+          ensure
+            @pool_waiting -= 1
+            @pool_wait_time += Process.clock_gettime(Process::CLOCK_MONOTONIC) - start
+          end
+        end
+        @pool_created += 1
+      end
+
+      # Create the new handle outside of the lock, as that may be slow:
+      begin
+        curl = Curl::Easy.new
+        configure_curl(curl)
+        curl
+      rescue StandardError
+        @pool_mutex.synchronize do
+          @pool_created -= 1
+          @pool_available.signal
+        end
+        raise
+      end
+    end
+
+    #
+    # Returns a cURL handle to the pool, and wakes up one of the threads waiting for a handle, if any. If the
+    # connection has already been closed the handle is closed instead.
+    #
+    # @param curl [Curl::Easy] The handle.
+    #
+    # @api private
+    #
+    def release_curl(curl)
+      @pool_mutex.synchronize do
+        if @pool_closed
+          curl.close
+          @pool_created -= 1
+        else
+          @pool.push(curl)
+          @pool_available.signal
+        end
+      end
+    end
+
+    #
+    # Configures a cURL handle with the TLS, timeout, compression and debug settings of this connection.
+    #
+    # @param curl [Curl::Easy] The handle to configure.
+    #
+    # @api private
+    #
+    def configure_curl(curl)
+      # Configure TLS parameters:
+      if @url.scheme == 'https'
+        if @insecure
+          curl.ssl_verify_peer = false
+          curl.ssl_verify_host = false
+        elsif !@ca_file.nil?
+          curl.cacert = @ca_file
+        end
+      end
+
+      # Configure the timeout:
+      curl.timeout = @timeout
+
+      # Configure compression of responses (setting the value to a zero length string means accepting all the
+      # compression types that libcurl supports):
+      if @compress
+        curl.encoding = ''
+      end
+
+      # Configure debug mode:
+      if @debug && @log
+        curl.verbose = true
+        curl.on_debug do |_, data|
+          lines = data.gsub("\r\n", "\n").strip.split("\n")
+          lines.each do |line|
+            @log.debug(line)
+          end
+        end
+      end
     end
 
     #
@@ -0,0 +1,182 @@
+#
+# Copyright (c) 2015 Red Hat, Inc.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#   http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+module OvirtSDK4
+
+  #
+  # This is the base class for all the JSON readers used by the SDK. It contains the utility methods used by all
+  # of them. The JSON documents are parsed by the native parser of the `json` library, and then the generated
+  # readers convert the resulting hashes and arrays into instances of the model types.
+  #
+  # @api private
+  #
+  class JsonReader
+
+    #
+    # Parses the given JSON document.
+    #
+    # @param source [String, IO] The string, or any object that responds to the `read` method, like a
+    #   {ResponseStream}, containing the JSON document.
+    # @return [Hash, Array]
+    #
+    def self.parse(source)
+      source = source.read if source.respond_to?(:read)
+      return nil if source.nil? || source.empty?
+      begin
+        return JSON.parse(source)
+      rescue JSON::ParserError => error
+        raise Error.new("Can't parse JSON document: #{error.message}")
+      end
+    end
+
+    #
+    # Extracts the array of values of a JSON list. The server represents lists as an object containing one array,
+    # for example `{"vm": [...]}`, and empty lists as an empty object, but plain arrays are also accepted.
+    #
+    # @param value [Hash, Array]
+    # @return [Array]
+    #
+    def self.unwrap(value)
+      case value
+      when nil
+        return []
+      when Array
+        return value
+      when Hash
+        value.each_value do |item|
+          return item if item.is_a?(Array)
+        end
+        return []
+      else
+        return [value]
+      end
+    end
+
+    #
+    # Converts the given JSON value to a string.
+    #
+    # @param value [Object]
+    # @return [String]
+    #
+    def self.read_string(value)
+      return nil if value.nil?
+      return value.to_s
+    end
+
+    #
+    # Converts the given JSON list to an array of strings.
+    #
+    # @param value [Hash, Array]
+    # @return [Array<String>]
+    #
+    def self.read_strings(value)
+      return JsonReader.unwrap(value).map { |item| JsonReader.read_string(item) }
+    end
+
+    #
+    # Converts the given JSON value to a boolean. The server may send booleans as JSON booleans or as strings.
+    #
+    # @param value [Object]
+    # @return [Boolean]
+    #
+    def self.read_boolean(value)
+      return value if value == true || value == false
+      return Reader.parse_boolean(value.is_a?(String) ? value : value.to_s) unless value.nil?
+      return nil
+    end
+
+    #
+    # Converts the given JSON list to an array of booleans.
+    #
+    # @param value [Hash, Array]
+    # @return [Array<Boolean>]
+    #
+    def self.read_booleans(value)
+      return JsonReader.unwrap(value).map { |item| JsonReader.read_boolean(item) }
+    end
+
+    #
+    # Converts the given JSON value to an integer. The server may send integers as JSON numbers or as strings.
+    #
+    # @param value [Object]
+    # @return [Integer]
+    #
+    def self.read_integer(value)
+      return value if value.is_a?(Integer)
+      return Reader.parse_integer(value.to_s) unless value.nil?
+      return nil
+    end
+
+    #
+    # Converts the given JSON list to an array of integers.
+    #
+    # @param value [Hash, Array]
+    # @return [Array<Integer>]
+    #
+    def self.read_integers(value)
+      return JsonReader.unwrap(value).map { |item| JsonReader.read_integer(item) }
+    end
+
+    #
+    # Converts the given JSON value to a decimal. The server may send decimals as JSON numbers or as strings.
+    #
+    # @param value [Object]
+    # @return [Float]
+    #
+    def self.read_decimal(value)
+      return value.to_f if value.is_a?(Numeric)
+      return Reader.parse_decimal(value.to_s) unless value.nil?
+      return nil
+    end
+
+    #
+    # Converts the given JSON list to an array of decimals.
+    #
+    # @param value [Hash, Array]
+    # @return [Array<Float>]
+    #
+    def self.read_decimals(value)
+      return JsonReader.unwrap(value).map { |item| JsonReader.read_decimal(item) }
+    end
+
+    #
+    # Converts the given JSON value to a date. The server sends dates as the number of milliseconds since the epoch,
+    # but strings using the XML schema format are also accepted.
+    #
+    # @param value [Object]
+    # @return [DateTime]
+    #
+    def self.read_date(value)
+      return nil if value.nil?
+      return Time.at(Rational(value, 1000)).to_datetime if value.is_a?(Integer)
+      text = value.to_s
+      return Time.at(Rational(Integer(text, 10), 1000)).to_datetime if text =~ /\A-?\d+\z/
+      return Reader.parse_date(text)
+    end
+
+    #
+    # Converts the given JSON list to an array of dates.
+    #
+    # @param value [Hash, Array]
+    # @return [Array<DateTime>]
+    #
+    def self.read_dates(value)
+      return JsonReader.unwrap(value).map { |item| JsonReader.read_date(item) }
+    end
+
+  end
+
+end
@@ -0,0 +1,57 @@
+#
+# Copyright (c) 2015 Red Hat, Inc.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#   http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+module OvirtSDK4
+
+  #
+  # This is the base class for all the JSON writers used by the SDK. It contains the utility methods used by all
+  # of them. The generated writers append the JSON text directly to a string, and use the same representation that
+  # the server uses in its responses: objects without a root element, and lists wrapped in an object containing one
+  # array, for example `{"vm":[...]}`.
+  #
+  # @api private
+  #
+  class JsonWriter
+
+    #
+    # Converts the given date to the number of milliseconds since the epoch, which is the representation of dates
+    # used by the server in JSON documents.
+    #
+    # @param value [DateTime, Time]
+    # @return [String]
+    #
+    def self.render_date(value)
+      return (value.to_time.to_r * 1000).to_i.to_s
+    end
+
+    #
+    # Replaces the separator that the generated writers add after each member or item with the given closing
+    # character, or just appends that character if nothing was added.
+    #
+    # @param buffer [String] The string where the JSON text is being written.
+    # @param close [String] The closing character, `}` or `]`.
+    #
+    def self.close(buffer, close)
+      if buffer.end_with?(',')
+        buffer[-1] = close
+      else
+        buffer << close
+      end
+    end
+
+  end
+
+end
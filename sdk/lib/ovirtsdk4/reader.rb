@@ -70,7 +70,7 @@ module OvirtSDK4
     # @return [Boolean]
     #
     def self.read_boolean(reader)
-      return Reader.parse_boolean(reader.read_element)
+      return reader.read_boolean
     end
 
     #
@@ -81,7 +81,7 @@ module OvirtSDK4
     # @return [Array<Boolean>]
     #
     def self.read_booleans(reader)
-      return reader.read_elements.map { |text| Reader.parse_boolean(text) }
+      return reader.read_booleans
     end
 
     #
@@ -106,7 +106,7 @@ module OvirtSDK4
     # @return [Integer]
     #
     def self.read_integer(reader)
-      return Reader.parse_integer(reader.read_element)
+      return reader.read_integer
     end
 
     #
@@ -117,7 +117,7 @@ module OvirtSDK4
     # @return [Array<Integer>]
     #
     def self.read_integers(reader)
-      return reader.read_elements.map { |text| Reader.parse_integer(text) }
+      return reader.read_integers
     end
 
     #
@@ -141,7 +141,7 @@ module OvirtSDK4
     # @return [Fixnum]
     #
     def self.read_decimal(reader)
-      return Reader.parse_decimal(reader.read_element)
+      return reader.read_decimal
     end
 
     #
@@ -152,7 +152,7 @@ module OvirtSDK4
     # @return [Array<Fixnum>]
     #
     def self.read_decimals(reader)
-      return reader.read_elements.map { |text| Reader.parse_decimal(text) }
+      return reader.read_decimals
     end
 
     #
@@ -177,7 +177,7 @@ module OvirtSDK4
     # @return [DateTime]
     #
     def self.read_date(reader)
-      return Reader.parse_date(reader.read_element)
+      return reader.read_date
     end
 
     #
@@ -188,24 +188,75 @@ module OvirtSDK4
     # @return [Array<DateTime>]
     #
     def self.read_dates(reader)
-      return reader.read_elements.map { |text| Reader.parse_date(text) }
+      return reader.read_dates
     end
 
     #
-    # This hash stores for each known tag a reference to the method that read the object corresponding for that tag. For
-    # example, for the `vm` tag it will contain a reference to the `VmReader.read_one` method, and for the `vms` tag
-    # it will contain a reference to the `VmReader.read_many` method.
+    # Converts a list of objects into a hash containing one array for each of the selected members, the same that the
+    # `read_columns` methods of the generated readers return. This is used when the response body isn't XML, so it
+    # can't be read directly into columns.
     #
-    @@readers = {}
+    # @param list [Array<Struct>] The list of objects.
+    # @param names [Array<Symbol>] The names of the selected members.
+    # @param members [Array<Symbol>] The names of the members of the type, the `COLUMNS` constant of its reader.
+    # @return [Hash{Symbol => Array}]
+    #
+    # @api private
+    #
+    def self.columns(list, names, members)
+      check_columns(names, members)
+      columns = {}
+      names.each do |name|
+        columns[name] = list.map { |object| object.public_send(name) }
+      end
+      return columns
+    end
 
     #
-    # Registers a read method.
+    # Checks that the names selected as columns are members of the type, so that the XML and JSON paths accept the
+    # same names, and that only the getters of members are called.
     #
-    # @param tag [String] The tag name.
-    # @param reader [Method] The reference to the method that reads the object corresponding to the `tag`.
+    # @param names [Array<Symbol>] The names of the selected members.
+    # @param members [Array<Symbol>] The names of the members of the type.
+    # @raise [ArgumentError] If any of the names isn't a member of the type.
     #
-    def self.register(tag, reader)
-      @@readers[tag] = reader
+    # @api private
+    #
+    def self.check_columns(names, members)
+      names.each do |name|
+        next if members.include?(name)
+        raise ArgumentError.new("The name '#{name}' doesn't correspond to a member that can be returned as a column.")
+      end
+    end
+
+    #
+    # Converts an object into the plain frozen hashes and arrays that the `read_raw_one` and `read_raw_many` methods of
+    # the generated readers return. This is used when the response body isn't XML, so it can't be read directly into
+    # that representation.
+    #
+    # @param value [Object] The object, list or primitive value to convert.
+    # @return [Object]
+    #
+    def self.raw(value)
+      if value.is_a?(Struct)
+        hash = {}
+        value.instance_variables.each do |variable|
+          next if variable == :@changes || variable == :@_shared
+          item = value.instance_variable_get(variable)
+          if variable == :@_values
+            item.each { |name, member| hash[name] = raw(member) } unless item.nil?
+          else
+            hash[variable.to_s[1..-1].to_sym] = raw(item) unless item.nil?
+          end
+        end
+        return hash.freeze
+      elsif value.is_a?(List)
+        return { :href => value.href }.freeze if value.empty? && !value.href.nil?
+        return value.map { |item| raw(item) }.freeze
+      elsif value.is_a?(Array)
+        return value.map { |item| raw(item) }.freeze
+      end
+      return value
     end
 
     #
@@ -213,15 +264,18 @@ module OvirtSDK4
     # if the first tag name is `vm` then it will create a `Vm` object, if it the tag is `vms` it will create an array
     # of `Vm` objects, so on.
     #
-    # @param source [String, XmlReader] The string, IO or XML reader where the input will be taken from.
+    # @param source [String, IO, XmlReader] The string, IO or XML reader where the input will be taken from. Any
+    #   object that responds to the `read` method, like a {ResponseStream}, is also accepted. `File` objects are
+    #   mapped in memory when possible, so large files are parsed without copying them into Ruby strings.
     #
     def self.read(source)
-      # If the source is a string or IO object then create a XML reader from it:
+      # If the source is a string or IO object then create a XML reader from it, note that the XML reader also has a
+      # `read` method, so it needs to be checked first:
       cursor = nil
-      if source.is_a?(String) || source.is_a?(IO)
-        cursor = XmlReader.new(source)
-      elsif source.is_a?(XmlReader)
+      if source.is_a?(XmlReader)
         cursor = source
+      elsif source.is_a?(String) || source.respond_to?(:read)
+        cursor = XmlReader.new(source)
       else
         raise ArgumentError.new("Expected a 'String' or 'XmlReader', but got '#{source.class}'")
       end
@@ -231,15 +285,15 @@ module OvirtSDK4
         # Do nothing if there aren't more tags:
         return nil unless cursor.forward
 
-        # Select the specific reader according to the tag:
+        # Select the specific reader according to the tag, using the frozen table generated in the `readers.rb` file:
         tag = cursor.node_name
-        reader = @@readers[tag]
+        reader = READERS[tag]
         if reader.nil?
           raise Error.new("Can't find a reader for tag '#{tag}'")
         end
 
         # Read the object using the specific reader:
-        return reader.call(cursor)
+        return reader[0].send(reader[1], cursor)
       ensure
         if !cursor.nil? && !cursor.equal?(source)
           cursor.close
@@ -64,10 +64,11 @@ module OvirtSDK4
     #
     def check_fault(response)
       body = response.body
+      body = body.read if body.respond_to?(:read)
       if body.nil? || body.length == 0
         raise_error(response, nil)
       end
-      body = Reader.read(body)
+      body = read_body(response, body)
       if body.is_a?(Fault)
         raise_error(response, body)
       end
@@ -86,10 +87,11 @@ module OvirtSDK4
     #
     def check_action(response)
       body = response.body
+      body = body.read if body.respond_to?(:read)
       if body.nil? || body.length == 0
         raise_error(response, nil)
       end
-      body = Reader.read(body)
+      body = read_body(response, body)
       if body.is_a?(Fault)
         raise_error(response, body)
       end
@@ -100,6 +102,47 @@ module OvirtSDK4
       raise Error.new("Expected an action or a fault, but got '#{body.class.name.split('::').last}'")
     end
 
+    #
+    # Generates the body of a request, using the XML or the JSON writers according to the format of the connection.
+    #
+    # This method is intended for internal use by other components of the SDK. Refrain from using it directly, as
+    # backwards compatibility isn't guaranteed.
+    #
+    # @param object [Struct] The object to write.
+    # @param xml [Class] The XML writer of the type of the object.
+    # @param json [Class] The JSON writer of the type of the object.
+    # @param method [Symbol] The method of the writers to call, `:write_one` or `:write_changes`.
+    # @return [String]
+    #
+    # @api private
+    #
+    def write_body(object, xml, json, method = :write_one)
+      if @connection.json?
+        body = String.new
+        json.send(method, object, body)
+        return body
+      end
+      @connection.with_writer do |writer|
+        xml.send(method, object, writer)
+        writer.string
+      end
+    end
+
+    private
+
+    #
+    # Parses the body of a response that is expected to contain an action or a fault, using the XML or the JSON
+    # readers according to the content type of the response. JSON documents don't have a root element that tells the
+    # type, so an object containing a `status` or a `fault` is considered an action, and anything else a fault.
+    #
+    def read_body(response, body)
+      return Reader.read(body) unless response.json?
+      hash = JsonReader.parse(body)
+      return nil unless hash.is_a?(Hash)
+      return ActionJsonReader.read_one(hash) if hash.key?('status') || hash.key?('fault')
+      return FaultJsonReader.read_one(hash)
+    end
+
   end
 
 end
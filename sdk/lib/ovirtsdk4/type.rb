@@ -102,10 +102,164 @@ module OvirtSDK4
     include Type
 
     #
-    # Empty constructor.
+    # The empty and frozen hash that replaces the modifications recorded while changes are ignored.
+    #
+    # @api private
+    #
+    IGNORED_CHANGES = {}.freeze
+
+    #
+    # Creates a new object, assigning only the members that are present in the given hash, so that the cost doesn't
+    # depend on the number of members of the type. Keys that don't correspond to members are ignored.
+    #
+    # @param opts [Hash] A hash containing the values of the members, indexed by symbol.
     #
     def initialize(opts = {})
-      self.href = opts[:href]
+      opts.each { |name, value| assign(name, value) } unless opts.empty?
+    end
+
+    #
+    # Marks this object as shared, because a reader stored it in its identity map, and other objects may reference
+    # it. The readers never overwrite shared objects when reading into existing objects.
+    #
+    # @api private
+    #
+    def identity_shared!
+      @_shared = true
+    end
+
+    #
+    # Checks if a reader stored this object in its identity map.
+    #
+    # @return [Boolean]
+    #
+    # @api private
+    #
+    def identity_shared?
+      instance_variable_defined?(:@_shared)
+    end
+
+    #
+    # Returns the names of the members that have been modified since the object was created or read, or since the
+    # last call to the `clear_changes` method. Objects returned by the readers start without changes.
+    #
+    # @return [Array<Symbol>]
+    #
+    def changes
+      @changes.nil? ? [] : @changes.keys
+    end
+
+    #
+    # Checks if the object has been modified. If a member name is given only that member is checked, otherwise the
+    # result will be `true` if any member of this object, or of any nested object, has been modified.
+    #
+    # @param name [Symbol] The name of the member to check.
+    # @return [Boolean]
+    #
+    def changed?(name = nil)
+      return !@changes.nil? && @changes.key?(name) unless name.nil?
+      return true unless @changes.nil? || @changes.empty?
+      member_values.any? do |value|
+        if value.is_a?(Struct)
+          value.changed?
+        elsif value.is_a?(List)
+          value.any? { |item| item.is_a?(Struct) && item.changed? }
+        else
+          false
+        end
+      end
+    end
+
+    #
+    # Forgets the modifications made to this object and, unless `deep` is `false`, to the objects nested inside it.
+    #
+    # @param deep [Boolean] Indicates if the nested objects should also be cleared.
+    #
+    def clear_changes(deep = true)
+      @changes = nil
+      return unless deep
+      member_values.each do |value|
+        if value.is_a?(Struct)
+          value.clear_changes
+        elsif value.is_a?(List)
+          value.each { |item| item.clear_changes if item.is_a?(Struct) }
+        end
+      end
+    end
+
+    #
+    # Stops recording the modifications made to this object till the next call to {#clear_changes}. The readers call
+    # this before populating an object with the setters, so that they don't create the hash of modifications only to
+    # discard it when they finish.
+    #
+    # @api private
+    #
+    def ignore_changes
+      @changes = IGNORED_CHANGES
+    end
+
+    #
+    # Makes sure that copies of objects that use sparse storage don't share the hash that contains the values of the
+    # members, nor the modifications recorded, and that copies of objects shared by an identity map aren't marked as
+    # shared.
+    #
+    # @param other [Struct] The object that is being copied.
+    #
+    # @api private
+    #
+    def initialize_copy(other)
+      super(other)
+      @_values = @_values.dup unless @_values.nil?
+      @changes = @changes.dup unless @changes.nil? || @changes.equal?(IGNORED_CHANGES)
+      remove_instance_variable(:@_shared) if instance_variable_defined?(:@_shared)
+    end
+
+    protected
+
+    #
+    # Assigns the member with the given name, using the corresponding setter. The generated types override this method
+    # to handle their own members, and call this one for the rest.
+    #
+    # @param name [Symbol] The name of the member.
+    # @param value [Object] The new value of the member.
+    #
+    # @api private
+    #
+    def assign(name, value)
+      self.href = value if name == :href
+    end
+
+    #
+    # Returns the values of the members of this object, regardless of if they are stored in instance variables or in
+    # the hash used by the types that have sparse storage.
+    #
+    # @return [Array]
+    #
+    # @api private
+    #
+    def member_values
+      values = []
+      instance_variables.each do |variable|
+        next if variable == :@changes || variable == :@_shared
+        value = instance_variable_get(variable)
+        if variable == :@_values
+          values.concat(value.values) unless value.nil?
+        else
+          values << value
+        end
+      end
+      values
+    end
+
+    #
+    # Records that the given member has been modified. This is intended for use by the generated setters.
+    #
+    # @param name [Symbol] The name of the member.
+    #
+    def changed!(name)
+      return if @changes.equal?(IGNORED_CHANGES)
+      @changes ||= {}
+      @changes[name] = true
     end
 
   end
@@ -24,6 +24,12 @@ module OvirtSDK4
   #
   class Writer
 
+    #
+    # Indicates if the extension contains the native writers generated from the model. When it does the generated
+    # writers delegate to them the writing of complete objects.
+    #
+    NATIVE = XmlWriter.method_defined?(:write_struct)
+
     #
     # Writes an element with the given name and string value.
     #
@@ -123,22 +129,6 @@ module OvirtSDK4
       writer.write_element(name, Writer.render_date(value))
     end
 
-    #
-    # This hash stores for each known type a reference to the method that writes the XML document corresponding for that
-    # type. For example, for the `Vm` type it will contain a reference to the `VmWriter.write_one` method.
-    #
-    @@writers = {}
-
-    #
-    # Registers a write method.
-    #
-    # @param type [Class] The type.
-    # @param writer [Method] The reference to the method that writes the XML document corresponding to the type.
-    #
-    def self.register(type, writer)
-      @@writers[type] = writer
-    end
-
     #
     # Writes one object, determining the writer method to use based on the type. For example if the type of the object
     # is `Vm` then it will create write the `vm` tag, with its contents.
@@ -186,15 +176,16 @@ module OvirtSDK4
           end
           cursor.write_end
         else
-          # Select the specific writer according to the type:
+          # Select the specific writer according to the type, using the frozen table generated in the `writers.rb`
+          # file:
           type = object.class
-          writer = @@writers[type]
+          writer = WRITERS[type]
           if writer.nil?
             raise Error.new("Can't find a writer for type '#{type}'")
           end
 
-          # Write the object using the specific method:
-          writer.call(object, cursor, root)
+          # Write the object using the specific writer:
+          writer.write_one(object, cursor, root)
         end
 
         # If no XML cursor was explicitly given, and we created it, then we need to return the generated XML text:
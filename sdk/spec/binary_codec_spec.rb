@@ -0,0 +1,136 @@
+#
+# Copyright (c) 2016 Red Hat, Inc.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#   http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+describe SDK::BinaryCodec do
+
+  describe ".load" do
+
+    context "given the result of dumping an object" do
+
+      it "returns an equivalent object" do
+        vm = SDK::Vm.new(
+          :href => '/vms/123',
+          :id => '123',
+          :name => 'myvm',
+          :memory => 1073741824,
+          :stateless => false,
+          :creation_time => DateTime.new(2016, 9, 15, 10, 20, Rational(30123, 1000), Rational(120, 1440)),
+          :cpu => { :topology => { :cores => 1, :sockets => 2, :threads => 1 } },
+          :os => { :boot => { :devices => [SDK::BootDevice::CDROM, SDK::BootDevice::HD] } },
+          :nics => [{ :name => 'nic0' }, { :name => 'nic1' }]
+        )
+        result = SDK::BinaryCodec.load(SDK::BinaryCodec.dump(vm))
+        expect(result).to be_a(SDK::Vm)
+        expect(SDK::Reader.raw(result)).to eq(SDK::Reader.raw(vm))
+        expect(result.creation_time).to eq(vm.creation_time)
+        expect(result.changed?).to be(false)
+      end
+
+    end
+
+    context "given the result of dumping a list" do
+
+      it "returns an equivalent list" do
+        list = SDK::List.new([SDK::Vm.new(:name => 'vm0'), SDK::Vm.new(:name => 'vm1')])
+        list.href = '/vms'
+        result = SDK::BinaryCodec.load(SDK::BinaryCodec.dump(list))
+        expect(result).to be_a(SDK::List)
+        expect(result.href).to eql('/vms')
+        expect(result.map(&:name)).to eql(['vm0', 'vm1'])
+      end
+
+      it "returns an empty list if the list was empty" do
+        result = SDK::BinaryCodec.load(SDK::BinaryCodec.dump([]))
+        expect(result).to be_a(SDK::List)
+        expect(result).to be_empty
+      end
+
+      it "returns links to lists with their href" do
+        vm = SDK::Vm.new(:nics => SDK::List.new)
+        vm.nics.href = '/vms/123/nics'
+        result = SDK::BinaryCodec.load(SDK::BinaryCodec.dump(vm))
+        expect(result.nics).to be_a(SDK::List)
+        expect(result.nics.href).to eql('/vms/123/nics')
+      end
+
+    end
+
+    context "given repeated strings" do
+
+      it "stores them only once" do
+        list = (0...100).map { |i| SDK::Vm.new(:id => i.to_s, :description => 'the same long description') }
+        data = SDK::BinaryCodec.dump(list)
+        expect(data.scan('the same long description').size).to eql(1)
+        result = SDK::BinaryCodec.load(data)
+        expect(result.map(&:description).uniq).to eql(['the same long description'])
+      end
+
+    end
+
+    context "given data that isn't a binary representation" do
+
+      it "raises an error" do
+        expect { SDK::BinaryCodec.load('<vm/>') }.to raise_error(SDK::Error, /binary representation/)
+      end
+
+    end
+
+    context "given truncated data" do
+
+      it "raises an error" do
+        data = SDK::BinaryCodec.dump(SDK::Vm.new(:name => 'myvm'))
+        expect { SDK::BinaryCodec.load(data[0..-4]) }.to raise_error(SDK::Error)
+      end
+
+    end
+
+    context "given data written with a different schema" do
+
+      it "raises an error" do
+        output = SDK::BinaryCodec::Output.new
+        output.raw(SDK::BinaryCodec::MAGIC)
+        output.varint(SDK::BinaryCodec::SCHEMA + 1)
+        expect { SDK::BinaryCodec.load(output.data) }.to raise_error(SDK::Error, /schema/)
+      end
+
+    end
+
+  end
+
+  describe SDK::BinaryCodec::Input do
+
+    it "reads the values written by the output" do
+      output = SDK::BinaryCodec::Output.new
+      output.integer(-1)
+      output.integer(-123456789012345)
+      output.integer(300)
+      output.decimal(3.25)
+      output.boolean(true)
+      output.string('ñandú')
+      output.string(nil)
+      input = SDK::BinaryCodec::Input.new(output.data)
+      expect(input.integer).to eql(-1)
+      expect(input.integer).to eql(-123456789012345)
+      expect(input.integer).to eql(300)
+      expect(input.decimal).to eql(3.25)
+      expect(input.boolean).to be(true)
+      expect(input.string).to eql('ñandú')
+      expect(input.string).to be_nil
+    end
+
+  end
+
+end
@@ -0,0 +1,140 @@
+#
+# Copyright (c) 2016 Red Hat, Inc.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#   http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+describe SDK::Connection do
+
+  before(:all) do
+    start_server
+    @connection = test_connection
+  end
+
+  after(:all) do
+    @connection.close
+    stop_server
+  end
+
+  describe "#send" do
+
+    context "when a block is given" do
+
+      it "yields a response whose body can be read while it is downloaded" do
+        set_xml_response('vms', 200, '<vms><vm id="123"/></vms>')
+        request = SDK::Request.new(:method => :GET, :path => 'vms')
+        vms = @connection.send(request) do |response|
+          expect(response.code).to eql(200)
+          expect(response.body).to respond_to(:read)
+          SDK::VmReader.read_many(SDK::XmlReader.new(response.body))
+        end
+        expect(vms.size).to eql(1)
+        expect(vms[0].id).to eql('123')
+      end
+
+      it "can read a large body incrementally" do
+        body = '<vms>' + 10_000.times.map { |i| "<vm id=\"#{i}\"><name>vm#{i}</name></vm>" }.join + '</vms>'
+        set_xml_response('vms', 200, body)
+        request = SDK::Request.new(:method => :GET, :path => 'vms')
+        vms = @connection.send(request) do |response|
+          SDK::VmReader.read_many(SDK::XmlReader.new(response.body))
+        end
+        expect(vms.size).to eql(10_000)
+        expect(vms.last.name).to eql('vm9999')
+      end
+
+      it "can be used again after the block returns without reading the body" do
+        set_xml_response('vms', 200, '<vms><vm id="123"/></vms>')
+        request = SDK::Request.new(:method => :GET, :path => 'vms')
+        code = @connection.send(request) { |response| response.code }
+        expect(code).to eql(200)
+        vms = @connection.system_service.vms_service.list
+        expect(vms.size).to eql(1)
+      end
+
+    end
+
+  end
+
+  describe "#send" do
+
+    context "when the body of the request is a stream" do
+
+      it "sends the document generated by the stream" do
+        set_xml_response('vms', 201, '<vms/>')
+        vms = 1000.times.map { |i| SDK::Vm.new(:name => "vm#{i}") }
+        request = SDK::Request.new(:method => :POST, :path => 'vms')
+        request.body = SDK::RequestStream.new do |writer|
+          SDK::VmWriter.write_many(vms, writer)
+        end
+        response = @connection.send(request)
+        expect(response.code).to eql(201)
+        expect(last_request_method).to eql('POST')
+        expect(last_request_body).to start_with('<vms><vm><name>vm0</name></vm>')
+        expect(last_request_body).to end_with('<vm><name>vm999</name></vm></vms>')
+      end
+
+      it "can be used again for requests with string bodies" do
+        set_xml_response('vms', 201, '<vm/>')
+        request = SDK::Request.new(:method => :POST, :path => 'vms')
+        request.body = SDK::RequestStream.new do |writer|
+          SDK::VmWriter.write_many([SDK::Vm.new], writer)
+        end
+        @connection.send(request)
+        @connection.system_service.vms_service.add(SDK::Vm.new(:name => 'myvm'))
+        expect(last_request_body).to eql('<vm><name>myvm</name></vm>')
+      end
+
+      it "raises the error of the stream instead of sending a truncated document" do
+        set_xml_response('vms', 201, '<vms/>')
+        request = SDK::Request.new(:method => :POST, :path => 'vms')
+        request.body = SDK::RequestStream.new do |writer|
+          SDK::VmWriter.write_one(SDK::Vm.new(:name => 'myvm'), writer)
+          raise 'myerror'
+        end
+        expect { @connection.send(request) }.to raise_error(RuntimeError, 'myerror')
+      end
+
+    end
+
+  end
+
+  describe "generated GET methods" do
+
+    it "raise an error containing the fault sent by the server" do
+      set_xml_response('vms/123', 404, '<fault><reason>myreason</reason></fault>')
+      service = @connection.system_service.vms_service.vm_service('123')
+      expect { service.get }.to raise_error(SDK::Error, /myreason/)
+    end
+
+  end
+
+end
+
+describe SDK::RequestStream do
+
+  describe "#read" do
+
+    it "raises the error that interrupted the document at the end of the data" do
+      stream = SDK::RequestStream.new do |writer|
+        SDK::VmWriter.write_one(SDK::Vm.new(:name => 'myvm'), writer)
+        raise 'myerror'
+      end
+      expect { loop { break if stream.read(16).nil? } }.to raise_error(RuntimeError, 'myerror')
+      stream.close
+      expect(stream.error.message).to eql('myerror')
+    end
+
+  end
+
+end
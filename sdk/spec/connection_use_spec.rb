@@ -33,6 +33,27 @@ describe SDK::Connection do
     end
   end
 
+  describe '#with_writer' do
+
+    it 'reuses the same writer for consecutive calls' do
+      first = @connection.with_writer { |writer| writer }
+      second = @connection.with_writer { |writer| writer }
+      expect(second).to be(first)
+    end
+
+    it 'returns the value of the block and gives an empty writer' do
+      @connection.with_writer do |writer|
+        writer.write_element('name', 'first')
+      end
+      body = @connection.with_writer do |writer|
+        writer.write_element('name', 'second')
+        writer.string
+      end
+      expect(body).to eql('<name>second</name>')
+    end
+
+  end
+
   describe ".build_url" do
 
     context "when given only the base" do
@@ -142,6 +163,86 @@ describe SDK::Connection do
 
   end
 
+  describe "#pool_stats" do
+
+    it "counts the connection used by the previous requests as idle" do
+      set_xml_response('', 200, '<api/>')
+      @connection.send(SDK::Request.new)
+      stats = @connection.pool_stats
+      expect(stats[:size]).to eql(1)
+      expect(stats[:created]).to eql(1)
+      expect(stats[:idle]).to eql(1)
+      expect(stats[:busy]).to eql(0)
+    end
+
+  end
+
+  context "when created with multiple connections" do
+
+    before(:all) do
+      @pooled = test_connection(:connections => 2)
+    end
+
+    after(:all) do
+      @pooled.close
+    end
+
+    it "sends requests from multiple threads without opening more connections than requested" do
+      set_xml_response('vms/123', 200, '<vm id="123"/>', 0.5)
+      set_xml_response('vms/456', 200, '<vm id="456"/>', 0.5)
+      vms_service = @pooled.system_service.vms_service
+      ids = ['123', '456', '123', '456']
+      start = Time.now
+      threads = ids.map { |id| Thread.new { vms_service.vm_service(id).get } }
+      vms = threads.map(&:value)
+      expect(vms.map(&:id)).to eql(ids)
+      expect(Time.now - start).to be < 2
+      stats = @pooled.pool_stats
+      expect(stats[:created]).to eql(2)
+      expect(stats[:idle]).to eql(2)
+      expect(stats[:waiting]).to eql(0)
+      expect(stats[:waits]).to be > 0
+    end
+
+  end
+
+  context "when created with a limited number of asynchronous connections" do
+
+    before(:all) do
+      @limited = test_connection(:async_connections => 2)
+    end
+
+    after(:all) do
+      @limited.close
+    end
+
+    it "sends the asynchronous requests without opening more connections than requested" do
+      set_xml_response('vms/123', 200, '<vm id="123"/>')
+      vm_service = @limited.system_service.vms_service.vm_service('123')
+      futures = (1..4).map { vm_service.get_async }
+      expect(futures.map(&:wait).map(&:id)).to eql(['123'] * 4)
+      stats = @limited.pool_stats
+      expect(stats[:async_size]).to eql(2)
+      expect(stats[:async_created]).to eql(2)
+      expect(stats[:async_idle]).to eql(2)
+      expect(stats[:async_busy]).to eql(0)
+      expect(vm_service.get.id).to eql('123')
+    end
+
+  end
+
+  context "when created with an invalid number of connections" do
+
+    it "raises an error" do
+      expect { test_connection(:connections => 0) }.to raise_error(ArgumentError, /connections/)
+    end
+
+    it "raises an error if the number of asynchronous connections is invalid" do
+      expect { test_connection(:async_connections => 0) }.to raise_error(ArgumentError, /async_connections/)
+    end
+
+  end
+
   describe ".service" do
 
     context "given nil" do
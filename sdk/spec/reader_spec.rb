@@ -372,4 +372,20 @@ describe SDK::Reader do
 
   end
 
+  describe "::READERS" do
+
+    it "is frozen, including its values" do
+      expect(SDK::Reader::READERS).to be_frozen
+      SDK::Reader::READERS.each do |key, value|
+        expect(key).to be_frozen
+        expect(value).to be_frozen
+      end
+    end
+
+    it "can be shared by ractors", :if => defined?(Ractor) do
+      expect(Ractor.shareable?(SDK::Reader::READERS)).to be true
+    end
+
+  end
+
 end
@@ -44,7 +44,8 @@ module Helpers # :nodoc:
 
   attr_reader :last_request_query,
               :last_request_method,
-              :last_request_body
+              :last_request_body,
+              :last_request_content_type
 
   # The authentication details used by the embedded tests web server:
   REALM = 'API'
@@ -115,15 +116,15 @@ module Helpers # :nodoc:
     @log ||= Logger.new('spec/client.log')
   end
 
-  def test_connection
-    return SDK::Connection.new(
+  def test_connection(opts = {})
+    return SDK::Connection.new({
       :url => test_url,
       :username => test_user,
       :password => test_password,
       :ca_file => test_ca_file,
       :debug => test_debug,
       :log => test_log,
-    )
+    }.merge(opts))
   end
 
   def check_sso_request(request, response)
@@ -290,10 +291,19 @@ module Helpers # :nodoc:
   end
 
   def set_xml_response(path, status, body, delay = 0, conditional_body_lambda = nil)
+    set_response(path, status, body, APPLICATION_XML, delay, conditional_body_lambda)
+  end
+
+  def set_json_response(path, status, body, delay = 0, conditional_body_lambda = nil)
+    set_response(path, status, body, APPLICATION_JSON, delay, conditional_body_lambda)
+  end
+
+  def set_response(path, status, body, content_type, delay = 0, conditional_body_lambda = nil)
     @server.mount_proc "#{PREFIX}/api/#{path}" do |request, response|
       # Save the request details:
       @last_request_method = request.request_method
       @last_request_body = request.body
+      @last_request_content_type = request.content_type
       # The query string can't be obtained directly from the request object, only a hash with the query
       # parameter, and that is only available for GET and HEAD requests. We need it for POST and PUT
       # requests, so we need to get them using the CGI variables.
@@ -307,7 +317,7 @@ module Helpers # :nodoc:
         response.body = ''
       else
         sleep(delay)
-        response.content_type = APPLICATION_XML
+        response.content_type = content_type
         response.body = body
         response.status = status
       end
@@ -101,4 +101,113 @@ describe SDK::Type do
 
   end
 
+  describe '#initialize' do
+
+    it 'assigns only the given members, converting hashes into objects' do
+      vm = SDK::Vm.new(:name => 'myvm', :cpu => { :mode => 'custom' })
+      expect(vm.name).to eql('myvm')
+      expect(vm.cpu).to be_a(SDK::Cpu)
+      expect(vm.cpu.mode).to eql('custom')
+      expect(vm.description).to be_nil
+    end
+
+    it 'assigns the href' do
+      vm = SDK::Vm.new(:href => '/vms/123')
+      expect(vm.href).to eql('/vms/123')
+    end
+
+    it 'ignores keys that are not members' do
+      vm = SDK::Vm.new(:junk => 'junk')
+      expect(vm.changes).to be_empty
+    end
+
+  end
+
+  describe '#changed?' do
+
+    context 'given a new object created without options' do
+      it 'returns false' do
+        expect(SDK::Vm.new.changed?).to be(false)
+      end
+    end
+
+    context 'given a new object created with options' do
+      it 'reports only the given members as changed' do
+        vm = SDK::Vm.new(:name => 'myvm')
+        expect(vm.changed?).to be(true)
+        expect(vm.changed?(:name)).to be(true)
+        expect(vm.changed?(:description)).to be(false)
+        expect(vm.changes).to eql([:name])
+      end
+    end
+
+    context 'given an object with a modified nested object' do
+      it 'returns true' do
+        vm = SDK::Vm.new(:cpu => { :mode => 'custom' })
+        vm.clear_changes
+        vm.cpu.mode = 'host_model'
+        expect(vm.changed?).to be(true)
+        expect(vm.changed?(:cpu)).to be(false)
+      end
+    end
+
+  end
+
+  describe '#ignore_changes' do
+
+    it 'stops recording changes till they are cleared' do
+      vm = SDK::Vm.new
+      vm.ignore_changes
+      vm.name = 'myvm'
+      expect(vm.changed?).to be(false)
+      vm.clear_changes(false)
+      vm.name = 'yourvm'
+      expect(vm.changes).to eql([:name])
+    end
+
+  end
+
+  describe '#clear_changes' do
+
+    it 'forgets the changes of the object and the nested objects' do
+      vm = SDK::Vm.new(:name => 'myvm', :cpu => { :mode => 'custom' })
+      vm.clear_changes
+      expect(vm.changed?).to be(false)
+      expect(vm.changes).to be_empty
+    end
+
+  end
+
+  describe '#dup' do
+
+    it 'returns a copy whose members can be modified without affecting the original' do
+      vm = SDK::Vm.new(:name => 'myvm', :memory => 1024)
+      copy = vm.dup
+      copy.name = 'yourvm'
+      copy.memory = nil
+      expect(vm.name).to eql('myvm')
+      expect(vm.memory).to eql(1024)
+      expect(copy.name).to eql('yourvm')
+      expect(copy.memory).to be_nil
+      expect(vm.changes).to match_array([:name, :memory])
+    end
+
+  end
+
+  context 'given a type with sparse storage' do
+
+    it 'returns nil for the members that were never set' do
+      vm = SDK::Vm.new(:name => 'myvm')
+      expect(vm.memory).to be_nil
+      expect(vm.cpu).to be_nil
+    end
+
+    it 'stores only the members that are not nil' do
+      vm = SDK::Vm.new(:name => 'myvm', :memory => 1024, :cpu => { :mode => 'custom' })
+      vm.memory = nil
+      expect(SDK::Reader.raw(vm)).to eql(:name => 'myvm', :cpu => { :mode => 'custom' })
+    end
+
+  end
+
 end
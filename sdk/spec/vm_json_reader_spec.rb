@@ -0,0 +1,173 @@
+#
+# Copyright (c) 2016 Red Hat, Inc.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#   http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+describe SDK::VmJsonReader do
+
+  describe ".read_one" do
+
+    context "when given an empty object" do
+
+      it "creates an empty VM" do
+        result = SDK::VmJsonReader.read_one(SDK::JsonReader.parse('{}'))
+        expect(result).to be_a(SDK::Vm)
+        expect(result.id).to be_nil
+      end
+
+    end
+
+    context "when given a VM with a null member" do
+
+      it "doesn't store a value for that member" do
+        result = SDK::VmJsonReader.read_one(SDK::JsonReader.parse('{"id": "123", "memory": null}'))
+        expect(result.memory).to be_nil
+        expect(SDK::Reader.raw(result)).to eql(:id => '123')
+      end
+
+    end
+
+    context "when given a VM with primitive members" do
+
+      it "converts the values, even if they are sent as strings" do
+        result = SDK::VmJsonReader.read_one(SDK::JsonReader.parse(
+          '{"id": "123", "name": "myvm", "memory": "1024", "stateless": "true", "creation_time": 0}'
+        ))
+        expect(result.id).to eql('123')
+        expect(result.name).to eql('myvm')
+        expect(result.memory).to eql(1024)
+        expect(result.stateless).to eql(true)
+        expect(result.creation_time).to eql(Time.at(0).to_datetime)
+      end
+
+    end
+
+    context "when given a VM with nested objects" do
+
+      it "reads the nested objects" do
+        result = SDK::VmJsonReader.read_one(SDK::JsonReader.parse(
+          '{"cpu": {"topology": {"sockets": 2}}, "cluster": {"id": "456", "href": "/clusters/456"}}'
+        ))
+        expect(result.cpu.topology.sockets).to eql(2)
+        expect(result.cluster.id).to eql('456')
+        expect(result.cluster.href).to eql('/clusters/456')
+      end
+
+    end
+
+    context "when given a VM with a link to a list" do
+
+      it "creates a list with the href of the link" do
+        result = SDK::VmJsonReader.read_one(SDK::JsonReader.parse(
+          '{"link": [{"rel": "nics", "href": "/vms/123/nics"}]}'
+        ))
+        expect(result.nics).to be_a(SDK::List)
+        expect(result.nics.href).to eql('/vms/123/nics')
+      end
+
+    end
+
+    context "when given a VM with unknown members" do
+
+      it "ignores them" do
+        result = SDK::VmJsonReader.read_one(SDK::JsonReader.parse('{"junk": {"id": "0"}, "id": "123"}'))
+        expect(result.id).to eql('123')
+      end
+
+    end
+
+  end
+
+  describe ".read_many" do
+
+    it "reads lists wrapped in an object" do
+      result = SDK::VmJsonReader.read_many(SDK::JsonReader.parse('{"vm": [{"id": "123"}, {"id": "456"}]}'))
+      expect(result).to be_a(SDK::List)
+      expect(result.map(&:id)).to eql(['123', '456'])
+    end
+
+    it "reads empty lists" do
+      result = SDK::VmJsonReader.read_many(SDK::JsonReader.parse('{}'))
+      expect(result).to be_empty
+    end
+
+  end
+
+end
+
+describe SDK::VmsService do
+
+  before(:all) do
+    start_server
+    @connection = test_connection(:format => :json)
+    @service = @connection.system_service.vms_service
+  end
+
+  after(:all) do
+    @connection.close
+    stop_server
+  end
+
+  describe "#list" do
+
+    it "reads the list from a JSON response" do
+      set_json_response('vms', 200, '{"vm": [{"id": "123", "name": "myvm"}]}')
+      vms = @service.list
+      expect(vms.size).to eql(1)
+      expect(vms[0].name).to eql('myvm')
+    end
+
+    it "returns the selected columns from a JSON response" do
+      set_json_response('vms', 200, '{"vm": [{"id": "123", "name": "myvm"}]}')
+      result = @service.list(:columns => [:id, :name])
+      expect(result).to eql(:id => ['123'], :name => ['myvm'])
+    end
+
+    it "rejects columns that aren't members of the type" do
+      set_json_response('vms', 200, '{"vm": [{"id": "123", "name": "myvm"}]}')
+      expect { @service.list(:columns => [:freeze]) }.to raise_error(ArgumentError, /freeze/)
+    end
+
+  end
+
+  describe "#add" do
+
+    it "sends the object as a JSON document" do
+      set_json_response('vms', 201, '{"id": "123", "name": "myvm"}')
+      vm = @service.add(SDK::Vm.new(:name => 'myvm', :cluster => { :name => 'mycluster' }))
+      expect(last_request_method).to eql('POST')
+      expect(last_request_content_type).to eql('application/json')
+      expect(JSON.parse(last_request_body)).to eql('name' => 'myvm', 'cluster' => { 'name' => 'mycluster' })
+      expect(vm.id).to eql('123')
+    end
+
+  end
+
+  describe "#vm_service" do
+
+    it "sends the parameters of actions as a JSON document" do
+      set_json_response('vms/123/start', 200, '{"status": "complete"}')
+      @service.vm_service('123').start(:pause => true, :use_cloud_init => false)
+      expect(last_request_content_type).to eql('application/json')
+      expect(last_request_body).to eql('{"pause":true,"use_cloud_init":false}')
+    end
+
+    it "raises an error containing the JSON fault sent by the server" do
+      set_json_response('vms/123', 404, '{"reason": "myreason", "detail": "mydetail"}')
+      expect { @service.vm_service('123').get }.to raise_error(SDK::Error, /myreason/)
+    end
+
+  end
+
+end
@@ -0,0 +1,87 @@
+#
+# Copyright (c) 2016 Red Hat, Inc.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#   http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+describe SDK::VmJsonWriter do
+
+  describe ".write_one" do
+
+    context "when empty" do
+
+      it "writes an empty object" do
+        buffer = String.new
+        SDK::VmJsonWriter.write_one(SDK::Vm.new, buffer)
+        expect(buffer).to eql('{}')
+      end
+
+    end
+
+    context "when attributes of different types are set" do
+
+      it "writes the expected JSON" do
+        vm = SDK::Vm.new(:id => '123', :name => 'my"vm', :memory => 1024, :stateless => true)
+        buffer = String.new
+        SDK::VmJsonWriter.write_one(vm, buffer)
+        expect(buffer).to eql('{"id":"123","memory":1024,"name":"my\"vm","stateless":true}')
+      end
+
+    end
+
+    context "when nested objects and lists are set" do
+
+      it "writes them using the same representation than the server" do
+        vm = SDK::Vm.new(
+          :cluster => { :name => 'mycluster' },
+          :nics => [{ :name => 'nic0' }, { :name => 'nic1' }]
+        )
+        buffer = String.new
+        SDK::VmJsonWriter.write_one(vm, buffer)
+        expect(JSON.parse(buffer)).to eql(
+          'cluster' => { 'name' => 'mycluster' },
+          'nics' => { 'nic' => [{ 'name' => 'nic0' }, { 'name' => 'nic1' }] }
+        )
+      end
+
+    end
+
+  end
+
+  describe ".write_many" do
+
+    context "when the list is empty" do
+
+      it "writes an object containing an empty array" do
+        buffer = String.new
+        SDK::VmJsonWriter.write_many([], buffer)
+        expect(buffer).to eql('{"vm":[]}')
+      end
+
+    end
+
+  end
+
+  describe ".write_changes" do
+
+    it "writes only the modified members" do
+      vm = SDK::VmJsonReader.read_one('id' => '123', 'name' => 'myvm', 'memory' => '1024')
+      vm.memory = 2048
+      buffer = String.new
+      SDK::VmJsonWriter.write_changes(vm, buffer)
+      expect(buffer).to eql('{"memory":2048}')
+    end
+
+  end
+
+end
@@ -30,6 +30,18 @@ describe SDK::VmReader do
 
     end
 
+    context "when given a VM with an empty element" do
+
+      it "doesn't store a value for that element" do
+        reader = SDK::XmlReader.new('<vm id="123"><memory/></vm>')
+        result = SDK::VmReader.read_one(reader)
+        reader.close
+        expect(result.memory).to be_nil
+        expect(SDK::Reader.raw(result)).to eql(:id => '123')
+      end
+
+    end
+
     context "when given a VM with an id" do
 
       it "creates a VM with that id" do
@@ -67,6 +79,23 @@ describe SDK::VmReader do
 
     end
 
+    context "when given elements in any order" do
+
+      it "reads all of them" do
+        [
+          '<vm><name>myvm</name><comment>mycomment</comment><description>mydescription</description></vm>',
+          '<vm><description>mydescription</description><comment>mycomment</comment><name>myvm</name></vm>',
+        ].each do |xml|
+          reader = SDK::XmlReader.new(xml)
+          result = SDK::VmReader.read_one(reader)
+          expect(result.name).to eql('myvm')
+          expect(result.comment).to eql('mycomment')
+          expect(result.description).to eql('mydescription')
+        end
+      end
+
+    end
+
     context "when given an alternative tag" do
 
       it "ignores it and reads the attributes correctly" do
@@ -194,6 +223,23 @@ describe SDK::VmReader do
 
     end
 
+    context "when given a VM with members that are modified after reading it" do
+
+      it "returns an object that can be modified and that records the changes" do
+        reader = SDK::XmlReader.new('<vm id="123"><memory>1024</memory><cpu><mode>custom</mode></cpu></vm>')
+        result = SDK::VmReader.read_one(reader)
+        reader.close
+        expect(result.changed?).to be(false)
+        result.memory = 2048
+        result.description = 'mydesc'
+        expect(result.memory).to eql(2048)
+        expect(result.description).to eql('mydesc')
+        expect(result.cpu.mode).to eql('custom')
+        expect(result.changes).to match_array([:memory, :description])
+      end
+
+    end
+
   end
 
   describe ".read_many" do
@@ -270,4 +316,209 @@ describe SDK::VmReader do
 
   end
 
+  describe ".read_many" do
+
+    context "when the reader has an identity map" do
+
+      it "shares the objects referenced by several elements" do
+        reader = SDK::XmlReader.new(
+          '<vms>' +
+            '<vm id="1"><cluster href="/clusters/0" id="0"/></vm>' +
+            '<vm id="2"><cluster href="/clusters/0" id="0"/></vm>' +
+            '<vm id="3"><cluster href="/clusters/1" id="1"/></vm>' +
+          '</vms>'
+        )
+        reader.identities = {}
+        result = SDK::VmReader.read_many(reader)
+        reader.close
+        expect(result[0].cluster).to equal(result[1].cluster)
+        expect(result[0].cluster.id).to eql('0')
+        expect(result[2].cluster).not_to equal(result[0].cluster)
+        expect(result[2].cluster.id).to eql('1')
+      end
+
+    end
+
+    context "when the reader doesn't have an identity map" do
+
+      it "creates a different object for each reference" do
+        reader = SDK::XmlReader.new(
+          '<vms>' +
+            '<vm id="1"><cluster href="/clusters/0" id="0"/></vm>' +
+            '<vm id="2"><cluster href="/clusters/0" id="0"/></vm>' +
+          '</vms>'
+        )
+        result = SDK::VmReader.read_many(reader)
+        reader.close
+        expect(result[0].cluster).not_to equal(result[1].cluster)
+      end
+
+    end
+
+    context "when used inside a ractor", :if => defined?(Ractor) do
+
+      def read_in_ractor(identities)
+        xml =
+          '<vms>' +
+            '<vm id="1"><cluster href="/clusters/0" id="0"/></vm>' +
+            '<vm id="2"><cluster href="/clusters/0" id="0"/></vm>' +
+          '</vms>'
+        ractor = Ractor.new(xml, identities) do |document, shared|
+          reader = OvirtSDK4::XmlReader.new(document)
+          reader.identities = {} if shared
+          list = OvirtSDK4::VmReader.read_many(reader)
+          reader.close
+          [list.map(&:id), list[0].cluster.equal?(list[1].cluster), list[0].cluster.id]
+        end
+        ractor.respond_to?(:value) ? ractor.value : ractor.take
+      end
+
+      it "reads the document without an identity map" do
+        ids, shared, cluster_id = read_in_ractor(false)
+        expect(ids).to eql(['1', '2'])
+        expect(shared).to be(false)
+        expect(cluster_id).to eql('0')
+      end
+
+      it "reads the document with an identity map" do
+        ids, shared, cluster_id = read_in_ractor(true)
+        expect(ids).to eql(['1', '2'])
+        expect(shared).to be(true)
+        expect(cluster_id).to eql('0')
+      end
+
+    end
+
+  end
+
+  describe ".read_into" do
+
+    context "when given an existing VM" do
+
+      it "returns the same object with the new values" do
+        vm = SDK::Vm.new(:id => '123', :name => 'old', :description => 'mydescription')
+        reader = SDK::XmlReader.new('<vm id="123"><name>new</name></vm>')
+        result = SDK::VmReader.read_into(reader, vm)
+        reader.close
+        expect(result).to equal(vm)
+        expect(result.id).to eql('123')
+        expect(result.name).to eql('new')
+        expect(result.description).to be_nil
+      end
+
+      it "reuses the nested objects" do
+        cpu = SDK::Cpu.new(:name => 'old')
+        vm = SDK::Vm.new(:cpu => cpu)
+        reader = SDK::XmlReader.new('<vm><cpu><name>new</name></cpu></vm>')
+        result = SDK::VmReader.read_into(reader, vm)
+        reader.close
+        expect(result.cpu).to equal(cpu)
+        expect(cpu.name).to eql('new')
+      end
+
+      it "reuses the nested lists and their elements" do
+        nic = SDK::Nic.new(:name => 'old')
+        vm = SDK::Vm.new(:nics => [nic, SDK::Nic.new])
+        nics = vm.nics
+        reader = SDK::XmlReader.new('<vm><nics><nic><name>new</name></nic></nics></vm>')
+        result = SDK::VmReader.read_into(reader, vm)
+        reader.close
+        expect(result.nics).to equal(nics)
+        expect(nics.size).to eql(1)
+        expect(nics[0]).to equal(nic)
+        expect(nic.name).to eql('new')
+      end
+
+    end
+
+  end
+
+  describe ".read_columns" do
+
+    context "when given a list of VMs" do
+
+      it "returns one array for each selected member" do
+        reader = SDK::XmlReader.new(
+          '<vms>' +
+            '<vm id="1"><name>vm1</name><memory>1024</memory></vm>' +
+            '<vm id="2"><memory>2048</memory></vm>' +
+            '<vm id="3"><name>vm3</name></vm>' +
+          '</vms>'
+        )
+        result = SDK::VmReader.read_columns(reader, [:id, :memory])
+        reader.close
+        expect(result.keys).to eql([:id, :memory])
+        expect(result[:id]).to eql(['1', '2', '3'])
+        expect(result[:memory]).to eql([1024, 2048, nil])
+      end
+
+    end
+
+    context "when given an empty list" do
+
+      it "returns empty arrays" do
+        reader = SDK::XmlReader.new('<vms/>')
+        result = SDK::VmReader.read_columns(reader, [:name])
+        reader.close
+        expect(result).to eql(:name => [])
+      end
+
+    end
+
+    context "when given a name that isn't a member" do
+
+      it "raises an error" do
+        reader = SDK::XmlReader.new('<vms><vm id="1"/></vms>')
+        expect { SDK::VmReader.read_columns(reader, [:freeze]) }.to raise_error(ArgumentError, /freeze/)
+        reader.close
+      end
+
+    end
+
+  end
+
+  describe ".read_raw_one" do
+
+    context "when given a VM with nested elements" do
+
+      it "returns frozen hashes with typed values" do
+        reader = SDK::XmlReader.new(
+          '<vm id="123">' +
+            '<name>myvm</name>' +
+            '<memory>1024</memory>' +
+            '<cpu><topology><cores>2</cores></topology></cpu>' +
+            '<nics><nic><name>nic0</name></nic></nics>' +
+            '<link rel="cdroms" href="/vms/123/cdroms"/>' +
+          '</vm>'
+        )
+        result = SDK::VmReader.read_raw_one(reader)
+        reader.close
+        expect(result).to eql(
+          :id => '123',
+          :name => 'myvm',
+          :memory => 1024,
+          :cpu => { :topology => { :cores => 2 } },
+          :nics => [{ :name => 'nic0' }],
+          :cdroms => { :href => '/vms/123/cdroms' }
+        )
+        expect(result).to be_frozen
+        expect(result[:cpu]).to be_frozen
+        expect(result[:nics]).to be_frozen
+      end
+
+    end
+
+    context "when given a VM with empty elements" do
+
+      it "doesn't add entries for them" do
+        reader = SDK::XmlReader.new('<vm id="123"><name/><memory/><cpu/></vm>')
+        result = SDK::VmReader.read_raw_one(reader)
+        reader.close
+        expect(result).to eql(:id => '123', :cpu => {})
+      end
+
+    end
+
+  end
+
 end
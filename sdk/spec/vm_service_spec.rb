@@ -35,11 +35,17 @@ describe SDK::VmService do
         set_xml_response('vms/123/start', 200, '<action/>')
         @service.start(:pause => true)
         expect(last_request_method).to eq('POST')
-        expect(last_request_body).to eq(
-          "<action>\n" +
-          "  <pause>true</pause>\n" +
-          "</action>\n"
-        )
+        expect(last_request_body).to eq('<action><pause>true</pause></action>')
+      end
+
+    end
+
+    context "when starting a VM with an option that isn't a parameter of the action" do
+
+      it "ignores the option" do
+        set_xml_response('vms/123/start', 200, '<action/>')
+        @service.start(:pause => true, :host => { :id => '456' })
+        expect(last_request_body).to eq('<action><pause>true</pause></action>')
       end
 
     end
@@ -78,6 +84,88 @@ describe SDK::VmService do
 
   end
 
+  describe ".migrate" do
+
+    context "when migrating a VM to a host given as a hash" do
+
+      it "posts an `action` element with an inner `host` element" do
+        set_xml_response('vms/123/migrate', 200, '<action/>')
+        @service.migrate(:host => { :id => '456' }, :force => true)
+        expect(last_request_method).to eq('POST')
+        expect(last_request_body).to eq('<action><force>true</force><host id="456"/></action>')
+      end
+
+    end
+
+  end
+
+  describe '#get_async' do
+
+    it 'returns a future whose result is the object' do
+      set_xml_response('vms/123', 200, '<vm id="123"><name>myvm</name></vm>')
+      future = @service.get_async
+      expect(future).to be_a(SDK::Future)
+      vm = future.wait
+      expect(future.done?).to be(true)
+      expect(vm).to be_a(SDK::Vm)
+      expect(vm.name).to eql('myvm')
+    end
+
+    it 'completes several requests in progress at the same time' do
+      set_xml_response('vms/123', 200, '<vm id="123"/>', 0.5)
+      set_xml_response('vms/456', 200, '<vm id="456"/>', 0.5)
+      vms_service = @connection.system_service.vms_service
+      start = Time.now
+      futures = ['123', '456', '123', '456'].map { |id| vms_service.vm_service(id).get_async }
+      vms = futures.map(&:wait)
+      expect(vms.map(&:id)).to eql(['123', '456', '123', '456'])
+      expect(Time.now - start).to be < 2
+    end
+
+    it 'completes the futures waited for by several threads' do
+      set_xml_response('vms/123', 200, '<vm id="123"/>', 0.5)
+      set_xml_response('vms/456', 200, '<vm id="456"/>', 0.5)
+      vms_service = @connection.system_service.vms_service
+      futures = ['123', '456'].map { |id| vms_service.vm_service(id).get_async }
+      threads = futures.map { |future| Thread.new { future.wait } }
+      expect(threads.map(&:value).map(&:id)).to eql(['123', '456'])
+    end
+
+    it 'fails the pending futures when the connection is closed' do
+      connection = test_connection
+      future = connection.system_service.vms_service.vm_service('123').get_async
+      connection.close
+      expect(future.done?).to be(true)
+      expect { future.wait }.to raise_error(SDK::Error, /closed/)
+      expect { connection.system_service.vms_service.vm_service('123').get_async }.to raise_error(SDK::Error, /closed/)
+    end
+
+  end
+
+  describe '#start_async' do
+
+    it 'raises the error of the fault when the future is waited for' do
+      set_xml_response('vms/123/start', 400, '<fault><reason>myreason</reason></fault>')
+      future = @service.start_async(:pause => true)
+      expect { future.wait }.to raise_error(SDK::Error, /myreason/)
+      expect(last_request_body).to eq('<action><pause>true</pause></action>')
+    end
+
+  end
+
+  describe '#get_into' do
+
+    it 'overwrites the given object and returns it' do
+      set_xml_response('vms/123', 200, '<vm id="123"><name>new</name></vm>')
+      vm = SDK::Vm.new(:name => 'old')
+      result = @service.get_into(vm)
+      expect(result).to equal(vm)
+      expect(vm.id).to eql('123')
+      expect(vm.name).to eql('new')
+    end
+
+  end
+
   describe '#update' do
 
       context 'when update a VM with the `async` parameter' do
@@ -90,11 +178,20 @@ describe SDK::VmService do
           )
           expect(last_request_method).to eq('PUT')
           expect(last_request_query).to eq('async=true')
-          expect(last_request_body).to eq(
-            "<vm>\n" +
-            "  <name>newname</name>\n" +
-            "</vm>\n"
-          )
+          expect(last_request_body).to eq('<vm><name>newname</name></vm>')
+        end
+
+      end
+
+      context 'when update a VM that was previously retrieved' do
+
+        it 'puts only the members that have been modified' do
+          set_xml_response('vms/123', 200, '<vm id="123"><name>myvm</name><memory>1024</memory></vm>')
+          vm = @service.get
+          vm.memory = 2048
+          @service.update(vm)
+          expect(last_request_method).to eq('PUT')
+          expect(last_request_body).to eq('<vm><memory>2048</memory></vm>')
         end
 
       end
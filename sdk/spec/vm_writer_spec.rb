@@ -243,4 +243,94 @@ describe SDK::VmWriter do
     end
   end
 
+  describe '.write_one with the native writers' do
+
+    it 'is used when the extension contains them' do
+      expect(SDK::Writer::NATIVE).to be(true)
+    end
+
+    it 'escapes the values the same than the XML writer' do
+      vm = SDK::Vm.new(:id => 'a"b', :name => 'a<b', :description => 'x"y&z')
+      writer = SDK::XmlWriter.new
+      SDK::VmWriter.write_one(vm, writer)
+      expect(writer.string).to eql(
+        '<vm id="a&quot;b"><description>x&quot;y&amp;z</description><name>a&lt;b</name></vm>'
+      )
+      writer.close
+    end
+
+    it 'writes nested objects and lists' do
+      vm = SDK::Vm.new(:cpu => { :topology => { :cores => 2 } }, :nics => [])
+      writer = SDK::XmlWriter.new
+      SDK::VmWriter.write_one(vm, writer)
+      expect(writer.string).to eql('<vm><cpu><topology><cores>2</cores></topology></cpu><nics/></vm>')
+      writer.close
+    end
+
+    it 'writes the href of lists' do
+      nics = SDK::List.new([SDK::Nic.new(:name => 'nic0')])
+      nics.href = '/vms/123/nics'
+      vm = SDK::Vm.new(:nics => nics)
+      writer = SDK::XmlWriter.new
+      writer.write_struct(SDK::Writer::WRITERS.keys.index(SDK::Vm), vm, 'vm')
+      expect(writer.string).to eql('<vm><nics href="/vms/123/nics"><nic><name>nic0</name></nic></nics></vm>')
+      writer.close
+    end
+
+    it 'rejects values that are not objects' do
+      writer = SDK::XmlWriter.new
+      expect { writer.write_struct(0, {}, 'vm') }.to raise_error(TypeError)
+      writer.close
+    end
+
+  end
+
+  describe '.write_changes' do
+
+    context 'when the object was read and a member was modified' do
+
+      it 'writes only the modified member' do
+        reader = SDK::XmlReader.new('<vm id="123"><name>myvm</name><description>mydesc</description></vm>')
+        vm = SDK::VmReader.read_one(reader)
+        reader.close
+        vm.description = 'newdesc'
+        writer = SDK::XmlWriter.new
+        SDK::VmWriter.write_changes(vm, writer)
+        expect(writer.string).to eql('<vm><description>newdesc</description></vm>')
+        writer.close
+      end
+
+    end
+
+    context 'when a member of a nested object was modified' do
+
+      it 'writes only the modified member of the nested object' do
+        reader = SDK::XmlReader.new('<vm><cpu><mode>custom</mode><architecture>x86_64</architecture></cpu></vm>')
+        vm = SDK::VmReader.read_one(reader)
+        reader.close
+        vm.cpu.mode = 'host_model'
+        writer = SDK::XmlWriter.new
+        SDK::VmWriter.write_changes(vm, writer)
+        expect(writer.string).to eql('<vm><cpu><mode>host_model</mode></cpu></vm>')
+        writer.close
+      end
+
+    end
+
+    context 'when nothing was modified' do
+
+      it 'writes an empty element' do
+        reader = SDK::XmlReader.new('<vm><name>myvm</name></vm>')
+        vm = SDK::VmReader.read_one(reader)
+        reader.close
+        writer = SDK::XmlWriter.new
+        SDK::VmWriter.write_changes(vm, writer)
+        expect(writer.string).to eql('<vm/>')
+        writer.close
+      end
+
+    end
+
+  end
+
 end
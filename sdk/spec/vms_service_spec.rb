@@ -90,4 +90,78 @@ describe SDK::VmsService do
 
   end
 
+  describe "#list" do
+
+    context "when the `columns` option is given" do
+
+      it "returns a hash of arrays instead of a list of objects" do
+        set_xml_response('vms', 200, '<vms><vm id="1"><name>vm1</name></vm><vm id="2"><name>vm2</name></vm></vms>')
+        result = @service.list(:columns => [:name])
+        expect(result).to eql(:name => ['vm1', 'vm2'])
+      end
+
+    end
+
+    context "when the `raw` option is given" do
+
+      it "returns an array of hashes instead of a list of objects" do
+        set_xml_response('vms', 200, '<vms><vm id="1"><name>vm1</name></vm></vms>')
+        result = @service.list(:raw => true)
+        expect(result).to eql([{ :id => '1', :name => 'vm1' }])
+        expect(result).to be_frozen
+      end
+
+    end
+
+  end
+
+  context "when the connection has an identity map" do
+
+    before(:all) do
+      @mapped = test_connection(:identity_map => true)
+      @mapped_service = @mapped.system_service.vms_service
+    end
+
+    after(:all) do
+      @mapped.close
+    end
+
+    it "#list_into doesn't overwrite the objects shared by several VMs" do
+      set_xml_response('vms', 200,
+        '<vms>' +
+          '<vm id="1"><cluster href="/clusters/0" id="0"/></vm>' +
+          '<vm id="2"><cluster href="/clusters/0" id="0"/></vm>' +
+        '</vms>'
+      )
+      vms = @mapped_service.list
+      cluster = vms[0].cluster
+      expect(vms[1].cluster).to equal(cluster)
+      set_xml_response('vms', 200,
+        '<vms>' +
+          '<vm id="1"><cluster href="/clusters/1" id="1"/></vm>' +
+          '<vm id="2"><cluster href="/clusters/2" id="2"/></vm>' +
+        '</vms>'
+      )
+      @mapped_service.list_into(vms)
+      expect(vms[0].cluster.id).to eql('1')
+      expect(vms[1].cluster.id).to eql('2')
+      expect(cluster.id).to eql('0')
+    end
+
+    it "#get_into doesn't overwrite the objects shared with other VMs" do
+      set_xml_response('vms', 200,
+        '<vms>' +
+          '<vm id="1"><cluster href="/clusters/0" id="0"/></vm>' +
+          '<vm id="2"><cluster href="/clusters/0" id="0"/></vm>' +
+        '</vms>'
+      )
+      vms = @mapped_service.list
+      set_xml_response('vms/1', 200, '<vm id="1"><cluster href="/clusters/1" id="1"/></vm>')
+      @mapped_service.vm_service('1').get_into(vms[0])
+      expect(vms[0].cluster.id).to eql('1')
+      expect(vms[1].cluster.id).to eql('0')
+    end
+
+  end
+
 end
@@ -340,4 +340,20 @@ describe SDK::Writer do
 
   end
 
+  describe "::WRITERS" do
+
+    it "is frozen, and contains only classes" do
+      expect(SDK::Writer::WRITERS).to be_frozen
+      SDK::Writer::WRITERS.each do |key, value|
+        expect(key).to be_a(Class)
+        expect(value).to be_a(Class)
+      end
+    end
+
+    it "can be shared by ractors", :if => defined?(Ractor) do
+      expect(Ractor.shareable?(SDK::Writer::WRITERS)).to be true
+    end
+
+  end
+
 end
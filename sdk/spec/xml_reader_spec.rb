@@ -14,6 +14,8 @@
 # limitations under the License.
 #
 
+require 'tempfile'
+
 describe SDK::XmlReader do
 
   describe ".read_attribute" do
@@ -48,6 +50,84 @@ describe SDK::XmlReader do
 
   end
 
+  describe ".attributes" do
+
+    context "given an element without attributes" do
+
+      it "returns an empty hash" do
+        reader = SDK::XmlReader.new('<root/>')
+        expect(reader.attributes).to eql({})
+      end
+
+    end
+
+    context "given an element with several attributes" do
+
+      it "returns all of them" do
+        reader = SDK::XmlReader.new('<root id="123" href="/root/123" name=""/>')
+        expect(reader.attributes).to eql('id' => '123', 'href' => '/root/123', 'name' => '')
+      end
+
+    end
+
+    context "given an element with attributes and content" do
+
+      it "leaves the cursor at the element" do
+        reader = SDK::XmlReader.new('<root id="123"><child>value</child></root>')
+        expect(reader.attributes).to eql('id' => '123')
+        expect(reader.node_name).to eql('root')
+        expect(reader.empty_element?).to be(false)
+        reader.read
+        expect(reader.read_element).to eql('value')
+      end
+
+    end
+
+  end
+
+  describe ".node_id" do
+
+    context "given an element of the model" do
+
+      it "returns a positive identifier that is different for each tag" do
+        vm = SDK::XmlReader.new('<vm/>').node_id
+        name = SDK::XmlReader.new('<name/>').node_id
+        expect(vm).to be > 0
+        expect(name).to be > 0
+        expect(vm).not_to eql(name)
+      end
+
+    end
+
+    context "given an element that isn't part of the model" do
+
+      it "returns zero" do
+        reader = SDK::XmlReader.new('<junk/>')
+        expect(reader.node_id).to eql(0)
+      end
+
+    end
+
+  end
+
+  describe ".next_id" do
+
+    context "given a sequence of elements" do
+
+      it "returns the identifiers of the elements and then nil" do
+        reader = SDK::XmlReader.new('<root><name/><junk/></root>')
+        reader.read
+        expect(reader.next_id).to eql(SDK::XmlReader.new('<name/>').node_id)
+        reader.next_element
+        expect(reader.next_id).to eql(0)
+        reader.next_element
+        expect(reader.next_id).to be_nil
+      end
+
+    end
+
+  end
+
   describe ".read_element" do
 
     context "given an empty element" do
@@ -167,4 +247,152 @@ describe SDK::XmlReader do
 
   end
 
+  describe ".read_integer" do
+
+    it "converts short and long values" do
+      reader = SDK::XmlReader.new('<list><value>-12</value><value> 12345678901234567890 </value></list>')
+      expect(reader.read_integers).to eql([-12, 12345678901234567890])
+    end
+
+    it "raises an error containing the text if it isn't valid" do
+      reader = SDK::XmlReader.new('<value>12a</value>')
+      expect { reader.read_integer }.to raise_error(SDK::Error, /'12a' isn't a valid integer/)
+    end
+
+  end
+
+  describe ".read_decimal" do
+
+    it "converts values with fractions and exponents" do
+      reader = SDK::XmlReader.new('<list><value>1.5</value><value>-2e3</value><value>1_000.5</value></list>')
+      expect(reader.read_decimals).to eql([1.5, -2000.0, 1000.5])
+    end
+
+    it "raises an error containing the text if it isn't valid" do
+      reader = SDK::XmlReader.new('<value>1.</value>')
+      expect { reader.read_decimal }.to raise_error(SDK::Error, /'1\.' isn't a valid decimal/)
+    end
+
+  end
+
+  describe ".read_date" do
+
+    it "converts dates with fractions of second and time zones" do
+      reader = SDK::XmlReader.new('<value>2016-01-02T03:04:05.678-02:30</value>')
+      expected = DateTime.xmlschema('2016-01-02T03:04:05.678-02:30')
+      actual = reader.read_date
+      expect(actual).to eql(expected)
+      expect(actual.offset).to eql(expected.offset)
+      expect(actual.sec_fraction).to eql(expected.sec_fraction)
+    end
+
+    it "converts dates in other formats supported by the XML schema" do
+      reader = SDK::XmlReader.new('<value>2016-01-02</value>')
+      expect(reader.read_date).to eql(DateTime.xmlschema('2016-01-02'))
+    end
+
+    it "raises an error containing the text if it isn't valid" do
+      reader = SDK::XmlReader.new('<value>2016-13-02T00:00:00Z</value>')
+      expect { reader.read_date }.to raise_error(SDK::Error, /isn't a valid date/)
+    end
+
+  end
+
+  context "in tokenized mode" do
+
+    it "returns the same names, attributes and values" do
+      reader = SDK::XmlReader.new('<root id="123"><name>myname</name><empty/></root>', true)
+      expect(reader.node_name).to eql('root')
+      expect(reader.get_attribute('id')).to eql('123')
+      expect(reader.attributes).to eql('id' => '123')
+      expect(reader.empty_element?).to be false
+      reader.read
+      expect(reader.forward).to be true
+      expect(reader.read_element).to eql('myname')
+      expect(reader.forward).to be true
+      expect(reader.empty_element?).to be true
+      expect(reader.read_element).to be_nil
+      expect(reader.forward).to be false
+      reader.close
+    end
+
+    it "reads lists of values" do
+      reader = SDK::XmlReader.new('<list><value>first</value><value/><value>second</value></list>', true)
+      expect(reader.read_elements).to eql(['first', nil, 'second'])
+      reader.close
+    end
+
+    it "skips complete elements" do
+      reader = SDK::XmlReader.new('<root><skip><inner>x</inner></skip><target/></root>', true)
+      reader.read
+      reader.next_element
+      expect(reader.node_name).to eql('target')
+      reader.close
+    end
+
+    it "can be used by the generated readers" do
+      reader = SDK::XmlReader.new('<vms><vm id="123"><name>myvm</name></vm><vm id="456"/></vms>', true)
+      vms = SDK::VmReader.read_many(reader)
+      reader.close
+      expect(vms.map(&:id)).to eql(['123', '456'])
+      expect(vms[0].name).to eql('myvm')
+    end
+
+    it "can parse in several threads at the same time" do
+      text = '<vms>' + 1000.times.map { |i| "<vm id=\"#{i}\"><name>vm#{i}</name></vm>" }.join + '</vms>'
+      threads = 4.times.map do
+        Thread.new do
+          reader = SDK::XmlReader.new(text, true)
+          begin
+            SDK::VmReader.read_many(reader).size
+          ensure
+            reader.close
+          end
+        end
+      end
+      expect(threads.map(&:value)).to eql([1000] * 4)
+    end
+
+    it "raises an error if the document isn't valid" do
+      expect { SDK::XmlReader.new('<root><open></root>', true) }.to raise_error(SDK::Error)
+    end
+
+  end
+
+  describe ".new" do
+
+    context "given a file" do
+
+      it "reads the document from the file" do
+        Tempfile.open('reader') do |tmp|
+          tmp.write('<vm id="123"><name>myvm</name></vm>')
+          tmp.flush
+          File.open(tmp.path) do |file|
+            reader = SDK::XmlReader.new(file)
+            vm = SDK::VmReader.read_one(reader)
+            reader.close
+            expect(vm.id).to eql('123')
+            expect(vm.name).to eql('myvm')
+          end
+        end
+      end
+
+      it "starts reading at the current position of the file" do
+        Tempfile.open('reader') do |tmp|
+          tmp.write('junk<vm id="123"/>')
+          tmp.flush
+          File.open(tmp.path) do |file|
+            file.read(4)
+            reader = SDK::XmlReader.new(file)
+            vm = SDK::VmReader.read_one(reader)
+            reader.close
+            expect(vm.id).to eql('123')
+          end
+        end
+      end
+
+    end
+
+  end
+
 end
@@ -31,4 +31,68 @@ describe SDK::XmlWriter do
 
   end
 
+  describe ".write_raw" do
+
+    context "given a fragment inside an element" do
+
+      it "closes the start tag and writes the fragment as is" do
+        writer = SDK::XmlWriter.new
+        writer.write_start('vm')
+        writer.write_attribute('id', '123')
+        writer.write_raw('<name>myvm</name>')
+        writer.write_end
+        expect(writer.string).to eql('<vm id="123"><name>myvm</name></vm>')
+        writer.close
+      end
+
+    end
+
+  end
+
+  describe ".write_escaped" do
+
+    context "given a value with special characters" do
+
+      it "escapes only the value" do
+        writer = SDK::XmlWriter.new
+        writer.write_escaped('<name>', 'a<b&c', '</name>')
+        expect(writer.string).to eql('<name>a&lt;b&amp;c</name>')
+        writer.close
+      end
+
+    end
+
+  end
+
+  describe ".reset" do
+
+    context "after writing a complete document" do
+
+      it "discards the content and allows writing another document" do
+        writer = SDK::XmlWriter.new
+        writer.write_element('name', 'first')
+        writer.reset
+        writer.write_element('name', 'second')
+        expect(writer.string).to eql('<name>second</name>')
+        writer.close
+      end
+
+    end
+
+    context "after leaving elements open" do
+
+      it "discards the open elements" do
+        writer = SDK::XmlWriter.new
+        writer.write_start('vm')
+        writer.write_start('name')
+        writer.reset
+        writer.write_element('name', 'myvm')
+        expect(writer.string).to eql('<name>myvm</name>')
+        writer.close
+      end
+
+    end
+
+  end
+
 end